@@ -0,0 +1,56 @@
+package tools.io;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Run the asynchronous loads of a {@link RessourceClient}.<br>
+ * On Java 11 and later, the multi-release jar provides an engine built on
+ * <code>java.net.http.HttpClient</code>, which waits for the network without
+ * holding a thread. Otherwise, the blocking loads run on an executor.
+ *
+ * @author A. CANDIAN
+ *
+ */
+interface AsyncEngine {
+
+    /**
+     * Load a resource in memory.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @return A future completed with the result, with the loaded data as body.
+     */
+    CompletableFuture<RessourceResponse> load(URL urlRessource);
+
+    /**
+     * Load a resource and write it to a stream, closed at the end.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param out
+     *            The stream to write the data.
+     * @return A future completed with the result, without body.
+     */
+    CompletableFuture<RessourceResponse> load(URL urlRessource, OutputStream out);
+
+    /**
+     * Create the best engine available on the running JVM.
+     *
+     * @param client
+     *            The client whose configuration is used.
+     * @param executor
+     *            The executor to use, or <code>null</code> for the default one.
+     * @return A new engine.
+     */
+    static AsyncEngine create(RessourceClient client, Executor executor) {
+        try {
+            return (AsyncEngine) Class.forName("tools.io.HttpClientEngine")
+                    .getDeclaredConstructor(RessourceClient.class, Executor.class).newInstance(client, executor);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ExecutorEngine(client, executor);
+        }
+    }
+}
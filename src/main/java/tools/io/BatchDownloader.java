@@ -0,0 +1,271 @@
+package tools.io;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import tools.util.Pair;
+
+/**
+ * Download many resources concurrently, with a global limit and a per host
+ * limit on the number of simultaneous transfers.<br>
+ * Each transfer is done with
+ * {@link RessourceClient#getRessource(URL, OutputStream)}. Waiting transfers are
+ * kept in a queue per host and only handed to the executor when a slot is
+ * free, so no executor thread is ever blocked waiting for a busy host.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class BatchDownloader {
+
+    /**
+     * Default number of simultaneous transfers.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT = 64;
+
+    /**
+     * Default number of simultaneous transfers on the same host.
+     */
+    public static final int DEFAULT_MAX_PER_HOST = 8;
+
+    private final RessourceClient client;
+
+    private final Executor executor;
+
+    private final int maxConcurrent;
+
+    private final int maxPerHost;
+
+    /**
+     * Guards {@link #running}, {@link #runningPerHost} and {@link #pending}.
+     */
+    private final Object lock = new Object();
+
+    private int running;
+
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    /**
+     * Waiting transfers, grouped by host in submission order.
+     */
+    private final Map<String, Deque<Task>> pending = new LinkedHashMap<>();
+
+    /**
+     * Build a downloader using the default limits and a client configured as
+     * {@link LoadRessource} is when this constructor is called.
+     *
+     * @param executor
+     *            The executor running the transfers.
+     */
+    public BatchDownloader(Executor executor) {
+        this(LoadRessource.getClient(), executor, DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_PER_HOST);
+    }
+
+    /**
+     * Build a downloader.
+     *
+     * @param client
+     *            The client doing the transfers.
+     * @param executor
+     *            The executor running the transfers.
+     * @param maxConcurrent
+     *            Maximum number of simultaneous transfers.
+     * @param maxPerHost
+     *            Maximum number of simultaneous transfers on the same host.
+     */
+    public BatchDownloader(RessourceClient client, Executor executor, int maxConcurrent, int maxPerHost) {
+        super();
+        if (client == null || executor == null) {
+            throw new IllegalArgumentException("The client and the executor can't be null.");
+        }
+        if (maxConcurrent < 1 || maxPerHost < 1) {
+            throw new IllegalArgumentException("Concurrency limits must be at least 1.");
+        }
+        this.client = client;
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * Queue the download of each URL to its stream.<br>
+     * The returned futures are in the same order as the requests, each one
+     * completes with the result of its request, or exceptionally with the error met
+     * while loading it. Cancelling a future before its transfer started removes
+     * it from the queue.
+     *
+     * @param requests
+     *            Couples of URL to load and stream to write the data.
+     * @return A future for each request.
+     */
+    public List<CompletableFuture<RessourceResponse>> getRessources(
+            Collection<? extends Pair<URL, ? extends OutputStream>> requests) {
+        List<CompletableFuture<RessourceResponse>> futures = new ArrayList<>(requests.size());
+
+        synchronized (lock) {
+            for (Pair<URL, ? extends OutputStream> request : requests) {
+                Task task = new Task(request.getKey(), request.getValue());
+                futures.add(task.future);
+                pending.computeIfAbsent(task.host, h -> new ArrayDeque<>()).add(task);
+            }
+        }
+        dispatch();
+
+        return futures;
+    }
+
+    /**
+     * Queue the download of one URL to a stream.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param out
+     *            The stream to write the data.
+     * @return A future completed with the result once loaded.
+     */
+    public CompletableFuture<RessourceResponse> getRessource(URL urlRessource, OutputStream out) {
+        Task task = new Task(urlRessource, out);
+        synchronized (lock) {
+            pending.computeIfAbsent(task.host, h -> new ArrayDeque<>()).add(task);
+        }
+        dispatch();
+
+        return task.future;
+    }
+
+    /**
+     * Start as many waiting transfers as the limits allow. A transfer rejected
+     * by the executor is failed and its slots are given to the next waiting
+     * ones, so that no future is left pending.
+     */
+    private void dispatch() {
+        boolean rejected;
+        do {
+            rejected = start();
+        } while (rejected);
+    }
+
+    /**
+     * Start the waiting transfers the limits allow once.
+     *
+     * @return <code>true</code> if a transfer was rejected by the executor.
+     */
+    private boolean start() {
+        List<Task> toStart = new ArrayList<>();
+
+        synchronized (lock) {
+            Iterator<Map.Entry<String, Deque<Task>>> hosts = pending.entrySet().iterator();
+            while (running < maxConcurrent && hosts.hasNext()) {
+                Map.Entry<String, Deque<Task>> entry = hosts.next();
+                Deque<Task> queue = entry.getValue();
+                int hostRunning = runningPerHost.getOrDefault(entry.getKey(), 0);
+
+                while (running < maxConcurrent && hostRunning < maxPerHost && !queue.isEmpty()) {
+                    Task task = queue.poll();
+                    if (!task.future.isDone()) {
+                        toStart.add(task);
+                        running++;
+                        hostRunning++;
+                    }
+                }
+
+                if (hostRunning > 0) {
+                    runningPerHost.put(entry.getKey(), hostRunning);
+                }
+                if (queue.isEmpty()) {
+                    hosts.remove();
+                }
+            }
+        }
+
+        boolean rejected = false;
+        for (Task task : toStart) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.future.completeExceptionally(e);
+                release(task);
+                rejected = true;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Free the slots of a finished transfer.
+     *
+     * @param task
+     *            The finished transfer.
+     */
+    private void release(Task task) {
+        synchronized (lock) {
+            running--;
+            int hostRunning = runningPerHost.get(task.host) - 1;
+            if (hostRunning == 0) {
+                runningPerHost.remove(task.host);
+            } else {
+                runningPerHost.put(task.host, hostRunning);
+            }
+        }
+    }
+
+    /**
+     * Build the key used to group URLs by host.
+     *
+     * @param url
+     *            The URL.
+     * @return The lower case host and the port used to reach it.
+     */
+    static String hostKey(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getHost().toLowerCase(Locale.ROOT) + ':' + port;
+    }
+
+    /**
+     * A queued transfer.
+     */
+    private final class Task implements Runnable {
+
+        private final URL url;
+
+        private final OutputStream out;
+
+        private final String host;
+
+        private final CompletableFuture<RessourceResponse> future = new CompletableFuture<>();
+
+        private Task(URL url, OutputStream out) {
+            this.url = url;
+            this.out = out;
+            this.host = hostKey(url);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!future.isDone()) {
+                    future.complete(client.getRessource(url, out));
+                }
+            } catch (Throwable e) {
+                // An error too must complete the future.
+                future.completeExceptionally(e);
+            } finally {
+                release(this);
+                dispatch();
+            }
+        }
+    }
+}
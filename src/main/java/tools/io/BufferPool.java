@@ -0,0 +1,80 @@
+package tools.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per thread cache of the copy buffers used by the I/O methods.<br>
+ * Each thread keeps at most one heap array and one direct buffer of
+ * {@link LoadRessource#DEFAULT_BUFFER_SIZE} bytes, so the pool size is bounded
+ * by the number of threads doing I/O. A buffer is removed from its thread slot
+ * while in use: a nested copy on the same thread gets a new buffer instead of
+ * sharing it.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class BufferPool {
+
+    private static final ThreadLocal<byte[][]> ARRAYS = ThreadLocal.withInitial(() -> new byte[1][]);
+
+    private static final ThreadLocal<ByteBuffer[]> DIRECT_BUFFERS = ThreadLocal
+            .withInitial(() -> new ByteBuffer[1]);
+
+    private BufferPool() {
+        super();
+    }
+
+    /**
+     * Take the array of the current thread, or allocate one.
+     *
+     * @return An array of {@link LoadRessource#DEFAULT_BUFFER_SIZE} bytes.
+     */
+    static byte[] acquireArray() {
+        byte[][] slot = ARRAYS.get();
+        byte[] array = slot[0];
+        if (array == null) {
+            return new byte[LoadRessource.DEFAULT_BUFFER_SIZE];
+        }
+        slot[0] = null;
+        return array;
+    }
+
+    /**
+     * Give back an array obtained from {@link #acquireArray()}. It must not be
+     * used after.
+     *
+     * @param array
+     *            The array.
+     */
+    static void releaseArray(byte[] array) {
+        ARRAYS.get()[0] = array;
+    }
+
+    /**
+     * Take the direct buffer of the current thread, or allocate one.
+     *
+     * @return A cleared direct buffer of
+     *         {@link LoadRessource#DEFAULT_BUFFER_SIZE} bytes.
+     */
+    static ByteBuffer acquireDirect() {
+        ByteBuffer[] slot = DIRECT_BUFFERS.get();
+        ByteBuffer buffer = slot[0];
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(LoadRessource.DEFAULT_BUFFER_SIZE);
+        }
+        slot[0] = null;
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer obtained from {@link #acquireDirect()}. It must not be
+     * used after.
+     *
+     * @param buffer
+     *            The buffer.
+     */
+    static void releaseDirect(ByteBuffer buffer) {
+        buffer.clear();
+        DIRECT_BUFFERS.get()[0] = buffer;
+    }
+}
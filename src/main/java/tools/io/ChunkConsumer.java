@@ -0,0 +1,29 @@
+package tools.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receive the data of a resource chunk by chunk, as it is read, so a large
+ * resource can be parsed or forwarded with constant memory.<br>
+ * Chunks are given in order, by the thread doing the load. A chunk is a read
+ * only view of a buffer reused for the next chunks: it must be consumed, or
+ * copied, before returning. Blocking in {@link #accept(ByteBuffer)} slows the
+ * reading down accordingly.
+ *
+ * @author A. CANDIAN
+ *
+ */
+@FunctionalInterface
+public interface ChunkConsumer {
+
+    /**
+     * Consume the next chunk of data.
+     *
+     * @param chunk
+     *            The data, between the position and the limit of the buffer.
+     * @throws IOException
+     *             To stop the load.
+     */
+    void accept(ByteBuffer chunk) throws IOException;
+}
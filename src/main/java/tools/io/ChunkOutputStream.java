@@ -0,0 +1,38 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream giving each written array to a {@link ChunkConsumer}, without copy.
+ * Closing it does nothing.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class ChunkOutputStream extends OutputStream {
+
+    private final ChunkConsumer consumer;
+
+    /**
+     * @param consumer
+     *            The consumer of the written data.
+     */
+    ChunkOutputStream(ChunkConsumer consumer) {
+        super();
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            consumer.accept(ByteBuffer.wrap(b, off, len).asReadOnlyBuffer());
+        }
+    }
+}
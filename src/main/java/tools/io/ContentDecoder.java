@@ -0,0 +1,41 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decode a response body according to its <code>Content-Encoding</code>.<br>
+ * Decoders are registered by encoding name on a
+ * {@link RessourceClient.Builder#decoder(String, ContentDecoder)} and must be
+ * thread safe: the same decoder is used for all the responses of a client.
+ *
+ * @author A. CANDIAN
+ *
+ */
+@FunctionalInterface
+public interface ContentDecoder {
+
+    /**
+     * Decoder of the <code>gzip</code> encoding, accepting concatenated
+     * members.
+     */
+    ContentDecoder GZIP = in -> new InflatingInputStream(in, InflatingInputStream.Format.GZIP);
+
+    /**
+     * Decoder of the <code>deflate</code> encoding, accepting zlib wrapped
+     * data as well as raw deflate data sent by some servers.
+     */
+    ContentDecoder DEFLATE = in -> new InflatingInputStream(in, InflatingInputStream.Format.DEFLATE);
+
+    /**
+     * Wrap an encoded stream.
+     *
+     * @param in
+     *            The encoded stream.
+     * @return A stream reading the decoded data. Closing it closes the encoded
+     *         stream.
+     * @throws IOException
+     *             If the stream header is invalid.
+     */
+    InputStream decode(InputStream in) throws IOException;
+}
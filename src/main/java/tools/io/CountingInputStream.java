@@ -0,0 +1,63 @@
+package tools.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream counting the bytes read from the underlying stream.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    /**
+     * Wrap a stream.
+     *
+     * @param in
+     *            The stream to count.
+     */
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * @return The number of bytes read or skipped so far.
+     */
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+package tools.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream counting the bytes written to the underlying stream.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    /**
+     * Wrap a stream.
+     *
+     * @param out
+     *            The stream to count.
+     */
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+}
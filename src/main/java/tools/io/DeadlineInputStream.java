@@ -0,0 +1,48 @@
+package tools.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream failing as soon as its {@link TransferContext} is cancelled or
+ * past its deadline, even if the server keeps sending data slowly.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class DeadlineInputStream extends FilterInputStream {
+
+    private final TransferContext context;
+
+    /**
+     * Wrap a stream.
+     *
+     * @param in
+     *            The stream to watch.
+     * @param context
+     *            The call the stream belongs to.
+     */
+    DeadlineInputStream(InputStream in, TransferContext context) {
+        super(in);
+        this.context = context;
+    }
+
+    @Override
+    public int read() throws IOException {
+        context.check();
+        return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        context.check();
+        return super.read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        context.check();
+        return super.skip(n);
+    }
+}
@@ -0,0 +1,441 @@
+package tools.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tools.security.Hash;
+
+/**
+ * Digests of the files of a directory tree, kept between runs in an index
+ * file, to find the files changed since the previous run.<br>
+ * {@link #update(Path)} lists the tree and compares the size, the
+ * modification time and the file key (the inode on Unix) of each file with
+ * the recorded ones: only the new files and the files whose metadata changed
+ * are read and digested, so a run costs a listing of the tree plus the
+ * reading of the changed files. A file whose metadata changed but whose
+ * digest is the same is not reported as modified.<br>
+ * The index is a binary file: a header, then the entries sorted by path, each
+ * path stored as the length of the prefix shared with the previous one and
+ * the rest of the path. It is replaced atomically when written.<br>
+ * A file that can't be read, or that is deleted while the tree is read, is
+ * logged and left out of the manifest, as if it were removed.<br>
+ * Not thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class DirectoryManifest {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectoryManifest.class.getName());
+
+    /**
+     * Default digest algorithm.
+     */
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+
+    /**
+     * Number of files digested simultaneously.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Start of an index file, with the version of the format.
+     */
+    private static final int MAGIC = 0x4D414E01;
+
+    private final String algorithm;
+
+    /**
+     * Entries by path relative to the root, with <code>/</code> separators.
+     */
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Build an empty manifest using {@link #DEFAULT_ALGORITHM}.
+     */
+    public DirectoryManifest() {
+        super();
+        this.algorithm = DEFAULT_ALGORITHM;
+    }
+
+    /**
+     * Build an empty manifest.
+     *
+     * @param algorithm
+     *            The digest algorithm.
+     * @throws NoSuchAlgorithmException
+     *             If the digest algorithm is not available.
+     */
+    public DirectoryManifest(String algorithm) throws NoSuchAlgorithmException {
+        super();
+        MessageDigest.getInstance(algorithm);
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Read a manifest from an index file.
+     *
+     * @param index
+     *            The index file.
+     * @return The manifest read, or an empty manifest using
+     *         {@link #DEFAULT_ALGORITHM} if the file doesn't exist.
+     * @throws IOException
+     *             If the file can't be read or is not an index.
+     */
+    public static DirectoryManifest read(Path index) throws IOException {
+        if (!Files.exists(index)) {
+            return new DirectoryManifest();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a manifest index.", index));
+            }
+            DirectoryManifest manifest = new DirectoryManifest(in.readUTF());
+            int count = in.readInt();
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                int shared = in.readUnsignedShort();
+                String path = previous.substring(0, shared) + in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                String fileKey = in.readUTF();
+                byte[] digest = new byte[in.readUnsignedByte()];
+                in.readFully(digest);
+                manifest.entries.put(path, new Entry(path, size, modified, fileKey.isEmpty() ? null : fileKey, digest));
+                previous = path;
+            }
+            return manifest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(String.format("The digest algorithm of %s is not available.", index), e);
+        }
+    }
+
+    /**
+     * Write the manifest to an index file. The file is written beside and
+     * then moved, so a reader never sees a partial index.
+     *
+     * @param index
+     *            The index file.
+     * @throws IOException
+     *             If the file can't be written.
+     */
+    public void write(Path index) throws IOException {
+        Path temporary = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(algorithm);
+            out.writeInt(entries.size());
+            String previous = "";
+            for (Entry entry : entries.values()) {
+                int shared = commonPrefix(previous, entry.path);
+                out.writeShort(shared);
+                out.writeUTF(entry.path.substring(shared));
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeUTF(entry.fileKey == null ? "" : entry.fileKey);
+                out.writeByte(entry.digest.length);
+                out.write(entry.digest);
+                previous = entry.path;
+            }
+        }
+        try {
+            Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(Math.min(a.length(), b.length()), 0xFFFF);
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Scan a directory tree, digest its new and changed files and record
+     * them in this manifest.
+     *
+     * @param root
+     *            The directory.
+     * @return The differences between the previous content of the manifest
+     *         and the tree.
+     * @throws IOException
+     *             If the root directory can't be read. The manifest is then
+     *             unchanged.
+     */
+    public Changes update(Path root) throws IOException {
+        Map<String, Entry> current = new TreeMap<>();
+        List<ScannedFile> changed = new ArrayList<>();
+        for (ScannedFile file : new DirectoryScanner().scan(root)) {
+            BasicFileAttributes attributes = file.getAttributes();
+            if (!attributes.isRegularFile()) {
+                continue;
+            }
+            String path = relativePath(file.getRelativePath());
+            Entry entry = entries.get(path);
+            if (entry != null && entry.size == attributes.size() && entry.modified == modified(attributes)
+                    && equals(entry.fileKey, fileKey(attributes))) {
+                current.put(path, entry);
+            } else {
+                changed.add(file);
+            }
+        }
+
+        for (Entry entry : digest(changed)) {
+            current.put(entry.path, entry);
+        }
+
+        List<String> added = new ArrayList<>();
+        List<String> modified = new ArrayList<>();
+        for (Entry entry : current.values()) {
+            Entry previous = entries.get(entry.path);
+            if (previous == null) {
+                added.add(entry.path);
+            } else if (!Arrays.equals(previous.digest, entry.digest)) {
+                modified.add(entry.path);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String path : entries.keySet()) {
+            if (!current.containsKey(path)) {
+                removed.add(path);
+            }
+        }
+
+        entries.clear();
+        entries.putAll(current);
+        return new Changes(added, removed, modified);
+    }
+
+    private List<Entry> digest(List<ScannedFile> files) throws IOException {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(DEFAULT_THREADS, files.size()), task -> {
+            Thread thread = new Thread(task, "DirectoryManifest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Entry>> futures = new ArrayList<>(files.size());
+            for (ScannedFile file : files) {
+                futures.add(pool.submit(() -> {
+                    BasicFileAttributes attributes = file.getAttributes();
+                    try {
+                        return new Entry(relativePath(file.getRelativePath()), attributes.size(),
+                                modified(attributes), fileKey(attributes), Hash.hash(file.getPath(), algorithm));
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, String.format("Can't read %s, it is left out.", file.getPath()), e);
+                        return null;
+                    }
+                }));
+            }
+            List<Entry> digested = new ArrayList<>(files.size());
+            for (Future<Entry> future : futures) {
+                Entry entry = future.get();
+                if (entry != null) {
+                    digested.add(entry);
+                }
+            }
+            return digested;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while digesting files.");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Can't digest the files.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String relativePath(Path path) {
+        StringBuilder builder = new StringBuilder();
+        for (Path name : path) {
+            if (builder.length() > 0) {
+                builder.append('/');
+            }
+            builder.append(name);
+        }
+        return builder.toString();
+    }
+
+    private static long modified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key == null ? null : key.toString();
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return The digest algorithm.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return The recorded files by path relative to the root, with
+     *         <code>/</code> separators, sorted by path.
+     */
+    public Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * A recorded file.
+     */
+    public static final class Entry {
+
+        private final String path;
+
+        private final long size;
+
+        private final long modified;
+
+        private final String fileKey;
+
+        private final byte[] digest;
+
+        private Entry(String path, long size, long modified, String fileKey, byte[] digest) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.digest = digest;
+        }
+
+        /**
+         * @return The path relative to the root, with <code>/</code>
+         *         separators.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The size in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return The modification time, in nanoseconds since the epoch.
+         */
+        public long getModifiedTime() {
+            return modified;
+        }
+
+        /**
+         * @return The key identifying the file on its file system, or
+         *         <code>null</code> if the file system has none.
+         */
+        public String getFileKey() {
+            return fileKey;
+        }
+
+        /**
+         * @return A copy of the digest of the content.
+         */
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        @Override
+        public String toString() {
+            return path + " " + Hash.bytesToHex(digest);
+        }
+    }
+
+    /**
+     * Differences between two states of a tree. Paths are relative to the
+     * root, with <code>/</code> separators, and sorted.
+     */
+    public static final class Changes {
+
+        private final List<String> added;
+
+        private final List<String> removed;
+
+        private final List<String> modified;
+
+        private Changes(List<String> added, List<String> removed, List<String> modified) {
+            this.added = Collections.unmodifiableList(added);
+            this.removed = Collections.unmodifiableList(removed);
+            this.modified = Collections.unmodifiableList(modified);
+        }
+
+        /**
+         * @return The new files.
+         */
+        public List<String> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return The files that disappeared.
+         */
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return The files whose content changed.
+         */
+        public List<String> getModified() {
+            return modified;
+        }
+
+        /**
+         * @return <code>true</code> if nothing changed.
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("added=%s, removed=%s, modified=%s", added, removed, modified);
+        }
+    }
+}
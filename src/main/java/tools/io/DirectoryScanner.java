@@ -0,0 +1,148 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * List the content of a directory tree in parallel.<br>
+ * Each directory is read by a fork/join task with
+ * {@link Files#newDirectoryStream(Path)}, which forks a task per
+ * subdirectory, so deep and wide trees are read by all the threads of the
+ * pool. The attributes of each entry are read once, while listing, and kept
+ * in its {@link ScannedFile}. Symbolic links are listed but not followed.<br>
+ * Entries that can't be read, such as files deleted during the scan or
+ * directories without access, are logged and skipped: only the root
+ * directory must be readable.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class DirectoryScanner {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectoryScanner.class.getName());
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Build a scanner using the common fork/join pool.
+     */
+    public DirectoryScanner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build a scanner.
+     *
+     * @param pool
+     *            The pool reading the directories.
+     */
+    public DirectoryScanner(ForkJoinPool pool) {
+        super();
+        this.pool = pool;
+    }
+
+    /**
+     * List all the files and directories under a directory, in no particular
+     * order.
+     *
+     * @param root
+     *            The directory to scan, not included in the result.
+     * @return The entries found.
+     * @throws IOException
+     *             If the root directory can't be read.
+     */
+    public List<ScannedFile> scan(Path root) throws IOException {
+        try {
+            return pool.invoke(new ScanTask(root, root));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * List all the files and directories under a directory, sorted by
+     * relative path: each directory is followed by its content.
+     *
+     * @param root
+     *            The directory to scan, not included in the result.
+     * @param order
+     *            The order of the names.
+     * @return The sorted entries.
+     * @throws IOException
+     *             If the root directory can't be read.
+     */
+    public List<ScannedFile> scan(Path root, FileOrder order) throws IOException {
+        List<ScannedFile> files = scan(root);
+        order.sortByPath(files, ScannedFile::getRelativePath);
+        return files;
+    }
+
+    /**
+     * Read a directory and fork the reading of its subdirectories.
+     */
+    private static final class ScanTask extends RecursiveTask<List<ScannedFile>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path root;
+
+        private final transient Path directory;
+
+        private ScanTask(Path root, Path directory) {
+            this.root = root;
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<ScannedFile> compute() {
+            List<ScannedFile> files = new ArrayList<>();
+            List<ScanTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, String.format("Can't read %s, it is skipped.", path), e);
+                        continue;
+                    }
+                    files.add(new ScannedFile(path, root.relativize(path), attributes));
+                    if (attributes.isDirectory()) {
+                        ScanTask subtask = new ScanTask(root, path);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                IOException cause = e instanceof IOException ? (IOException) e
+                        : ((DirectoryIteratorException) e).getCause();
+                if (directory == root) {
+                    for (ScanTask subtask : subtasks) {
+                        subtask.cancel(false);
+                    }
+                    throw new UncheckedIOException(cause);
+                }
+                LOGGER.log(Level.WARNING, String.format("Can't read the directory %s, it is skipped.", directory),
+                        cause);
+            }
+
+            for (ScanTask subtask : subtasks) {
+                files.addAll(subtask.join());
+            }
+            return files;
+        }
+    }
+}
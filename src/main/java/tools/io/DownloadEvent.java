@@ -0,0 +1,145 @@
+package tools.io;
+
+import java.net.URL;
+
+/**
+ * Description of a call of a {@link RessourceClient}, given to its
+ * {@link DownloadListener}.<br>
+ * The connect, first byte and transfer times are those of the last attempt,
+ * or -1 when it did not get so far (a cached response, a refused connection).
+ * The total time covers all the attempts and the waits between them. Byte
+ * counts cover all the attempts.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class DownloadEvent {
+
+    private final URL url;
+
+    private final int status;
+
+    private final long connectNanos;
+
+    private final long firstByteNanos;
+
+    private final long transferNanos;
+
+    private final long totalNanos;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private final int retries;
+
+    private final Exception failure;
+
+    DownloadEvent(URL url, int status, long connectNanos, long firstByteNanos, long transferNanos, long totalNanos,
+            long bytesRead, long bytesWritten, int retries, Exception failure) {
+        super();
+        this.url = url;
+        this.status = status;
+        this.connectNanos = connectNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.transferNanos = transferNanos;
+        this.totalNanos = totalNanos;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.retries = retries;
+        this.failure = failure;
+    }
+
+    /**
+     * @return The loaded URL.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return The host and port of the URL, as used to group the metrics.
+     */
+    public String getHost() {
+        return BatchDownloader.hostKey(url);
+    }
+
+    /**
+     * @return The HTTP status of the last response, or -1 if none was
+     *         received or the protocol is not HTTP.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The nanoseconds spent to open the connection, or -1.
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * @return The nanoseconds from the start of the last attempt to the
+     *         response headers, or -1.
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * @return The nanoseconds from the response headers to the end of the
+     *         body, or -1.
+     */
+    public long getTransferNanos() {
+        return transferNanos;
+    }
+
+    /**
+     * @return The nanoseconds of the whole call.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return The number of bytes received from the network, before decoding.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return The number of decoded bytes given to the caller.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return The number of attempts after the first one.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return The error ending the call, or <code>null</code> if it succeeded.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return <code>true</code> if the call succeeded.
+     */
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %d in %d ms (%d retries, %d/%d bytes)%s", url, status, totalNanos / 1_000_000L,
+                retries, bytesRead, bytesWritten, failure == null ? "" : " failed: " + failure);
+    }
+}
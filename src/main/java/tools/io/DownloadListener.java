@@ -0,0 +1,25 @@
+package tools.io;
+
+/**
+ * Notified at the end of each call of a {@link RessourceClient}, successful or
+ * not. Set with {@link RessourceClient.Builder#listener(DownloadListener)}.
+ * <br>
+ * Listeners are called by the thread doing the call, once all its attempts
+ * are over: they must be thread safe and fast. An exception thrown by a
+ * listener is logged and does not change the result of the call.<br>
+ * See {@link DownloadMetrics} for a listener aggregating the events by host.
+ *
+ * @author A. CANDIAN
+ *
+ */
+@FunctionalInterface
+public interface DownloadListener {
+
+    /**
+     * Called when a call ends.
+     *
+     * @param event
+     *            The description of the call.
+     */
+    void downloadCompleted(DownloadEvent event);
+}
@@ -0,0 +1,429 @@
+package tools.io;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link DownloadListener} aggregating the calls by host: counters of
+ * requests, failures, retries and bytes, and histograms of the connect, first
+ * byte, transfer and total times.<br>
+ * The statistics can be read directly, or through JMX once
+ * {@link #register(String)} was called. A metrics instance can be shared by
+ * several clients. Thread safe.<br>
+ * The number of hosts followed one by one is bounded: once it is reached, the
+ * calls to the other hosts are aggregated under {@link #OTHER_HOSTS}, so a
+ * crawler visiting millions of hosts keeps a fixed memory use. The totals
+ * remain exact.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class DownloadMetrics implements DownloadListener, DownloadMetricsMXBean {
+
+    /**
+     * Domain of the registered MBeans.
+     */
+    public static final String JMX_DOMAIN = "tools.io";
+
+    /**
+     * Default number of hosts followed one by one.
+     */
+    public static final int DEFAULT_MAX_HOSTS = 1000;
+
+    /**
+     * Name of the statistics aggregating the hosts beyond the maximum.
+     */
+    public static final String OTHER_HOSTS = "*";
+
+    private final int maxHosts;
+
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    private volatile Host other = new Host(OTHER_HOSTS);
+
+    private volatile ObjectName objectName;
+
+    /**
+     * Build metrics following up to {@link #DEFAULT_MAX_HOSTS} hosts.
+     */
+    public DownloadMetrics() {
+        this(DEFAULT_MAX_HOSTS);
+    }
+
+    /**
+     * Build metrics.
+     *
+     * @param maxHosts
+     *            The number of hosts followed one by one, the others being
+     *            aggregated under {@link #OTHER_HOSTS}.
+     */
+    public DownloadMetrics(int maxHosts) {
+        super();
+        if (maxHosts < 0) {
+            throw new IllegalArgumentException("The maximum number of hosts can't be negative.");
+        }
+        this.maxHosts = maxHosts;
+    }
+
+    @Override
+    public void downloadCompleted(DownloadEvent event) {
+        String name = event.getHost();
+        Host host = hosts.get(name);
+        if (host == null) {
+            // The bound may be exceeded by the threads adding a host at the same time.
+            host = hosts.size() < maxHosts ? hosts.computeIfAbsent(name, Host::new) : other;
+        }
+        host.record(event);
+    }
+
+    /**
+     * Register this instance in the platform MBean server, as
+     * <code>tools.io:type=DownloadMetrics,name=&lt;name&gt;</code>.
+     *
+     * @param name
+     *            The name distinguishing this instance.
+     * @return The name of the MBean.
+     * @throws JMException
+     *             If the name is invalid or already used.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName registered = new ObjectName(JMX_DOMAIN + ":type=DownloadMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+        this.objectName = registered;
+        return registered;
+    }
+
+    /**
+     * Remove this instance from the platform MBean server, if registered.
+     *
+     * @throws JMException
+     *             If it can't be removed.
+     */
+    public void unregister() throws JMException {
+        ObjectName registered = objectName;
+        if (registered != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registered)) {
+                server.unregisterMBean(registered);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        long total = other.requests.sum();
+        for (Host host : hosts.values()) {
+            total += host.requests.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getFailureCount() {
+        long total = other.failures.sum();
+        for (Host host : hosts.values()) {
+            total += host.failures.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getRetryCount() {
+        long total = other.retries.sum();
+        for (Host host : hosts.values()) {
+            total += host.retries.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesRead() {
+        long total = other.bytesRead.sum();
+        for (Host host : hosts.values()) {
+            total += host.bytesRead.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        long total = other.bytesWritten.sum();
+        for (Host host : hosts.values()) {
+            total += host.bytesWritten.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public List<HostStatistics> getHostStatistics() {
+        List<HostStatistics> statistics = new ArrayList<>(hosts.size() + 1);
+        for (Host host : hosts.values()) {
+            statistics.add(host.snapshot());
+        }
+        statistics.sort((a, b) -> a.getHost().compareTo(b.getHost()));
+        Host others = other;
+        if (others.requests.sum() > 0) {
+            statistics.add(others.snapshot());
+        }
+        return statistics;
+    }
+
+    /**
+     * Get the statistics of a host.
+     *
+     * @param host
+     *            The lower case host name and port, such as
+     *            <code>example.com:443</code>.
+     * @return The statistics, or <code>null</code> if no call was made to
+     *         this host or if it is aggregated under {@link #OTHER_HOSTS}.
+     */
+    public HostStatistics getHostStatistics(String host) {
+        Host metrics = OTHER_HOSTS.equals(host) ? other : hosts.get(host);
+        return metrics == null ? null : metrics.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        hosts.clear();
+        other = new Host(OTHER_HOSTS);
+    }
+
+    /**
+     * Live metrics of a host.
+     */
+    private static final class Host {
+
+        private final String name;
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder bytesRead = new LongAdder();
+
+        private final LongAdder bytesWritten = new LongAdder();
+
+        private final LatencyHistogram connect = new LatencyHistogram();
+
+        private final LatencyHistogram firstByte = new LatencyHistogram();
+
+        private final LatencyHistogram transfer = new LatencyHistogram();
+
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        private Host(String name) {
+            this.name = name;
+        }
+
+        private void record(DownloadEvent event) {
+            requests.increment();
+            if (!event.isSuccess()) {
+                failures.increment();
+            }
+            retries.add(event.getRetries());
+            bytesRead.add(event.getBytesRead());
+            bytesWritten.add(event.getBytesWritten());
+            connect.record(event.getConnectNanos());
+            firstByte.record(event.getFirstByteNanos());
+            transfer.record(event.getTransferNanos());
+            total.record(event.getTotalNanos());
+        }
+
+        private HostStatistics snapshot() {
+            return new HostStatistics(name, requests.sum(), failures.sum(), retries.sum(), bytesRead.sum(),
+                    bytesWritten.sum(), new Latency(connect), new Latency(firstByte), new Latency(transfer),
+                    new Latency(total));
+        }
+    }
+
+    /**
+     * Statistics of the calls to a host, at the time they were read.
+     */
+    public static final class HostStatistics {
+
+        private final String host;
+
+        private final long requests;
+
+        private final long failures;
+
+        private final long retries;
+
+        private final long bytesRead;
+
+        private final long bytesWritten;
+
+        private final Latency connect;
+
+        private final Latency firstByte;
+
+        private final Latency transfer;
+
+        private final Latency total;
+
+        private HostStatistics(String host, long requests, long failures, long retries, long bytesRead,
+                long bytesWritten, Latency connect, Latency firstByte, Latency transfer, Latency total) {
+            this.host = host;
+            this.requests = requests;
+            this.failures = failures;
+            this.retries = retries;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.connect = connect;
+            this.firstByte = firstByte;
+            this.transfer = transfer;
+            this.total = total;
+        }
+
+        /**
+         * @return The lower case host name and port.
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return The number of calls.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return The number of failed calls.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The number of attempts after the first ones.
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * @return The number of bytes received from the network.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return The number of decoded bytes given to the callers.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * @return The times spent to connect.
+         */
+        public Latency getConnect() {
+            return connect;
+        }
+
+        /**
+         * @return The times to the response headers.
+         */
+        public Latency getFirstByte() {
+            return firstByte;
+        }
+
+        /**
+         * @return The times to read the bodies.
+         */
+        public Latency getTransfer() {
+            return transfer;
+        }
+
+        /**
+         * @return The times of the whole calls.
+         */
+        public Latency getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * Summary of a distribution of times, in milliseconds. Percentiles are
+     * known within 12.5 %.
+     */
+    public static final class Latency {
+
+        private final long count;
+
+        private final double mean;
+
+        private final double p50;
+
+        private final double p95;
+
+        private final double p99;
+
+        private final double max;
+
+        private Latency(LatencyHistogram histogram) {
+            this.count = histogram.getCount();
+            this.mean = histogram.getMean();
+            this.p50 = histogram.getPercentile(0.5);
+            this.p95 = histogram.getPercentile(0.95);
+            this.p99 = histogram.getPercentile(0.99);
+            this.max = histogram.getMax();
+        }
+
+        /**
+         * @return The number of measured times.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The mean time.
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return The median time.
+         */
+        public double getP50() {
+            return p50;
+        }
+
+        /**
+         * @return The 95th percentile.
+         */
+        public double getP95() {
+            return p95;
+        }
+
+        /**
+         * @return The 99th percentile.
+         */
+        public double getP99() {
+            return p99;
+        }
+
+        /**
+         * @return The longest time.
+         */
+        public double getMax() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package tools.io;
+
+import java.util.List;
+
+/**
+ * JMX view of a {@link DownloadMetrics}.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public interface DownloadMetricsMXBean {
+
+    /**
+     * @return The number of calls.
+     */
+    long getRequestCount();
+
+    /**
+     * @return The number of failed calls.
+     */
+    long getFailureCount();
+
+    /**
+     * @return The number of attempts after the first ones.
+     */
+    long getRetryCount();
+
+    /**
+     * @return The number of bytes received from the network.
+     */
+    long getBytesRead();
+
+    /**
+     * @return The number of decoded bytes given to the callers.
+     */
+    long getBytesWritten();
+
+    /**
+     * @return The statistics of each host, sorted by host, then the
+     *         statistics of the hosts beyond the maximum, if any.
+     */
+    List<DownloadMetrics.HostStatistics> getHostStatistics();
+
+    /**
+     * Forget all the recorded calls.
+     */
+    void reset();
+}
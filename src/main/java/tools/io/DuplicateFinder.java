@@ -0,0 +1,318 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import tools.security.Hash;
+
+/**
+ * Find the files having the same content.<br>
+ * Files are compared in three steps, each one only reading the files still
+ * possibly equal after the previous one:
+ * <ol>
+ * <li>files are grouped by size, without reading them;</li>
+ * <li>the first and last {@link #BLOCK_SIZE} bytes of each file are read and
+ * summed with a CRC32. Files smaller than two blocks are read entirely and
+ * their digest computed at once with {@link Hash};</li>
+ * <li>the remaining candidates are digested with
+ * {@link Hash#hash(Path, String)}, which reads them through a fixed-size
+ * buffer.</li>
+ * </ol>
+ * The files of each step are read in parallel by a pool of a fixed number of
+ * threads, created for each search. A file that can't be read is logged and
+ * left out. Empty files are ignored.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class DuplicateFinder {
+
+    /**
+     * Default digest algorithm.
+     */
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+
+    /**
+     * Default number of files read simultaneously.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Size of the blocks read at the start and at the end of the files.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    private static final Logger LOGGER = Logger.getLogger(DuplicateFinder.class.getName());
+
+    private final String algorithm;
+
+    private final int threads;
+
+    /**
+     * Build a finder using {@link #DEFAULT_ALGORITHM} and
+     * {@link #DEFAULT_THREADS}.
+     */
+    public DuplicateFinder() {
+        super();
+        this.algorithm = DEFAULT_ALGORITHM;
+        this.threads = DEFAULT_THREADS;
+    }
+
+    /**
+     * Build a finder.
+     *
+     * @param algorithm
+     *            The digest algorithm comparing the contents.
+     * @param threads
+     *            The number of files read simultaneously.
+     * @throws NoSuchAlgorithmException
+     *             If the digest algorithm is not available.
+     */
+    public DuplicateFinder(String algorithm, int threads) throws NoSuchAlgorithmException {
+        super();
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1.");
+        }
+        MessageDigest.getInstance(algorithm);
+        this.algorithm = algorithm;
+        this.threads = threads;
+    }
+
+    /**
+     * Find the duplicated files under a directory.
+     *
+     * @param root
+     *            The directory to search.
+     * @return The groups of files having the same content, biggest files
+     *         first. The files of a group are sorted by path.
+     * @throws IOException
+     *             If a directory can't be read, or the search is interrupted.
+     */
+    public List<List<Path>> find(Path root) throws IOException {
+        List<Candidate> candidates = new ArrayList<>();
+        for (ScannedFile file : new DirectoryScanner().scan(root)) {
+            if (file.getAttributes().isRegularFile()) {
+                candidates.add(new Candidate(file.getPath(), file.getSize()));
+            }
+        }
+        return findCandidates(candidates);
+    }
+
+    /**
+     * Find the duplicated files among some files.
+     *
+     * @param files
+     *            The files to compare.
+     * @return The groups of files having the same content, biggest files
+     *         first. The files of a group are sorted by path.
+     * @throws IOException
+     *             If the search is interrupted.
+     */
+    public List<List<Path>> find(Collection<Path> files) throws IOException {
+        List<Candidate> candidates = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try {
+                if (Files.isRegularFile(file)) {
+                    candidates.add(new Candidate(file, Files.size(file)));
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Can't read the size of %s.", file), e);
+            }
+        }
+        return findCandidates(candidates);
+    }
+
+    private List<List<Path>> findCandidates(List<Candidate> candidates) throws IOException {
+        Map<Long, List<Candidate>> bySize = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.size > 0) {
+                bySize.computeIfAbsent(candidate.size, size -> new ArrayList<>()).add(candidate);
+            }
+        }
+        List<List<Candidate>> groups = new ArrayList<>();
+        for (List<Candidate> group : bySize.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "DuplicateFinder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            groups = refine(pool, groups, this::partialKey);
+            List<List<Candidate>> small = new ArrayList<>();
+            List<List<Candidate>> large = new ArrayList<>();
+            for (List<Candidate> group : groups) {
+                (group.get(0).size <= 2 * BLOCK_SIZE ? small : large).add(group);
+            }
+            small.addAll(refine(pool, large, this::digest));
+            groups = small;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Comparator<Candidate> byPath = Comparator.comparing(candidate -> candidate.path);
+        for (List<Candidate> group : groups) {
+            group.sort(byPath);
+        }
+        groups.sort(Comparator.comparingLong((List<Candidate> group) -> -group.get(0).size)
+                .thenComparing(group -> group.get(0), byPath));
+
+        List<List<Path>> duplicates = new ArrayList<>(groups.size());
+        for (List<Candidate> group : groups) {
+            List<Path> paths = new ArrayList<>(group.size());
+            for (Candidate candidate : group) {
+                paths.add(candidate.path);
+            }
+            duplicates.add(paths);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Split groups of candidates by a key computed in parallel.
+     *
+     * @param pool
+     *            The threads computing the keys.
+     * @param groups
+     *            The groups to split.
+     * @param key
+     *            Compute the key of a candidate.
+     * @return The groups of at least two candidates having the same key.
+     * @throws IOException
+     *             If the search is interrupted.
+     */
+    private static List<List<Candidate>> refine(ExecutorService pool, List<List<Candidate>> groups, KeyFunction key)
+            throws IOException {
+        List<List<Future<Object>>> futures = new ArrayList<>(groups.size());
+        for (List<Candidate> group : groups) {
+            List<Future<Object>> groupFutures = new ArrayList<>(group.size());
+            for (Candidate candidate : group) {
+                groupFutures.add(pool.submit(() -> key.apply(candidate)));
+            }
+            futures.add(groupFutures);
+        }
+
+        List<List<Candidate>> refined = new ArrayList<>();
+        for (int i = 0; i < groups.size(); i++) {
+            Map<Object, List<Candidate>> byKey = new LinkedHashMap<>();
+            for (int j = 0; j < groups.get(i).size(); j++) {
+                Candidate candidate = groups.get(i).get(j);
+                Object value = get(futures.get(i).get(j), candidate);
+                if (value != null) {
+                    byKey.computeIfAbsent(value, k -> new ArrayList<>()).add(candidate);
+                }
+            }
+            for (List<Candidate> group : byKey.values()) {
+                if (group.size() > 1) {
+                    refined.add(group);
+                }
+            }
+        }
+        return refined;
+    }
+
+    private static Object get(Future<Object> future, Candidate candidate) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while finding duplicates.");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            LOGGER.log(Level.WARNING, String.format("Can't read %s.", candidate.path), e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Sum the first and last blocks of a file, or digest it if it is not
+     * bigger than two blocks.
+     */
+    private Object partialKey(Candidate candidate) throws IOException, NoSuchAlgorithmException {
+        int length = (int) Math.min(candidate.size, 2 * BLOCK_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(candidate.path, StandardOpenOption.READ)) {
+            if (candidate.size <= 2 * BLOCK_SIZE) {
+                readFully(channel, buffer, 0, candidate);
+                return Hash.bytesToHex(Hash.hash(buffer.array(), algorithm));
+            }
+            buffer.limit(BLOCK_SIZE);
+            readFully(channel, buffer, 0, candidate);
+            buffer.limit(length);
+            readFully(channel, buffer, candidate.size - BLOCK_SIZE, candidate);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length);
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, Candidate candidate)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException(String.format("%s changed while being read.", candidate.path));
+            }
+            offset += read;
+        }
+    }
+
+    private Object digest(Candidate candidate) throws IOException, NoSuchAlgorithmException {
+        return Hash.bytesToHex(Hash.hash(candidate.path, algorithm));
+    }
+
+    /**
+     * Compute a key of a candidate.
+     */
+    @FunctionalInterface
+    private interface KeyFunction {
+        Object apply(Candidate candidate) throws IOException, NoSuchAlgorithmException;
+    }
+
+    /**
+     * A file and its size.
+     */
+    private static final class Candidate {
+
+        private final Path path;
+
+        private final long size;
+
+        private Candidate(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package tools.io;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link AsyncEngine} running the blocking loads of a client on an executor.
+ * Each running load holds a thread.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class ExecutorEngine implements AsyncEngine {
+
+    private static volatile ExecutorService shared;
+
+    private final RessourceClient client;
+
+    private final Executor executor;
+
+    /**
+     * Build an engine.
+     *
+     * @param client
+     *            The client doing the loads.
+     * @param executor
+     *            The executor running them, or <code>null</code> for a shared
+     *            pool of daemon threads.
+     */
+    ExecutorEngine(RessourceClient client, Executor executor) {
+        super();
+        this.client = client;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<RessourceResponse> load(URL urlRessource) {
+        return submit(() -> client.getRessource(urlRessource));
+    }
+
+    @Override
+    public CompletableFuture<RessourceResponse> load(URL urlRessource, OutputStream out) {
+        return submit(() -> client.getRessource(urlRessource, out));
+    }
+
+    private CompletableFuture<RessourceResponse> submit(RequestCoalescer.Loader loader) {
+        CompletableFuture<RessourceResponse> future = new CompletableFuture<>();
+        try {
+            (executor != null ? executor : sharedExecutor()).execute(() -> {
+                try {
+                    future.complete(loader.load());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static ExecutorService sharedExecutor() {
+        ExecutorService pool = shared;
+        if (pool == null) {
+            synchronized (ExecutorEngine.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = Executors.newCachedThreadPool(task -> {
+                        Thread thread = new Thread(task, "LoadRessource-async");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    shared = pool;
+                }
+            }
+        }
+        return pool;
+    }
+}
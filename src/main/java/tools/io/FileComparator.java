@@ -1,15 +1,39 @@
 package tools.io;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 /**
- * Comparator to sort files alphabetically.
+ * Comparator to sort files by name, alphabetically by default, or with
+ * another {@link FileOrder}.
  * 
  * @author A. CANDIAN
  *
  */
 public class FileComparator implements Comparator<File> {
+
+    private final FileOrder order;
+
+    /**
+     * Build a comparator sorting files alphabetically.
+     */
+    public FileComparator() {
+        this(FileOrder.LEXICOGRAPHIC);
+    }
+
+    /**
+     * Build a comparator sorting files with an order.
+     * 
+     * @param order
+     *            The order of the names.
+     */
+    public FileComparator(FileOrder order) {
+        super();
+        this.order = order;
+    }
+
     /**
      * Do a comparison using File.getName().
      * 
@@ -21,6 +45,19 @@ public class FileComparator implements Comparator<File> {
     @Override
     public int compare(File o1, File o2) {
 
-        return o1.getName().compareTo(o2.getName());
+        return order.compare(o1.getName(), o2.getName());
+    }
+
+    /**
+     * Sort files in the order of this comparator. The name and the sort key of
+     * each file are computed once, which is much faster than
+     * {@link Arrays#sort(Object[], Comparator)} for large arrays.
+     * 
+     * @param files
+     *            The files to sort in place.
+     */
+    public void sort(File[] files) {
+        List<File> list = Arrays.asList(files);
+        order.sort(list, File::getName);
     }
 }
@@ -0,0 +1,299 @@
+package tools.io;
+
+import java.nio.file.Path;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Order of file names and relative paths.<br>
+ * Three orders are available:
+ * <ul>
+ * <li>{@link #LEXICOGRAPHIC}: the order of {@link String#compareTo(String)},
+ * as {@link FileComparator} always did;</li>
+ * <li>{@link #NATURAL}: numbers are compared by value, so
+ * <code>file2</code> comes before <code>file10</code>;</li>
+ * <li>{@link #collated(Locale)}: natural order where the text is compared
+ * with the {@link Collator} of a locale.</li>
+ * </ul>
+ * Paths are compared component by component, so a directory is followed by
+ * its content. Names equal for the order (<code>a01</code> and
+ * <code>a1</code>) are ordered lexicographically.<br>
+ * Comparing two names builds their keys each time: to sort many names, use
+ * {@link #sort(List, Function)}, which builds each key once, in parallel,
+ * and sorts the keys with {@link Arrays#parallelSort(Object[])}. Orders are
+ * immutable and thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class FileOrder {
+
+    /**
+     * Plain lexicographic order.
+     */
+    public static final FileOrder LEXICOGRAPHIC = new FileOrder(false, null);
+
+    /**
+     * Natural order, numbers compared by value.
+     */
+    public static final FileOrder NATURAL = new FileOrder(true, null);
+
+    /**
+     * Separator of path components in the keys, lower than any character.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * Marker of a number in the keys: the digit zero, so numbers keep their
+     * place among the other characters.
+     */
+    private static final char NUMBER = '0';
+
+    /**
+     * Separator of path components in the collated keys.
+     */
+    private static final Object SEPARATOR_RUN = new Object();
+
+    private final boolean natural;
+
+    private final ThreadLocal<Collator> collator;
+
+    private FileOrder(boolean natural, Locale locale) {
+        this.natural = natural;
+        this.collator = locale == null ? null : ThreadLocal.withInitial(() -> Collator.getInstance(locale));
+    }
+
+    /**
+     * Natural order comparing the text with the rules of a locale.
+     *
+     * @param locale
+     *            The locale.
+     * @return A new order.
+     */
+    public static FileOrder collated(Locale locale) {
+        return new FileOrder(true, locale);
+    }
+
+    /**
+     * Compare two names.
+     *
+     * @param a
+     *            First name.
+     * @param b
+     *            Second name.
+     * @return A negative number, zero or a positive number as the first name
+     *         is before, equal or after the second one.
+     */
+    public int compare(String a, String b) {
+        if (!natural) {
+            return a.compareTo(b);
+        }
+        return key(a, a, null).compareTo(key(b, b, null));
+    }
+
+    /**
+     * @return A comparator of names using this order.
+     */
+    public Comparator<String> comparator() {
+        return this::compare;
+    }
+
+    /**
+     * Sort items by name, building the key of each name once.
+     *
+     * @param <T>
+     *            Type of the items.
+     * @param items
+     *            The items to sort in place.
+     * @param name
+     *            Give the name of an item.
+     */
+    public <T> void sort(List<T> items, Function<? super T, String> name) {
+        sortByKey(items, item -> {
+            String value = name.apply(item);
+            return key(value, value, item);
+        });
+    }
+
+    /**
+     * Sort items by relative path, building the key of each path once.
+     *
+     * @param <T>
+     *            Type of the items.
+     * @param items
+     *            The items to sort in place.
+     * @param path
+     *            Give the path of an item.
+     */
+    public <T> void sortByPath(List<T> items, Function<? super T, Path> path) {
+        sortByKey(items, item -> {
+            Path value = path.apply(item);
+            String[] names = new String[value.getNameCount()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = value.getName(i).toString();
+            }
+            return key(String.join(String.valueOf(SEPARATOR), names), value.toString(), item);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void sortByKey(List<T> items, Function<T, SortKey> keyOf) {
+        SortKey[] keys = new SortKey[items.size()];
+        Object[] values = items.toArray();
+        Arrays.parallelSetAll(keys, i -> keyOf.apply((T) values[i]));
+        Arrays.parallelSort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            items.set(i, (T) keys[i].item);
+        }
+    }
+
+    /**
+     * Build the key of a name.
+     *
+     * @param name
+     *            The name, path components separated by {@link #SEPARATOR}.
+     * @param original
+     *            The text ordering the names equal for this order.
+     * @param item
+     *            The item carried by the key.
+     * @return The key.
+     */
+    private SortKey key(String name, String original, Object item) {
+        if (!natural) {
+            return new SortKey(name, null, original, item);
+        }
+        if (collator == null) {
+            return new SortKey(encode(name), null, original, item);
+        }
+        return new SortKey(null, runs(name), original, item);
+    }
+
+    /**
+     * Encode a name so that the lexicographic order of the encoded names is
+     * the natural order: each number is replaced by {@link #NUMBER}, its
+     * length without leading zeros, and its significant digits.
+     *
+     * @param name
+     *            The name.
+     * @return The encoded name.
+     */
+    static String encode(String name) {
+        StringBuilder encoded = new StringBuilder(name.length() + 8);
+        int length = name.length();
+        int i = 0;
+        while (i < length) {
+            char c = name.charAt(i);
+            if (!isDigit(c)) {
+                encoded.append(c);
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < length && isDigit(name.charAt(end))) {
+                end++;
+            }
+            appendNumber(encoded, name, i, end);
+            i = end;
+        }
+        return encoded.toString();
+    }
+
+    private Object[] runs(String name) {
+        Collator current = collator.get();
+        List<Object> runs = new ArrayList<>();
+        int length = name.length();
+        int i = 0;
+        while (i < length) {
+            char c = name.charAt(i);
+            int end = i + 1;
+            if (c == SEPARATOR) {
+                runs.add(SEPARATOR_RUN);
+            } else if (isDigit(c)) {
+                while (end < length && isDigit(name.charAt(end))) {
+                    end++;
+                }
+                runs.add(appendNumber(new StringBuilder(), name, i, end).toString());
+            } else {
+                while (end < length && !isDigit(name.charAt(end)) && name.charAt(end) != SEPARATOR) {
+                    end++;
+                }
+                runs.add(current.getCollationKey(name.substring(i, end)));
+            }
+            i = end;
+        }
+        return runs.toArray();
+    }
+
+    private static StringBuilder appendNumber(StringBuilder encoded, String name, int start, int end) {
+        int first = start;
+        while (first < end - 1 && name.charAt(first) == '0') {
+            first++;
+        }
+        return encoded.append(NUMBER).append((char) (end - first)).append(name, first, end);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Key of a name, built once and compared many times.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+
+        private final String encoded;
+
+        private final Object[] runs;
+
+        private final String original;
+
+        private final Object item;
+
+        private SortKey(String encoded, Object[] runs, String original, Object item) {
+            this.encoded = encoded;
+            this.runs = runs;
+            this.original = original;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            int result = encoded != null ? encoded.compareTo(other.encoded) : compareRuns(runs, other.runs);
+            return result != 0 ? result : original.compareTo(other.original);
+        }
+
+        private static int compareRuns(Object[] a, Object[] b) {
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                int result = rank(a[i]) - rank(b[i]);
+                if (result == 0) {
+                    if (a[i] instanceof String) {
+                        result = ((String) a[i]).compareTo((String) b[i]);
+                    } else if (a[i] instanceof CollationKey) {
+                        result = ((CollationKey) a[i]).compareTo((CollationKey) b[i]);
+                    }
+                }
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return a.length - b.length;
+        }
+
+        /**
+         * Separators first, then numbers, then text.
+         */
+        private static int rank(Object run) {
+            if (run == SEPARATOR_RUN) {
+                return 0;
+            }
+            return run instanceof String ? 1 : 2;
+        }
+    }
+}
@@ -0,0 +1,731 @@
+package tools.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import tools.security.Hash;
+
+/**
+ * On disk cache of HTTP responses, used by a {@link RessourceClient}.<br>
+ * Responses carrying an <code>ETag</code>, a <code>Last-Modified</code> date
+ * or a freshness lifetime (<code>Cache-Control: max-age</code> or
+ * <code>Expires</code>) are stored with their headers. A fresh entry is served
+ * without any request, a stale one is revalidated with
+ * <code>If-None-Match</code>/<code>If-Modified-Since</code> and served from
+ * disk on a <code>304 Not Modified</code>.<br>
+ * The total size of the stored bodies is kept under a budget by removing the
+ * least recently used entries. The index survives restarts: it is rebuilt from
+ * the directory content.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class HttpCache {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpCache.class.getName());
+
+    private static final int MAGIC = 0x48434531;
+
+    private static final String META = ".meta";
+
+    private static final String BODY = ".body";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    /**
+     * Entries by key, in access order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong revalidations = new AtomicLong();
+
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Open a cache, creating its directory if needed, and load the entries
+     * already stored in it.
+     *
+     * @param directory
+     *            The directory holding the cached responses.
+     * @param maxBytes
+     *            The maximum total size of the cached bodies.
+     * @throws IOException
+     *             If the directory can't be created or read.
+     */
+    public HttpCache(Path directory, long maxBytes) throws IOException {
+        super();
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive.");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        Files.createDirectories(directory);
+        load();
+    }
+
+    /**
+     * @return The number of requests served from the cache, with or without
+     *         revalidation.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of requests which content was downloaded.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of hits that needed a <code>304 Not Modified</code>
+     *         response from the server.
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return The number of content bytes served from the cache instead of the
+     *         network.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return The total size of the cached bodies.
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    /**
+     * @return The number of cached responses.
+     */
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Remove all the cached responses.
+     *
+     * @throws IOException
+     *             If a file can't be deleted.
+     */
+    public void clear() throws IOException {
+        List<Entry> removed;
+        synchronized (entries) {
+            removed = new ArrayList<>(entries.values());
+            entries.clear();
+            size = 0;
+        }
+        for (Entry entry : removed) {
+            delete(entry.key);
+        }
+    }
+
+    /**
+     * Tell if the responses of an URL can be cached.
+     *
+     * @param url
+     *            The URL.
+     * @return <code>true</code> for HTTP and HTTPS URLs.
+     */
+    static boolean accepts(URL url) {
+        String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    /**
+     * Get the entry of an URL.
+     *
+     * @param url
+     *            The URL.
+     * @return The entry, or <code>null</code> if the URL is not cached.
+     */
+    Entry lookup(URL url) {
+        synchronized (entries) {
+            return entries.get(key(url));
+        }
+    }
+
+    /**
+     * Write the body of an entry to a stream, without closing it, and count a
+     * hit.
+     *
+     * @param entry
+     *            The entry to serve.
+     * @param out
+     *            The stream to write the body.
+     * @param revalidated
+     *            <code>true</code> if a request was needed to validate the
+     *            entry.
+     * @return The response, or <code>null</code> if the entry was removed in
+     *         the meantime.
+     * @throws IOException
+     *             If the body can't be copied.
+     */
+    RessourceResponse serve(Entry entry, OutputStream out, boolean revalidated) throws IOException {
+        FileChannel in;
+        try {
+            in = FileChannel.open(body(entry.key), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        long copied;
+        try {
+            ResponseBuffer.expect(out, entry.bodySize);
+            copied = LoadRessource.copy(in, out);
+        } finally {
+            in.close();
+        }
+
+        hits.incrementAndGet();
+        if (revalidated) {
+            revalidations.incrementAndGet();
+        }
+        bytesSaved.addAndGet(copied);
+
+        return new RessourceResponse(entry.url, HttpURLConnection.HTTP_OK, entry.headers, 0, copied, null);
+    }
+
+    /**
+     * Record the new freshness of an entry after a
+     * <code>304 Not Modified</code> response.
+     *
+     * @param entry
+     *            The revalidated entry.
+     * @param connection
+     *            The connection which received the response.
+     * @return The updated entry.
+     */
+    Entry revalidate(Entry entry, URLConnection connection) {
+        Entry updated = new Entry(entry.key, entry.url, entry.etag, entry.lastModified,
+                expiration(connection, System.currentTimeMillis()), entry.bodySize, entry.headers);
+        try {
+            writeMeta(updated);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Unable to update the cache entry of %s.", entry.url), e);
+        }
+        synchronized (entries) {
+            if (entries.get(entry.key) == entry) {
+                entries.put(entry.key, updated);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Create a sink storing a response in the cache while it is written to a
+     * stream.
+     *
+     * @param url
+     *            The requested URL.
+     * @param out
+     *            The stream receiving the content.
+     * @return A new writer, {@link Writer#commit()} or
+     *         {@link Writer#discard()} must be called once the transfer is
+     *         over.
+     */
+    Writer newWriter(URL url, OutputStream out) {
+        return new Writer(url, out);
+    }
+
+    /**
+     * Count a request which content had to be downloaded.
+     */
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Add an entry whose files are written, and evict the least recently used
+     * entries if the budget is exceeded.
+     *
+     * @param entry
+     *            The new entry.
+     */
+    private void add(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                size -= previous.bodySize;
+            }
+            size += entry.bodySize;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (size > maxBytes && eldest.hasNext()) {
+                Entry candidate = eldest.next();
+                if (candidate != entry) {
+                    eldest.remove();
+                    size -= candidate.bodySize;
+                    evicted.add(candidate);
+                }
+            }
+        }
+
+        for (Entry candidate : evicted) {
+            try {
+                delete(candidate.key);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Unable to evict the cache entry of %s.", candidate.url), e);
+            }
+        }
+    }
+
+    /**
+     * Remove an entry whose files may be inconsistent.
+     *
+     * @param key
+     *            The key of the entry.
+     */
+    private void forget(String key) {
+        synchronized (entries) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                size -= previous.bodySize;
+            }
+        }
+        try {
+            delete(key);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Unable to delete the cache entry %s.", key), e);
+        }
+    }
+
+    /**
+     * Rebuild the index from the meta files, the oldest first.
+     *
+     * @throws IOException
+     *             If the directory can't be listed.
+     */
+    private void load() throws IOException {
+        List<Path> metas = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + META)) {
+            for (Path meta : stream) {
+                metas.add(meta);
+            }
+        }
+        Map<Path, Long> times = new LinkedHashMap<>();
+        for (Path meta : metas) {
+            times.put(meta, Files.getLastModifiedTime(meta).toMillis());
+        }
+        metas.sort(Comparator.comparing(times::get));
+
+        List<Entry> loaded = new ArrayList<>();
+        for (Path meta : metas) {
+            String fileName = meta.getFileName().toString();
+            String key = fileName.substring(0, fileName.length() - META.length());
+            try {
+                Entry entry = readMeta(key);
+                if (Files.size(body(key)) == entry.bodySize) {
+                    loaded.add(entry);
+                } else {
+                    delete(key);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Dropping unreadable cache entry %s.", key), e);
+                delete(key);
+            }
+        }
+
+        for (Entry entry : loaded) {
+            add(entry);
+        }
+    }
+
+    private Entry readMeta(String key) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(meta(key)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache entry.");
+            }
+            URL url = new URL(in.readUTF());
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            long expiresAt = in.readLong();
+            long bodySize = in.readLong();
+
+            int fieldCount = in.readInt();
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (int i = 0; i < fieldCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, Collections.unmodifiableList(values));
+            }
+
+            return new Entry(key, url, etag, lastModified, expiresAt, bodySize, Collections.unmodifiableMap(headers));
+        }
+    }
+
+    private void writeMeta(Entry entry) throws IOException {
+        Path temp = Files.createTempFile(directory, entry.key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(entry.url.toString());
+                out.writeUTF(entry.etag == null ? "" : entry.etag);
+                out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+                out.writeLong(entry.expiresAt);
+                out.writeLong(entry.bodySize);
+
+                out.writeInt(entry.headers.size());
+                for (Map.Entry<String, List<String>> field : entry.headers.entrySet()) {
+                    out.writeUTF(field.getKey());
+                    out.writeInt(field.getValue().size());
+                    for (String value : field.getValue()) {
+                        out.writeUTF(value);
+                    }
+                }
+            }
+            Files.move(temp, meta(entry.key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void delete(String key) throws IOException {
+        Files.deleteIfExists(meta(key));
+        Files.deleteIfExists(body(key));
+    }
+
+    private Path meta(String key) {
+        return directory.resolve(key + META);
+    }
+
+    private Path body(String key) {
+        return directory.resolve(key + BODY);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String key(URL url) {
+        try {
+            return Hash.bytesToHex(Hash.hash(url.toString().getBytes(StandardCharsets.UTF_8), "SHA-1"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is a mandatory algorithm.", e);
+        }
+    }
+
+    /**
+     * Compute when a response stops being fresh, from its
+     * <code>Cache-Control</code> or <code>Expires</code> header.
+     *
+     * @param connection
+     *            The connection which received the response.
+     * @param now
+     *            The reception time.
+     * @return The expiration time, 0 if the response must always be
+     *         revalidated.
+     */
+    static long expiration(URLConnection connection, long now) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                String trimmed = directive.trim();
+                if ("no-cache".equals(trimmed) || "must-revalidate".equals(trimmed)) {
+                    return 0;
+                }
+                if (trimmed.startsWith("max-age=")) {
+                    try {
+                        return now + Long.parseLong(trimmed.substring("max-age=".length()).trim()) * 1000;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return connection.getExpiration();
+    }
+
+    /**
+     * Tell if a response may be stored.
+     *
+     * @param connection
+     *            The connection which received the response.
+     * @return <code>true</code> if the response can be stored.
+     * @throws IOException
+     *             If the status can't be read.
+     */
+    private static boolean storable(URLConnection connection) throws IOException {
+        if (!(connection instanceof HttpURLConnection)
+                || ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_OK) {
+            return false;
+        }
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-store")) {
+            return false;
+        }
+        String vary = connection.getHeaderField("Vary");
+        if (vary != null && !"accept-encoding".equalsIgnoreCase(vary.trim())) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A cached response.
+     */
+    static final class Entry {
+
+        private final String key;
+
+        private final URL url;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private final long expiresAt;
+
+        private final long bodySize;
+
+        private final Map<String, List<String>> headers;
+
+        private Entry(String key, URL url, String etag, String lastModified, long expiresAt, long bodySize,
+                Map<String, List<String>> headers) {
+            this.key = key;
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            this.bodySize = bodySize;
+            this.headers = headers;
+        }
+
+        /**
+         * @return <code>true</code> if the entry can be served without
+         *         revalidation.
+         */
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        /**
+         * @return The conditional request headers validating this entry.
+         */
+        Map<String, String> getValidators() {
+            Map<String, String> validators = new LinkedHashMap<>();
+            if (etag != null) {
+                validators.put("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                validators.put("If-Modified-Since", lastModified);
+            }
+            return validators;
+        }
+    }
+
+    /**
+     * Copy a response content to a temporary file while it is written to the
+     * caller stream. The copy is abandoned if the response can't be stored or
+     * exceeds the cache budget. Storage failures are logged and never reach
+     * the caller: the response is still written to its stream, only the
+     * caching is given up.
+     */
+    final class Writer implements ResponseSink {
+
+        private final URL url;
+
+        private final OutputStream out;
+
+        private OutputStream stream;
+
+        private Path temp;
+
+        private OutputStream file;
+
+        private long written;
+
+        private Entry pending;
+
+        private Writer(URL url, OutputStream out) {
+            this.url = url;
+            this.out = out;
+        }
+
+        @Override
+        public OutputStream open(URLConnection connection) throws IOException {
+            if (stream != null) {
+                return stream;
+            }
+            if (connection.getContentEncoding() == null) {
+                ResponseBuffer.expect(out, connection.getContentLengthLong());
+            }
+            if (!storable(connection)) {
+                stream = out;
+                return stream;
+            }
+
+            long expiresAt = expiration(connection, System.currentTimeMillis());
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            if (etag == null && lastModified == null && expiresAt == 0) {
+                stream = out;
+                return stream;
+            }
+
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+                if (field.getKey() != null) {
+                    headers.put(field.getKey(), field.getValue());
+                }
+            }
+            pending = new Entry(key(url), url, etag, lastModified, expiresAt, 0,
+                    Collections.unmodifiableMap(headers));
+            try {
+                temp = Files.createTempFile(directory, pending.key, ".tmp");
+                file = new BufferedOutputStream(Files.newOutputStream(temp));
+            } catch (IOException e) {
+                abandon(e);
+                stream = out;
+                return stream;
+            }
+
+            stream = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    if (file != null) {
+                        written += len;
+                        if (written > maxBytes) {
+                            discard();
+                        } else {
+                            try {
+                                file.write(b, off, len);
+                            } catch (IOException e) {
+                                abandon(e);
+                            }
+                        }
+                    }
+                }
+            };
+            return stream;
+        }
+
+        /**
+         * Drop the copy and write the next response from its start, if the
+         * caller stream can restart. The next response decides again whether
+         * it is stored.
+         */
+        @Override
+        public boolean restart() {
+            discard();
+            stream = null;
+            written = 0;
+            return ResponseBuffer.reset(out);
+        }
+
+        /**
+         * Store the copied response, if any. A failure is logged and leaves
+         * the URL uncached.
+         */
+        void commit() {
+            if (file == null) {
+                return;
+            }
+            Entry entry = new Entry(pending.key, url, pending.etag, pending.lastModified, pending.expiresAt, written,
+                    pending.headers);
+            boolean moved = false;
+            try {
+                file.close();
+                file = null;
+                Files.move(temp, body(entry.key), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+                writeMeta(entry);
+                add(entry);
+            } catch (IOException e) {
+                abandon(e);
+                if (moved) {
+                    forget(entry.key);
+                }
+            } finally {
+                discard();
+            }
+        }
+
+        /**
+         * Drop the copied response, if any. A failure is logged.
+         */
+        void discard() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, String.format("Unable to close the cache copy of %s.", url), e);
+                }
+                file = null;
+            }
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, String.format("Unable to delete the cache copy of %s.", url), e);
+                }
+                temp = null;
+            }
+        }
+
+        /**
+         * Give up the caching of the response after a storage failure.
+         */
+        private void abandon(IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Unable to cache %s, it is loaded without caching.", url), e);
+            discard();
+        }
+    }
+}
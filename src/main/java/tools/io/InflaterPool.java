@@ -0,0 +1,59 @@
+package tools.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pool of raw (<code>nowrap</code>) {@link Inflater}, reused to avoid
+ * allocating and freeing native zlib state for each compressed response.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class InflaterPool {
+
+    /**
+     * Maximum number of idle inflaters kept.
+     */
+    private static final int MAX_IDLE = 64;
+
+    private static final Queue<Inflater> IDLE = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger IDLE_COUNT = new AtomicInteger();
+
+    private InflaterPool() {
+        super();
+    }
+
+    /**
+     * Take an idle inflater, or create one.
+     *
+     * @return A raw inflater, ready to use.
+     */
+    static Inflater acquire() {
+        Inflater inflater = IDLE.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        IDLE_COUNT.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Give back an inflater. It is reset, or freed if the pool is full.
+     *
+     * @param inflater
+     *            An inflater obtained from {@link #acquire()}, not used after.
+     */
+    static void release(Inflater inflater) {
+        inflater.reset();
+        if (IDLE_COUNT.incrementAndGet() <= MAX_IDLE) {
+            IDLE.offer(inflater);
+        } else {
+            IDLE_COUNT.decrementAndGet();
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package tools.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Stream inflating gzip, zlib or raw deflate data with a pooled
+ * {@link Inflater}.<br>
+ * The gzip and zlib wrappers are parsed here and their checksums verified, so
+ * only raw inflaters are needed. The inflater goes back to the
+ * {@link InflaterPool} when the stream is closed. An empty source is read as
+ * empty data, whatever the format.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class InflatingInputStream extends InputStream {
+
+    /**
+     * Supported formats.
+     */
+    enum Format {
+        /**
+         * RFC 1952 members, possibly concatenated.
+         */
+        GZIP,
+        /**
+         * RFC 1950 zlib stream.
+         */
+        ZLIB,
+        /**
+         * RFC 1951 data without wrapper.
+         */
+        RAW,
+        /**
+         * HTTP <code>deflate</code>: zlib, or raw when no valid zlib header is
+         * found.
+         */
+        DEFLATE
+    }
+
+    private static final int INPUT_SIZE = 8192;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private static final int FHCRC = 2;
+
+    private static final int FEXTRA = 4;
+
+    private static final int FNAME = 8;
+
+    private static final int FCOMMENT = 16;
+
+    private final InputStream source;
+
+    private final byte[] input = new byte[INPUT_SIZE];
+
+    private int inPos;
+
+    private int inLen;
+
+    private Format format;
+
+    private Inflater inflater;
+
+    private Checksum checksum;
+
+    private boolean eof;
+
+    private final byte[] single = new byte[1];
+
+    /**
+     * Read the header of the source.
+     *
+     * @param source
+     *            The compressed stream.
+     * @param format
+     *            The expected format.
+     * @throws IOException
+     *             If the header is invalid.
+     */
+    InflatingInputStream(InputStream source, Format format) throws IOException {
+        super();
+        this.source = source;
+        this.inflater = InflaterPool.acquire();
+        try {
+            if (!ensure(1)) {
+                eof = true;
+            } else {
+                this.format = readHeader(format);
+                inflater.setInput(input, inPos, inLen - inPos);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (inflater == null) {
+            throw new IOException("Stream closed.");
+        }
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        while (true) {
+            int n;
+            try {
+                n = inflater.inflate(b, off, len);
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage() == null ? "Invalid compressed data." : e.getMessage());
+            }
+            if (n > 0) {
+                if (checksum != null) {
+                    checksum.update(b, off, n);
+                }
+                return n;
+            }
+
+            if (inflater.finished()) {
+                inPos = inLen - inflater.getRemaining();
+                readTrailer();
+                if (!nextMember()) {
+                    eof = true;
+                    return -1;
+                }
+            } else if (inflater.needsDictionary()) {
+                throw new ZipException("Preset dictionaries are not supported.");
+            } else if (inflater.needsInput()) {
+                inPos = 0;
+                inLen = source.read(input, 0, input.length);
+                if (inLen == -1) {
+                    inLen = 0;
+                    throw new EOFException("Unexpected end of compressed data.");
+                }
+                inflater.setInput(input, 0, inLen);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            InflaterPool.release(inflater);
+            inflater = null;
+            source.close();
+        }
+    }
+
+    private Format readHeader(Format expected) throws IOException {
+        Format actual = expected;
+        if (expected == Format.DEFLATE) {
+            actual = ensure(2) && isZlibHeader(input[inPos] & 0xff, input[inPos + 1] & 0xff) ? Format.ZLIB
+                    : Format.RAW;
+        }
+
+        switch (actual) {
+        case GZIP:
+            readGzipHeader();
+            checksum = new CRC32();
+            break;
+        case ZLIB:
+            int cmf = readByte();
+            int flg = readByte();
+            if (!isZlibHeader(cmf, flg)) {
+                throw new ZipException("Not in zlib format.");
+            }
+            if ((flg & 0x20) != 0) {
+                throw new ZipException("Preset dictionaries are not supported.");
+            }
+            checksum = new Adler32();
+            break;
+        default:
+            checksum = null;
+            break;
+        }
+        return actual;
+    }
+
+    private static boolean isZlibHeader(int cmf, int flg) {
+        return (cmf & 0x0f) == 8 && (cmf >>> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    private void readGzipHeader() throws IOException {
+        if (readUShortLE() != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format.");
+        }
+        if (readByte() != 8) {
+            throw new ZipException("Unsupported compression method.");
+        }
+        int flags = readByte();
+        // MTIME, XFL and OS.
+        skipBytes(6);
+        if ((flags & FEXTRA) != 0) {
+            skipBytes(readUShortLE());
+        }
+        if ((flags & FNAME) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FHCRC) != 0) {
+            skipBytes(2);
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        if (format == Format.GZIP) {
+            long crc = readUIntLE();
+            long size = readUIntLE();
+            if (crc != checksum.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer.");
+            }
+            if (size != (inflater.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer.");
+            }
+        } else if (format == Format.ZLIB) {
+            long adler = ((long) readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+            if (adler != checksum.getValue()) {
+                throw new ZipException("Corrupt zlib trailer.");
+            }
+        }
+    }
+
+    /**
+     * Start the next gzip member, if any. Trailing data which is not a gzip
+     * member is ignored, as {@link java.util.zip.GZIPInputStream} does.
+     */
+    private boolean nextMember() throws IOException {
+        if (format != Format.GZIP || !ensure(2)
+                || ((input[inPos] & 0xff) | ((input[inPos + 1] & 0xff) << 8)) != GZIP_MAGIC) {
+            return false;
+        }
+        inflater.reset();
+        checksum.reset();
+        readGzipHeader();
+        inflater.setInput(input, inPos, inLen - inPos);
+        return true;
+    }
+
+    /**
+     * Make sure some bytes are buffered.
+     *
+     * @param n
+     *            The number of bytes needed, at most {@link #INPUT_SIZE}.
+     * @return <code>false</code> if the source ended before.
+     */
+    private boolean ensure(int n) throws IOException {
+        if (inLen - inPos >= n) {
+            return true;
+        }
+        System.arraycopy(input, inPos, input, 0, inLen - inPos);
+        inLen -= inPos;
+        inPos = 0;
+        while (inLen < n) {
+            int read = source.read(input, inLen, input.length - inLen);
+            if (read == -1) {
+                return false;
+            }
+            inLen += read;
+        }
+        return true;
+    }
+
+    private int readByte() throws IOException {
+        if (!ensure(1)) {
+            throw new EOFException("Unexpected end of compressed data.");
+        }
+        return input[inPos++] & 0xff;
+    }
+
+    private int readUShortLE() throws IOException {
+        return readByte() | (readByte() << 8);
+    }
+
+    private long readUIntLE() throws IOException {
+        return readUShortLE() | ((long) readUShortLE() << 16);
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readByte();
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        while (readByte() != 0) {
+            // Skip the string.
+        }
+    }
+}
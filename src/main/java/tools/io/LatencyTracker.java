@@ -0,0 +1,78 @@
+package tools.io;
+
+import java.util.Arrays;
+
+/**
+ * Keep the durations of the last requests and compute a percentile of them.
+ * <br>
+ * The samples are kept in a fixed size ring, and the percentile is computed
+ * again only every {@link #REFRESH_INTERVAL} new samples, so reading it is
+ * cheap. Thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class LatencyTracker {
+
+    private static final int CAPACITY = 256;
+
+    private static final int REFRESH_INTERVAL = 16;
+
+    private final double percentile;
+
+    private final long[] samples = new long[CAPACITY];
+
+    private int count;
+
+    private int next;
+
+    private int sinceRefresh;
+
+    private volatile long cached = -1;
+
+    /**
+     * Build a tracker.
+     *
+     * @param percentile
+     *            The percentile to compute, between 0 and 1.
+     */
+    LatencyTracker(double percentile) {
+        super();
+        this.percentile = percentile;
+    }
+
+    /**
+     * Record the duration of a request.
+     *
+     * @param millis
+     *            The duration in milliseconds.
+     */
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % CAPACITY;
+        if (count < CAPACITY) {
+            count++;
+        }
+        if (++sinceRefresh >= REFRESH_INTERVAL || cached < 0) {
+            sinceRefresh = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cached = sorted[(int) Math.min(count - 1, Math.floor(percentile * count))];
+        }
+    }
+
+    /**
+     * @return The number of recorded samples, at most the ring size.
+     */
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The percentile of the recorded durations, or -1 if there is no
+     *         sample yet.
+     */
+    long get() {
+        return cached;
+    }
+}
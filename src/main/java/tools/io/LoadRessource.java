@@ -1,21 +1,26 @@
 package tools.io;
 
-import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Proxy;
-import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.zip.DeflaterInputStream;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import tools.util.Pair;
 
 /**
  * Contain methods to work on streams.
@@ -25,12 +30,10 @@ import java.util.zip.GZIPInputStream;
  */
 public final class LoadRessource {
 
-    private static final Logger LOGGER = Logger.getLogger(LoadRessource.class.getName());
-
     /**
-     * Default buffer size.
+     * Default buffer size, also the size of the pooled copy buffers.
      */
-    private static final int DEFAULT_BUFFER_SIZE = 102400;
+    static final int DEFAULT_BUFFER_SIZE = 102400;
 
     /**
      * Default timeout.
@@ -46,29 +49,49 @@ public final class LoadRessource {
      * Timeout used by network operations. If not configured, use
      * {@link LoadRessource#DEFAULT_TIMEOUT}.
      */
-    private static int timeout = DEFAULT_TIMEOUT;
+    private static volatile int timeout = DEFAULT_TIMEOUT;
 
     /**
      * Default number of tries to open streams. If not configured, use
      * {@link LoadRessource#DEFAULT_ATTEMPTS}.
      */
-    private static int attempts = DEFAULT_ATTEMPTS;
+    private static volatile int attempts = DEFAULT_ATTEMPTS;
 
     /**
      * Proxy used when using URL connection.<br>
      * Default is {@link Proxy#NO_PROXY}.
      */
-    private static Proxy proxy = Proxy.NO_PROXY;
+    private static volatile Proxy proxy = Proxy.NO_PROXY;
 
     /**
      * Properties that will be used as HTTP headers when using URL connection.
      */
-    private static Properties properties = null;
+    private static volatile Properties properties = null;
+
+    /**
+     * Cache used for HTTP resources, <code>null</code> by default.
+     */
+    private static volatile HttpCache cache = null;
+
+    /**
+     * Share concurrent identical in-memory loads, <code>null</code> by default.
+     */
+    private static volatile RequestCoalescer coalescer = null;
+
+    /**
+     * Notified at the end of each load, <code>null</code> by default.
+     */
+    private static volatile DownloadListener listener = null;
+
+    /**
+     * Pace the loads, <code>null</code> by default.
+     */
+    private static volatile RateLimiter rateLimiter = null;
 
     /**
      * A Map of the last HTTP response header fields
      */
-    private static Map<String, List<String>> responseHeaders;
+    private static volatile Map<String, List<String>> responseHeaders;
 
     private LoadRessource() {
         super();
@@ -78,6 +101,10 @@ public final class LoadRessource {
      * Returns an unmodifiable Map of the header fields. The Map keys are Strings
      * that represent the response-header field names. Each Map value is an
      * unmodifiable List of Strings that represents the corresponding field values.
+     * <br>
+     * When several threads load resources at the same time, this is the headers
+     * of whichever request ended last: use a {@link RessourceClient} and its
+     * {@link RessourceResponse} to get the headers of a given request.
      * 
      * @return a Map of header fields
      */
@@ -128,6 +155,48 @@ public final class LoadRessource {
         LoadRessource.properties = properties;
     }
 
+    /**
+     * Set the cache used to store and revalidate HTTP resources.
+     * 
+     * @param cache
+     *            The cache to use, or <code>null</code> to disable caching.
+     */
+    public static void setCache(HttpCache cache) {
+        LoadRessource.cache = cache;
+    }
+
+    /**
+     * Enable or disable the sharing of one transfer between concurrent
+     * identical calls to {@link #getRessource(URL)}.
+     * 
+     * @param enabled
+     *            <code>true</code> to share identical transfers.
+     */
+    public static void setCoalescing(boolean enabled) {
+        LoadRessource.coalescer = enabled ? new RequestCoalescer() : null;
+    }
+
+    /**
+     * Set the listener notified at the end of each load, such as a
+     * {@link DownloadMetrics}.
+     *
+     * @param listener
+     *            The listener, or <code>null</code> for none.
+     */
+    public static void setListener(DownloadListener listener) {
+        LoadRessource.listener = listener;
+    }
+
+    /**
+     * Set the limiter pacing the requests and the bandwidth of the loads.
+     *
+     * @param rateLimiter
+     *            The limiter, or <code>null</code> for none.
+     */
+    public static void setRateLimiter(RateLimiter rateLimiter) {
+        LoadRessource.rateLimiter = rateLimiter;
+    }
+
     /**
      * Get the current properties.
      * 
@@ -137,6 +206,21 @@ public final class LoadRessource {
         return properties;
     }
 
+    /**
+     * Build a client using the current static configuration. Later calls to the
+     * setters of this class don't change the returned client.
+     * 
+     * @return A new {@link RessourceClient}.
+     */
+    public static RessourceClient getClient() {
+        return getClient(timeout, attempts);
+    }
+
+    private static RessourceClient getClient(int timeOut, int attempts) {
+        return RessourceClient.builder().proxy(proxy).timeout(timeOut).attempts(attempts).properties(properties)
+                .cache(cache).coalescer(coalescer).listener(listener).rateLimiter(rateLimiter).build();
+    }
+
     /**
      * Do a request on the urlRessource parameter after passing it to
      * {@link URL}, and get the result as a byte array.
@@ -168,9 +252,39 @@ public final class LoadRessource {
      *             If an error happen while loading data.
      */
     public static byte[] getRessource(URL urlRessource) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        getRessource(urlRessource, out);
-        return out.toByteArray();
+        RessourceResponse response = getClient().getRessource(urlRessource);
+        responseHeaders = response.getHeaders();
+        return response.getBody();
+    }
+
+    /**
+     * Do a request on the urlRessource parameter without blocking the calling
+     * thread, and get the result as a byte array.<br>
+     * The response headers are not recorded: use
+     * {@link RessourceClient#getRessourceAsync(URL)} to get them.
+     * 
+     * @param urlRessource
+     *            URL of the resource to load.
+     * @return A future completed with the binary data of the loaded object.
+     */
+    public static CompletableFuture<byte[]> getRessourceAsync(URL urlRessource) {
+        return getClient().getRessourceAsync(urlRessource).thenApply(RessourceResponse::getBody);
+    }
+
+    /**
+     * Do a request on the urlRessource parameter without blocking the calling
+     * thread, and write the result to another stream, closed at the end.
+     * 
+     * See also {@link RessourceClient#getRessourceAsync(URL, OutputStream)}.
+     * 
+     * @param urlRessource
+     *            URL of the resource to load.
+     * @param out
+     *            The stream to write loaded data.
+     * @return A future completed once the data is written.
+     */
+    public static CompletableFuture<Void> getRessourceAsync(URL urlRessource, OutputStream out) {
+        return getClient().getRessourceAsync(urlRessource, out).thenApply(response -> null);
     }
 
     /**
@@ -211,6 +325,27 @@ public final class LoadRessource {
         getRessource(urlOrigine, new FileOutputStream(outputFile));
     }
 
+    /**
+     * Download a large resource to a local file with several connections, each
+     * one loading a part of the file. An interrupted download resumes where it
+     * stopped when called again with the same output file.
+     * 
+     * See also {@link SegmentedDownloader}.
+     * 
+     * @param urlOrigine
+     *            URL string of the resource to load.
+     * @param outputFile
+     *            The file to write loaded data.
+     * @param segments
+     *            The number of simultaneous connections.
+     * 
+     * @throws IOException
+     *             If an error happen while loading data.
+     */
+    public static void saveFile(String urlOrigine, String outputFile, int segments) throws IOException {
+        new SegmentedDownloader(getClient(), segments).download(new URL(urlOrigine), Paths.get(outputFile));
+    }
+
     /**
      * Same as <code>getRessource(urlRessource, out, timeout, attempts)</code>.
      * 
@@ -264,48 +399,25 @@ public final class LoadRessource {
      *             <code>attempts</code> timeouts.
      */
     public static void getRessource(URL urlRessource, OutputStream out, int timeOut, int attempts) throws IOException {
+        responseHeaders = getClient(timeOut, attempts).getRessource(urlRessource, out).getHeaders();
+    }
 
-        int tentativesEff = 0;
-        boolean recupOk = false;
-        while (!recupOk && tentativesEff < attempts) {
-            URLConnection connection = urlRessource.openConnection(proxy);
-            connection.setRequestProperty("User-Agent", "Lynx");
-            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-
-            if (properties != null) {
-                for (String cle : properties.stringPropertyNames()) {
-                    connection.setRequestProperty(cle, properties.getProperty(cle));
-                }
-            }
-
-            connection.setReadTimeout(timeOut);
-
-            InputStream in;
-            if ("gzip".equals(connection.getContentEncoding())) {
-                in = new GZIPInputStream(connection.getInputStream());
-            } else if ("deflate".equals(connection.getContentEncoding())) {
-                in = new DeflaterInputStream(connection.getInputStream());
-            } else {
-                in = connection.getInputStream();
-            }
-
-            responseHeaders = connection.getHeaderFields();
-
-            try {
-                getRessource(in, out);
-                recupOk = true;
-            } catch (SocketTimeoutException e) {
-                LOGGER.log(Level.WARNING, String.format("Timeout when loading %s.", urlRessource), e);
-                tentativesEff++;
-            }
-
-            in.close();
-            out.close();
-        }
-
-        if (tentativesEff == attempts) {
-            throw new IOException(String.format("Too much timeout when loading %s.", urlRessource));
-        }
+    /**
+     * Load several resources concurrently, using at most
+     * {@link BatchDownloader#DEFAULT_MAX_CONCURRENT} simultaneous transfers and
+     * {@link BatchDownloader#DEFAULT_MAX_PER_HOST} on the same host.
+     * 
+     * See also {@link BatchDownloader#getRessources(Collection)}.
+     * 
+     * @param requests
+     *            Couples of URL to load and stream to write the data.
+     * @param executor
+     *            The executor running the transfers.
+     * @return A future for each request, in the same order.
+     */
+    public static List<CompletableFuture<RessourceResponse>> getRessources(
+            Collection<? extends Pair<URL, ? extends OutputStream>> requests, Executor executor) {
+        return new BatchDownloader(executor).getRessources(requests);
     }
 
     /**
@@ -318,7 +430,11 @@ public final class LoadRessource {
      *             If an error happen while reading.
      */
     public static byte[] getRessource(InputStream in) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponseBuffer out = new ResponseBuffer();
+        if (in instanceof FileInputStream) {
+            FileChannel channel = ((FileInputStream) in).getChannel();
+            ResponseBuffer.expect(out, channel.size() - channel.position());
+        }
         getRessource(in, out);
 
         return out.toByteArray();
@@ -336,16 +452,217 @@ public final class LoadRessource {
      *             If an error occur while reading/writing.
      */
     public static void getRessource(InputStream in, OutputStream out) throws IOException {
-        int lus;
-        byte[] tampon = new byte[DEFAULT_BUFFER_SIZE];
+        copy(in, out);
+
+        in.close();
+        out.close();
+    }
+
+    /**
+     * Read a stream and give its data to a consumer chunk by chunk, without
+     * holding it in memory. File streams are read through their channel into
+     * a direct buffer.<br>
+     * If the method end fine, the stream is closed at the end.
+     * 
+     * @param in
+     *            The input stream to read.
+     * @param consumer
+     *            The consumer of the read data.
+     * @throws IOException
+     *             If an error occur while reading, or if the consumer failed.
+     */
+    public static void getRessource(InputStream in, ChunkConsumer consumer) throws IOException {
+        if (in instanceof FileInputStream) {
+            read(((FileInputStream) in).getChannel(), consumer);
+        } else {
+            copy(in, new ChunkOutputStream(consumer));
+        }
+
+        in.close();
+    }
+
+    /**
+     * Do a request on the urlRessource parameter, and give the result to a
+     * consumer chunk by chunk, without holding it in memory.
+     * 
+     * See also {@link RessourceClient#getRessource(URL, ChunkConsumer)}.
+     * 
+     * @param urlRessource
+     *            URL of the resource to load.
+     * @param consumer
+     *            The consumer of the loaded data.
+     * @throws IOException
+     *             If an error happen while loading data, or if the consumer
+     *             failed.
+     */
+    public static void getRessource(URL urlRessource, ChunkConsumer consumer) throws IOException {
+        responseHeaders = getClient().getRessource(urlRessource, consumer).getHeaders();
+    }
 
-        do {
-            lus = in.read(tampon);
-            if (lus != -1)
-                out.write(tampon, 0, lus);
-        } while (lus != -1);
+    /**
+     * Read a channel and write it simultaneously in another channel.<br>
+     * When one of the channels is a {@link FileChannel}, the copy is done with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)
+     * transferTo} or
+     * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)
+     * transferFrom}, letting the system move the data without going through
+     * the Java heap. Otherwise a direct buffer is used.<br>
+     * If the method end fine, both channels are closed at the end.
+     * 
+     * @param in
+     *            The channel to read.
+     * @param out
+     *            The channel to write the read data.
+     * @throws IOException
+     *             If an error occur while reading/writing.
+     */
+    public static void getRessource(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        transfer(in, out);
 
         in.close();
         out.close();
     }
+
+    /**
+     * Copy a stream into another one, without closing them. File streams are
+     * copied through their channels.
+     * 
+     * @param in
+     *            The input stream to read.
+     * @param out
+     *            The output stream to write the read data.
+     * @return The number of copied bytes.
+     * @throws IOException
+     *             If an error occur while reading/writing.
+     */
+    static long copy(InputStream in, OutputStream out) throws IOException {
+        if (in instanceof FileInputStream && out instanceof FileOutputStream) {
+            return transfer(((FileInputStream) in).getChannel(), ((FileOutputStream) out).getChannel());
+        }
+
+        long total = 0;
+        int lus;
+        byte[] tampon = BufferPool.acquireArray();
+
+        try {
+            do {
+                lus = in.read(tampon);
+                if (lus != -1) {
+                    out.write(tampon, 0, lus);
+                    total += lus;
+                }
+            } while (lus != -1);
+        } finally {
+            BufferPool.releaseArray(tampon);
+        }
+
+        return total;
+    }
+
+    /**
+     * Read a channel into a pooled direct buffer and give each read to a
+     * consumer, without closing the channel.
+     * 
+     * @param in
+     *            The channel to read.
+     * @param consumer
+     *            The consumer of the read data.
+     * @return The number of read bytes.
+     * @throws IOException
+     *             If an error occur while reading, or if the consumer failed.
+     */
+    static long read(ReadableByteChannel in, ChunkConsumer consumer) throws IOException {
+        long total = 0;
+        ByteBuffer tampon = BufferPool.acquireDirect();
+
+        try {
+            while (in.read(tampon) != -1) {
+                tampon.flip();
+                total += tampon.remaining();
+                consumer.accept(tampon.asReadOnlyBuffer());
+                tampon.clear();
+            }
+        } finally {
+            BufferPool.releaseDirect(tampon);
+        }
+
+        return total;
+    }
+
+    /**
+     * Copy a file channel from its current position into a stream, without
+     * closing them.
+     * 
+     * @param in
+     *            The channel to read.
+     * @param out
+     *            The output stream to write the read data.
+     * @return The number of copied bytes.
+     * @throws IOException
+     *             If an error occur while reading/writing.
+     */
+    static long copy(FileChannel in, OutputStream out) throws IOException {
+        if (out instanceof FileOutputStream) {
+            return transfer(in, ((FileOutputStream) out).getChannel());
+        }
+        return copy(Channels.newInputStream(in), out);
+    }
+
+    /**
+     * Copy a channel into another one, without closing them. The positions of
+     * file channels are moved after the copied bytes.
+     * 
+     * @param in
+     *            The channel to read.
+     * @param out
+     *            The channel to write the read data.
+     * @return The number of copied bytes.
+     * @throws IOException
+     *             If an error occur while reading/writing.
+     */
+    static long transfer(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        long total = 0;
+
+        if (in instanceof FileChannel) {
+            FileChannel source = (FileChannel) in;
+            long position = source.position();
+            long size = source.size();
+            long n = 1;
+            while (position < size && n > 0) {
+                n = source.transferTo(position, size - position, out);
+                position += n;
+                total += n;
+            }
+            source.position(position);
+            if (position >= size) {
+                return total;
+            }
+        } else if (out instanceof FileChannel) {
+            FileChannel target = (FileChannel) out;
+            long position = target.position();
+            long n;
+            while ((n = target.transferFrom(in, position, DEFAULT_BUFFER_SIZE)) > 0) {
+                position += n;
+                total += n;
+            }
+            target.position(position);
+            return total;
+        }
+
+        // Plain channels, or the rest of a file the target refused.
+        ByteBuffer buffer = BufferPool.acquireDirect();
+        try {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } finally {
+            BufferPool.releaseDirect(buffer);
+        }
+
+        return total;
+    }
 }
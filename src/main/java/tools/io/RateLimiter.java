@@ -0,0 +1,294 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pace the requests and the bandwidth of one or several
+ * {@link RessourceClient}s, per host and globally, with token buckets.<br>
+ * Before each request, including the retries and the segments of a
+ * {@link SegmentedDownloader}, the calling thread waits for a request token
+ * from the bucket of the host and from the global bucket. While reading a
+ * response, it waits for a token per byte read. Buckets start full, so short
+ * bursts up to their capacity go at full speed. The bucket of a host is
+ * dropped once full again, so only the hosts used recently are kept.<br>
+ * A limiter is configured with {@link #builder()}, and must be shared by all
+ * the clients it paces. Thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class RateLimiter {
+
+    private final TokenBucket requests;
+
+    private final TokenBucket bytes;
+
+    private final HostBuckets hostRequests;
+
+    private final HostBuckets hostBytes;
+
+    private RateLimiter(Builder builder) {
+        this.requests = builder.requestsPerSecond > 0
+                ? new TokenBucket(builder.requestsPerSecond, builder.requestBurst) : null;
+        this.bytes = builder.bytesPerSecond > 0 ? new TokenBucket(builder.bytesPerSecond, builder.byteBurst) : null;
+        this.hostRequests = builder.hostRequestsPerSecond > 0
+                ? new HostBuckets(builder.hostRequestsPerSecond, builder.hostRequestBurst) : null;
+        this.hostBytes = builder.hostBytesPerSecond > 0
+                ? new HostBuckets(builder.hostBytesPerSecond, builder.hostByteBurst) : null;
+    }
+
+    /**
+     * Create a builder without any limit.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return <code>true</code> if the bandwidth is limited.
+     */
+    boolean limitsBytes() {
+        return bytes != null || hostBytes != null;
+    }
+
+    /**
+     * @return The number of per host buckets kept.
+     */
+    int hostBuckets() {
+        return (hostRequests == null ? 0 : hostRequests.size()) + (hostBytes == null ? 0 : hostBytes.size());
+    }
+
+    /**
+     * Wait for the permission to send a request.
+     *
+     * @param urlRessource
+     *            The requested URL.
+     * @param context
+     *            The state of the call, or <code>null</code>.
+     * @throws IOException
+     *             If the wait would end after the deadline of the call, or
+     *             was interrupted.
+     */
+    void acquireRequest(URL urlRessource, TransferContext context) throws IOException {
+        long now = System.nanoTime();
+        long wait = requests == null ? 0 : requests.reserve(1, now);
+        if (hostRequests != null) {
+            wait = Math.max(wait, hostRequests.reserve(BatchDownloader.hostKey(urlRessource), 1, now));
+        }
+        pause(wait, context);
+    }
+
+    /**
+     * Wait for the permission to use bytes read from a host.
+     *
+     * @param host
+     *            The host key, as given by {@link BatchDownloader#hostKey(URL)}.
+     * @param count
+     *            The number of bytes read.
+     * @param context
+     *            The state of the call, or <code>null</code>.
+     * @throws IOException
+     *             If the wait would end after the deadline of the call, or
+     *             was interrupted.
+     */
+    void acquireBytes(String host, long count, TransferContext context) throws IOException {
+        long now = System.nanoTime();
+        long wait = bytes == null ? 0 : bytes.reserve(count, now);
+        if (hostBytes != null) {
+            wait = Math.max(wait, hostBytes.reserve(host, count, now));
+        }
+        pause(wait, context);
+    }
+
+    private static void pause(long nanos, TransferContext context) throws IOException {
+        if (nanos <= 0) {
+            return;
+        }
+        if (context != null && TimeUnit.NANOSECONDS.toMillis(nanos) >= context.remainingMillis()) {
+            throw new TransferContext.DeadlineExceededException();
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while rate limited.");
+            interrupted.initCause(e);
+            throw interrupted;
+        }
+    }
+
+    /**
+     * Buckets by host. When their number doubled since the last sweep, the
+     * buckets full again are retired and removed: a new bucket, full, replaces
+     * them on the next request.
+     */
+    private static final class HostBuckets {
+
+        /**
+         * Number of buckets below which none is removed.
+         */
+        private static final int MIN_SWEEP = 1024;
+
+        private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+        private final double perSecond;
+
+        private final long burst;
+
+        private final AtomicInteger sweepAt = new AtomicInteger(MIN_SWEEP);
+
+        private HostBuckets(double perSecond, long burst) {
+            this.perSecond = perSecond;
+            this.burst = burst;
+        }
+
+        private int size() {
+            return buckets.size();
+        }
+
+        private long reserve(String host, long tokens, long now) {
+            while (true) {
+                TokenBucket bucket = buckets.computeIfAbsent(host, key -> new TokenBucket(perSecond, burst));
+                long wait = bucket.reserve(tokens, now);
+                if (wait >= 0) {
+                    sweep(now);
+                    return wait;
+                }
+                // Retired meanwhile.
+                buckets.remove(host, bucket);
+            }
+        }
+
+        private void sweep(long now) {
+            int limit = sweepAt.get();
+            if (buckets.size() < limit || !sweepAt.compareAndSet(limit, Integer.MAX_VALUE)) {
+                return;
+            }
+            try {
+                for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+                    if (entry.getValue().retireIfFull(now)) {
+                        buckets.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+            } finally {
+                sweepAt.set(Math.max(MIN_SWEEP, 2 * buckets.size()));
+            }
+        }
+    }
+
+    /**
+     * Builder of {@link RateLimiter}.
+     */
+    public static final class Builder {
+
+        private double requestsPerSecond;
+
+        private long requestBurst;
+
+        private long bytesPerSecond;
+
+        private long byteBurst;
+
+        private double hostRequestsPerSecond;
+
+        private long hostRequestBurst;
+
+        private long hostBytesPerSecond;
+
+        private long hostByteBurst;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * Limit the requests sent to all the hosts together.
+         *
+         * @param perSecond
+         *            The sustained number of requests per second.
+         * @param burst
+         *            The number of requests allowed at once after a pause, at
+         *            least 1.
+         * @return This builder.
+         */
+        public Builder requestsPerSecond(double perSecond, long burst) {
+            check(perSecond, burst);
+            this.requestsPerSecond = perSecond;
+            this.requestBurst = burst;
+            return this;
+        }
+
+        /**
+         * Limit the bytes read from all the hosts together.
+         *
+         * @param perSecond
+         *            The sustained number of bytes per second.
+         * @param burst
+         *            The number of bytes allowed at full speed after a pause,
+         *            at least 1.
+         * @return This builder.
+         */
+        public Builder bytesPerSecond(long perSecond, long burst) {
+            check(perSecond, burst);
+            this.bytesPerSecond = perSecond;
+            this.byteBurst = burst;
+            return this;
+        }
+
+        /**
+         * Limit the requests sent to each host.
+         *
+         * @param perSecond
+         *            The sustained number of requests per second.
+         * @param burst
+         *            The number of requests allowed at once after a pause, at
+         *            least 1.
+         * @return This builder.
+         */
+        public Builder hostRequestsPerSecond(double perSecond, long burst) {
+            check(perSecond, burst);
+            this.hostRequestsPerSecond = perSecond;
+            this.hostRequestBurst = burst;
+            return this;
+        }
+
+        /**
+         * Limit the bytes read from each host.
+         *
+         * @param perSecond
+         *            The sustained number of bytes per second.
+         * @param burst
+         *            The number of bytes allowed at full speed after a pause,
+         *            at least 1.
+         * @return This builder.
+         */
+        public Builder hostBytesPerSecond(long perSecond, long burst) {
+            check(perSecond, burst);
+            this.hostBytesPerSecond = perSecond;
+            this.hostByteBurst = burst;
+            return this;
+        }
+
+        private static void check(double perSecond, long burst) {
+            if (perSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("The rate and the burst must be positive.");
+            }
+        }
+
+        /**
+         * @return A new limiter.
+         */
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Share one transfer between concurrent identical requests.<br>
+ * When a {@link RessourceClient} using a coalescer is asked for a resource
+ * already being loaded with the same headers, it waits for the running
+ * transfer instead of opening its own connection, and gets a copy of its
+ * result. Only in-memory loads ({@link RessourceClient#getRessource(java.net.URL)})
+ * are shared. A coalescer is thread safe and can be shared by several clients.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class RequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<RessourceResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @return The number of requests served by joining a transfer already in
+     *         progress.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Run a load, or wait for the identical one already running.
+     *
+     * @param key
+     *            Identify the request, URL and headers included.
+     * @param loader
+     *            The load to run if no identical one is in progress.
+     * @return The result of the load.
+     * @throws IOException
+     *             If the load failed.
+     */
+    RessourceResponse execute(String key, Loader loader) throws IOException {
+        CompletableFuture<RessourceResponse> mine = new CompletableFuture<>();
+        CompletableFuture<RessourceResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return copy(await(key, running));
+        }
+
+        try {
+            RessourceResponse response = loader.load();
+            mine.complete(response);
+            return response;
+        } catch (IOException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static RessourceResponse await(String key, CompletableFuture<RessourceResponse> running)
+            throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException(
+                    String.format("Interrupted while waiting for %s.", key));
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            throw new IOException(String.format("Shared request for %s failed.", key), e.getCause());
+        }
+    }
+
+    /**
+     * Give each waiting caller its own body array.
+     */
+    private static RessourceResponse copy(RessourceResponse response) {
+        byte[] body = response.getBody();
+        return new RessourceResponse(response.getUrl(), response.getStatus(), response.getHeaders(), 0,
+                response.getBytesWritten(), body == null ? null : body.clone());
+    }
+
+    /**
+     * A load that can be shared.
+     */
+    interface Loader {
+
+        /**
+         * @return The result of the load.
+         * @throws IOException
+         *             If the load failed.
+         */
+        RessourceResponse load() throws IOException;
+    }
+}
@@ -0,0 +1,138 @@
+package tools.io;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * In-memory output stream that can be sized before the data arrives.<br>
+ * When the expected length is announced with {@link #expect(long)}, the
+ * storage is allocated at the exact size, up to {@link #MAX_PRESIZE} bytes
+ * before any data arrives: a wrong or hostile length can't allocate more.
+ * Beyond, the storage grows with the data received, never past the announced
+ * length, so it ends exactly filled and {@link #toByteArray()} returns it
+ * without copy. Without announce it grows like a
+ * {@link java.io.ByteArrayOutputStream}. Not thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class ResponseBuffer extends OutputStream {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final int INITIAL_SIZE = 8192;
+
+    /**
+     * Maximum allocation made on an announce, 4 MiB.
+     */
+    static final int MAX_PRESIZE = 4 * 1024 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buf = EMPTY;
+
+    private int count;
+
+    /**
+     * Announced total length, 0 if unknown.
+     */
+    private long expected;
+
+    /**
+     * Announce the number of bytes still to be written to a stream, if it is a
+     * {@link ResponseBuffer}.
+     *
+     * @param out
+     *            The stream.
+     * @param remaining
+     *            The number of bytes to come, negative if unknown.
+     */
+    static void expect(OutputStream out, long remaining) {
+        if (out instanceof ResponseBuffer && remaining >= 0) {
+            ((ResponseBuffer) out).expect(remaining);
+        }
+    }
+
+    /**
+     * Drop the bytes written to a stream, if it is a {@link ResponseBuffer}.
+     *
+     * @param out
+     *            The stream.
+     * @return <code>true</code> if the stream is now empty.
+     */
+    static boolean reset(OutputStream out) {
+        if (out instanceof ResponseBuffer) {
+            ((ResponseBuffer) out).count = 0;
+            ((ResponseBuffer) out).expected = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Make room for the bytes still to come.
+     *
+     * @param remaining
+     *            The number of bytes to come.
+     */
+    void expect(long remaining) {
+        expected = count + remaining;
+        long needed = count + Math.min(remaining, MAX_PRESIZE);
+        if (needed > buf.length && needed <= MAX_ARRAY_SIZE) {
+            buf = Arrays.copyOf(buf, (int) needed);
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1L);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity((long) count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    private void ensureCapacity(long needed) {
+        if (needed > buf.length) {
+            if (needed > MAX_ARRAY_SIZE) {
+                throw new OutOfMemoryError("The resource is too large for an array.");
+            }
+            long grown = Math.max(INITIAL_SIZE, Math.min((long) buf.length * 2, MAX_ARRAY_SIZE));
+            if (needed <= expected) {
+                grown = Math.min(grown, expected);
+            }
+            buf = Arrays.copyOf(buf, (int) Math.max(needed, grown));
+        }
+    }
+
+    /**
+     * @return The size of the storage.
+     */
+    int capacity() {
+        return buf.length;
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Get the written data. The storage itself is returned when it is exactly
+     * filled, the buffer must not be written after.
+     *
+     * @return The written data.
+     */
+    byte[] toByteArray() {
+        return count == buf.length ? buf : Arrays.copyOf(buf, count);
+    }
+}
@@ -0,0 +1,60 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLConnection;
+
+/**
+ * Choose where the content of a response is written, once its headers are
+ * known.
+ *
+ * @author A. CANDIAN
+ *
+ */
+interface ResponseSink {
+
+    /**
+     * Get the stream receiving the content of a response. Called once per
+     * attempt, after the response headers are received.
+     *
+     * @param connection
+     *            The connection of the current attempt.
+     * @return The stream to write the content, it is not closed by the caller.
+     * @throws IOException
+     *             If the stream can't be opened.
+     */
+    OutputStream open(URLConnection connection) throws IOException;
+
+    /**
+     * Drop the content written by the previous attempts, so that a response
+     * can be written again from its first byte.
+     *
+     * @return <code>true</code> if the content was dropped,
+     *         <code>false</code> if the sink can't restart.
+     */
+    default boolean restart() {
+        return false;
+    }
+
+    /**
+     * Create a sink always writing to the same stream. It can restart if the
+     * stream is a {@link ResponseBuffer}.
+     *
+     * @param out
+     *            The stream.
+     * @return The sink.
+     */
+    static ResponseSink of(OutputStream out) {
+        return new ResponseSink() {
+            @Override
+            public OutputStream open(URLConnection connection) {
+                return out;
+            }
+
+            @Override
+            public boolean restart() {
+                return ResponseBuffer.reset(out);
+            }
+        };
+    }
+}
@@ -0,0 +1,1036 @@
+package tools.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Immutable client loading resources from URLs.<br>
+ * A client holds no mutable state: the same instance can be used by any number
+ * of threads without synchronization, and each call returns its own
+ * {@link RessourceResponse}. Instances are built with {@link #builder()}.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class RessourceClient {
+
+    private static final Logger LOGGER = Logger.getLogger(RessourceClient.class.getName());
+
+    private final Proxy proxy;
+
+    private final RetryPolicy retryPolicy;
+
+    private final Map<String, String> properties;
+
+    private final HttpCache cache;
+
+    private final RequestCoalescer coalescer;
+
+    private final Map<String, ContentDecoder> decoders;
+
+    private final String acceptEncoding;
+
+    private final Executor executor;
+
+    private final DownloadListener listener;
+
+    private final RateLimiter rateLimiter;
+
+    private volatile AsyncEngine asyncEngine;
+
+    private RessourceClient(Builder builder) {
+        this.proxy = builder.proxy;
+        this.retryPolicy = builder.retryPolicy != null ? builder.retryPolicy
+                : RetryPolicy.builder().attempts(builder.attempts).connectTimeout(builder.timeout)
+                        .readTimeout(builder.timeout).build();
+        this.properties = Collections.unmodifiableMap(new LinkedHashMap<>(builder.properties));
+        this.cache = builder.cache;
+        this.coalescer = builder.coalescer;
+        this.decoders = Collections.unmodifiableMap(new LinkedHashMap<>(builder.decoders));
+        this.acceptEncoding = decoders.isEmpty() ? "identity" : String.join(", ", decoders.keySet());
+        this.executor = builder.executor;
+        this.listener = builder.listener;
+        this.rateLimiter = builder.rateLimiter;
+    }
+
+    /**
+     * Create a builder initialized with {@link Proxy#NO_PROXY},
+     * {@link LoadRessource#DEFAULT_TIMEOUT} and
+     * {@link LoadRessource#DEFAULT_ATTEMPTS}.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The proxy used by the connections.
+     */
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    /**
+     * @return The read timeout, in milliseconds.
+     */
+    public int getTimeout() {
+        return retryPolicy.getReadTimeout();
+    }
+
+    /**
+     * @return The number of attempts before throwing an exception.
+     */
+    public int getAttempts() {
+        return retryPolicy.getAttempts();
+    }
+
+    /**
+     * @return The policy retrying and bounding the requests.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @return An unmodifiable view of the HTTP headers sent with each request.
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return The cache used by this client, or <code>null</code>.
+     */
+    public HttpCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return The coalescer sharing identical requests, or <code>null</code>.
+     */
+    public RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * @return The executor of the asynchronous loads, or <code>null</code> for
+     *         the default one.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return The listener notified at the end of each call, or
+     *         <code>null</code>.
+     */
+    public DownloadListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @return The limiter pacing the requests, or <code>null</code>.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Load a resource in memory without blocking the calling thread.<br>
+     * On Java 11 and later, the load waits for the network without holding a
+     * thread, unless the client uses a cache, a coalescer, hedging, a rate
+     * limiter or a SOCKS proxy. Otherwise it runs {@link #getRessource(URL)}
+     * on the executor of the client.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @return A future completed with the result, with the loaded data as
+     *         body, or exceptionally with the error met.
+     */
+    public CompletableFuture<RessourceResponse> getRessourceAsync(URL urlRessource) {
+        return asyncEngine().load(urlRessource);
+    }
+
+    /**
+     * Load a resource and write it to a stream without blocking the calling
+     * thread. The stream is closed at the end of the load.<br>
+     * On Java 11 and later, the data is written as it arrives, by the threads
+     * of the HTTP client: the stream must not block for long. See also
+     * {@link #getRessourceAsync(URL)}.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param out
+     *            The stream to write the data.
+     * @return A future completed with the result, without body, or
+     *         exceptionally with the error met.
+     */
+    public CompletableFuture<RessourceResponse> getRessourceAsync(URL urlRessource, OutputStream out) {
+        return asyncEngine().load(urlRessource, out);
+    }
+
+    private AsyncEngine asyncEngine() {
+        AsyncEngine engine = asyncEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = asyncEngine;
+                if (engine == null) {
+                    engine = AsyncEngine.create(this, executor);
+                    asyncEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Load a resource in memory.<br>
+     * If the client has a {@link RequestCoalescer} and the same resource is
+     * already being loaded with the same headers, the running transfer is
+     * shared instead of starting a new one. If its {@link RetryPolicy} hedges
+     * requests, a second request is sent when the first one is slow.
+     *
+     * See also {@link #getRessource(URL, OutputStream)}.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @return The result, with the loaded data as body.
+     * @throws IOException
+     *             If an error happen while loading data, if there is more than
+     *             <code>attempts</code> timeouts.
+     */
+    public RessourceResponse getRessource(URL urlRessource) throws IOException {
+        if (coalescer != null) {
+            return coalescer.execute(urlRessource.toExternalForm() + '\n' + properties,
+                    () -> loadOrHedge(urlRessource));
+        }
+        return loadOrHedge(urlRessource);
+    }
+
+    private RessourceResponse loadOrHedge(URL urlRessource) throws IOException {
+        if (retryPolicy.isHedging()) {
+            return hedge(urlRessource);
+        }
+        return load(urlRessource, new TransferContext(retryPolicy.getTotalTimeout()));
+    }
+
+    private RessourceResponse load(URL urlRessource, TransferContext context) throws IOException {
+        ResponseBuffer out = new ResponseBuffer();
+        RessourceResponse response = execute(urlRessource, out, context);
+        retryPolicy.recordLatency(context.elapsedMillis());
+
+        return new RessourceResponse(response.getUrl(), response.getStatus(), response.getHeaders(),
+                response.getBytesRead(), response.getBytesWritten(), out.toByteArray());
+    }
+
+    /**
+     * Load a resource in memory, and send a second identical request if the
+     * first one takes longer than the hedging delay. The first successful
+     * response is kept and the other request is cancelled.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @return The first successful result.
+     * @throws IOException
+     *             If both requests failed.
+     */
+    private RessourceResponse hedge(URL urlRessource) throws IOException {
+        TransferContext primaryContext = new TransferContext(retryPolicy.getTotalTimeout());
+        CompletableFuture<RessourceResponse> primary = loadAsync(urlRessource, primaryContext);
+        try {
+            return await(primary, retryPolicy.hedgeDelay());
+        } catch (TimeoutException e) {
+            // Slow request: hedge it.
+        }
+
+        TransferContext hedgeContext = new TransferContext(retryPolicy.getTotalTimeout());
+        CompletableFuture<RessourceResponse> hedged = loadAsync(urlRessource, hedgeContext);
+        CompletableFuture<RessourceResponse> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<RessourceResponse, Throwable> race = (response, error) -> {
+            if (error == null) {
+                first.complete(response);
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(error);
+            }
+        };
+        primary.whenComplete(race);
+        hedged.whenComplete(race);
+
+        try {
+            return await(first, -1);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (!primary.isDone()) {
+                primaryContext.cancel();
+            }
+            if (!hedged.isDone()) {
+                hedgeContext.cancel();
+            }
+        }
+    }
+
+    private CompletableFuture<RessourceResponse> loadAsync(URL urlRessource, TransferContext context) {
+        CompletableFuture<RessourceResponse> future = new CompletableFuture<>();
+        retryPolicy.getHedgeExecutor().execute(() -> {
+            try {
+                future.complete(load(urlRessource, context));
+            } catch (IOException | RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Wait for a load and rethrow its failure.
+     *
+     * @param future
+     *            The load.
+     * @param millis
+     *            The maximum wait in milliseconds, negative to wait forever.
+     * @return The result of the load.
+     * @throws IOException
+     *             If the load failed or the wait was interrupted.
+     * @throws TimeoutException
+     *             If the load is still running after the wait.
+     */
+    private static RessourceResponse await(CompletableFuture<RessourceResponse> future, long millis)
+            throws IOException, TimeoutException {
+        try {
+            return millis < 0 ? future.get() : future.get(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while loading.");
+            interrupted.initCause(e);
+            throw interrupted;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Send a request to get a resource and write it to a stream. The stream is
+     * closed when the method ends.<br>
+     * On a read timeout the request is sent again. When the server accepts
+     * ranges, only the missing bytes are requested, on condition that the
+     * resource is unchanged. If the server sends the whole resource again
+     * after bytes were written to the stream, the load fails rather than
+     * mixing two versions of the resource.<br>
+     * If the client has a {@link HttpCache}, HTTP resources are served from it
+     * when possible.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param out
+     *            The stream to write the URL result.
+     * @return The result of the request, without body.
+     * @throws IOException
+     *             If an error happen while loading data, if there is more than
+     *             <code>attempts</code> timeouts.
+     */
+    public RessourceResponse getRessource(URL urlRessource, OutputStream out) throws IOException {
+        return execute(urlRessource, out, new TransferContext(retryPolicy.getTotalTimeout()));
+    }
+
+    /**
+     * Load a resource and give its data to a consumer chunk by chunk, as it is
+     * read, so the resource is never held in memory. A retried transfer
+     * resumes where the previous attempt stopped, or fails if the server
+     * can't resume it: the consumer sees each byte once.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param consumer
+     *            The consumer of the data.
+     * @return The result of the request, without body.
+     * @throws IOException
+     *             If an error happen while loading data, if all the attempts
+     *             failed, or if the consumer failed.
+     */
+    public RessourceResponse getRessource(URL urlRessource, ChunkConsumer consumer) throws IOException {
+        return getRessource(urlRessource, new ChunkOutputStream(consumer));
+    }
+
+    private RessourceResponse execute(URL urlRessource, OutputStream out, TransferContext context)
+            throws IOException {
+        RessourceResponse response = null;
+        Exception failure = null;
+        try {
+            try {
+                if (cache != null && HttpCache.accepts(urlRessource)) {
+                    response = getCached(urlRessource, out, context);
+                } else {
+                    response = transfer(urlRessource, Collections.<String, String>emptyMap(), ResponseSink.of(out),
+                            context);
+                }
+                return response;
+            } finally {
+                out.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (listener != null) {
+                notify(listener, context.toEvent(urlRessource, failure == null ? response : null, failure));
+            }
+        }
+    }
+
+    /**
+     * Give an event to a listener, logging its failures.
+     *
+     * @param listener
+     *            The listener.
+     * @param event
+     *            The event.
+     */
+    static void notify(DownloadListener listener, DownloadEvent event) {
+        try {
+            listener.downloadCompleted(event);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Download listener failure.", e);
+        }
+    }
+
+    /**
+     * Load a resource through the cache: serve a fresh entry directly,
+     * revalidate a stale one, or download and store the resource.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param out
+     *            The stream to write the URL result, not closed.
+     * @param context
+     *            The state of the call.
+     * @return The result of the request.
+     * @throws IOException
+     *             If an error happen while loading data.
+     */
+    private RessourceResponse getCached(URL urlRessource, OutputStream out, TransferContext context)
+            throws IOException {
+        HttpCache.Entry entry = cache.lookup(urlRessource);
+        if (entry != null && entry.isFresh()) {
+            RessourceResponse cached = cache.serve(entry, out, false);
+            if (cached != null) {
+                return cached;
+            }
+            entry = null;
+        }
+
+        Map<String, String> validators = entry == null ? Collections.<String, String>emptyMap()
+                : entry.getValidators();
+        HttpCache.Writer writer = cache.newWriter(urlRessource, out);
+        URLConnection[] last = new URLConnection[1];
+        RessourceResponse response;
+        try {
+            response = transfer(urlRessource, validators, connection -> {
+                last[0] = connection;
+                return writer.open(connection);
+            }, context);
+            writer.commit();
+        } finally {
+            writer.discard();
+        }
+
+        if (response.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            RessourceResponse cached = cache.serve(cache.revalidate(entry, last[0]), out, true);
+            if (cached != null) {
+                return cached;
+            }
+            return transfer(urlRessource, Collections.<String, String>emptyMap(), ResponseSink.of(out), context);
+        }
+        cache.miss();
+        return response;
+    }
+
+    /**
+     * Send a request, retrying as the {@link RetryPolicy} allows, and write the
+     * content to the stream chosen by a sink.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param headers
+     *            Request headers added to the client ones.
+     * @param sink
+     *            Give the stream receiving the content, not closed.
+     * @param context
+     *            The state of the call.
+     * @return The result of the request, without body.
+     * @throws IOException
+     *             If an error happen while loading data, if all the attempts
+     *             failed or the total timeout is over.
+     */
+    private RessourceResponse transfer(URL urlRessource, Map<String, String> headers, ResponseSink sink,
+            TransferContext context) throws IOException {
+        long bytesRead = 0;
+        long delivered = 0;
+        int tries = 0;
+        String resumeValidator = null;
+
+        while (true) {
+            URLConnection connection = openConnection(urlRessource, context);
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            if (delivered > 0 && resumeValidator != null) {
+                connection.setRequestProperty("Accept-Encoding", "identity");
+                connection.setRequestProperty("Range", "bytes=" + delivered + '-');
+                connection.setRequestProperty("If-Range", resumeValidator);
+            }
+            context.attach(connection);
+            CountingInputStream raw = null;
+            InputStream in = null;
+            CountingOutputStream counted = null;
+            long wait;
+
+            try {
+                long attemptStart = System.nanoTime();
+                connection.connect();
+                long connected = System.nanoTime();
+                int status = status(connection);
+                long firstByte = System.nanoTime();
+                context.responded(status, connected - attemptStart, firstByte - attemptStart);
+                if (RetryPolicy.isRetryableStatus(status)) {
+                    discardError(connection);
+                    throw new RetryPolicy.RetryableStatusException(
+                            String.format("HTTP status %d when loading %s.", status, urlRessource),
+                            retryAfter(connection));
+                }
+                raw = new CountingInputStream(
+                        new DeadlineInputStream(throttle(urlRessource, connection.getInputStream(), context), context));
+                in = decode(connection.getContentEncoding(), raw);
+                if (status == HttpURLConnection.HTTP_PARTIAL) {
+                    if (!resumesAt(connection, delivered)) {
+                        throw new IOException(String.format("Unexpected range received for %s.", urlRessource));
+                    }
+                } else if (delivered > 0) {
+                    // A full response: the resource changed, or can't be resumed.
+                    if (!sink.restart()) {
+                        throw new IOException(String.format(
+                                "%s changed or can't be resumed after %d bytes were delivered.", urlRessource,
+                                delivered));
+                    }
+                    delivered = 0;
+                }
+                OutputStream target = sink.open(connection);
+                long length = connection.getContentLengthLong();
+                if (connection.getContentEncoding() == null && length >= 0) {
+                    ResponseBuffer.expect(target, length);
+                }
+                counted = new CountingOutputStream(target);
+                if (delivered == 0) {
+                    resumeValidator = resumeValidator(connection);
+                }
+                LoadRessource.copy(in, counted);
+                context.transferred(System.nanoTime() - firstByte);
+
+                return new RessourceResponse(urlRessource, status, connection.getHeaderFields(),
+                        bytesRead + raw.getCount(), delivered + counted.getCount(), null);
+            } catch (IOException e) {
+                if (context.isCancelled() || !RetryPolicy.isRetryable(e)) {
+                    throw e;
+                }
+                tries++;
+                if (tries >= retryPolicy.getAttempts()) {
+                    throw new IOException(String.format("Too many failed attempts when loading %s.", urlRessource),
+                            e);
+                }
+                LOGGER.log(Level.WARNING, String.format("Attempt %d failed when loading %s.", tries, urlRessource), e);
+                context.retried();
+                wait = retryPolicy.backoff(tries, e instanceof RetryPolicy.RetryableStatusException
+                        ? ((RetryPolicy.RetryableStatusException) e).getRetryAfter() : -1);
+            } finally {
+                if (raw != null) {
+                    bytesRead += raw.getCount();
+                }
+                if (counted != null) {
+                    delivered += counted.getCount();
+                }
+                context.moved(raw != null ? raw.getCount() : 0, counted != null ? counted.getCount() : 0);
+                if (in != null) {
+                    in.close();
+                } else if (raw != null) {
+                    raw.close();
+                }
+            }
+
+            pause(wait, context);
+        }
+    }
+
+    /**
+     * Wait before the next attempt.
+     *
+     * @param millis
+     *            The wait in milliseconds.
+     * @param context
+     *            The state of the call.
+     * @throws IOException
+     *             If the wait would end after the deadline, or was interrupted.
+     */
+    static void pause(long millis, TransferContext context) throws IOException {
+        if (millis >= context.remainingMillis()) {
+            throw new TransferContext.DeadlineExceededException();
+        }
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                InterruptedIOException interrupted = new InterruptedIOException("Interrupted between attempts.");
+                interrupted.initCause(e);
+                throw interrupted;
+            }
+        }
+    }
+
+    /**
+     * Read the delay asked by a <code>Retry-After</code> header given in
+     * seconds.
+     *
+     * @param connection
+     *            The connection.
+     * @return The delay in milliseconds, or -1.
+     */
+    static long retryAfter(URLConnection connection) {
+        String value = connection.getHeaderField("Retry-After");
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                // An HTTP date: use the backoff.
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read and close the error body of a response, so the connection can be
+     * reused.
+     *
+     * @param connection
+     *            The connection.
+     */
+    static void discardError(URLConnection connection) {
+        InputStream error = ((HttpURLConnection) connection).getErrorStream();
+        if (error != null) {
+            try (InputStream in = error) {
+                while (in.skip(Long.MAX_VALUE) > 0 || in.read() != -1) {
+                    // Drain the body.
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Unable to read an error body.", e);
+            }
+        }
+    }
+
+    /**
+     * Get the validator allowing to resume a response with a range request.
+     *
+     * @param connection
+     *            The connection of the first attempt.
+     * @return A strong ETag or a Last-Modified date, or <code>null</code> if
+     *         the response can't be resumed.
+     */
+    private static String resumeValidator(URLConnection connection) {
+        if (!"bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))
+                || connection.getContentEncoding() != null) {
+            return null;
+        }
+        String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Tell if a partial response starts at the expected position.
+     *
+     * @param connection
+     *            The connection.
+     * @param position
+     *            The expected first byte.
+     * @return <code>true</code> if the Content-Range starts at the position.
+     */
+    static boolean resumesAt(URLConnection connection, long position) {
+        String contentRange = connection.getHeaderField("Content-Range");
+        return contentRange != null && contentRange.startsWith("bytes " + position + '-');
+    }
+
+    /**
+     * Open and configure a connection.
+     *
+     * @param urlRessource
+     *            The URL to connect to.
+     * @return The connection, not yet connected.
+     * @throws IOException
+     *             If the connection can't be created.
+     */
+    URLConnection openConnection(URL urlRessource) throws IOException {
+        return openConnection(urlRessource, null);
+    }
+
+    /**
+     * Open and configure a connection, with timeouts shortened to the time
+     * left to a call.
+     *
+     * @param urlRessource
+     *            The URL to connect to.
+     * @param context
+     *            The state of the call, or <code>null</code>.
+     * @return The connection, not yet connected.
+     * @throws IOException
+     *             If the connection can't be created or the call must stop.
+     */
+    URLConnection openConnection(URL urlRessource, TransferContext context) throws IOException {
+        int connectTimeout = retryPolicy.getConnectTimeout();
+        int readTimeout = retryPolicy.getReadTimeout();
+        if (rateLimiter != null) {
+            rateLimiter.acquireRequest(urlRessource, context);
+        }
+        if (context != null) {
+            context.check();
+            long remaining = context.remainingMillis();
+            if (remaining < Integer.MAX_VALUE) {
+                int left = (int) Math.max(1, remaining);
+                connectTimeout = connectTimeout == 0 ? left : Math.min(connectTimeout, left);
+                readTimeout = readTimeout == 0 ? left : Math.min(readTimeout, left);
+            }
+        }
+
+        URLConnection connection = urlRessource.openConnection(proxy);
+        connection.setRequestProperty("User-Agent", "Lynx");
+        connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            connection.setRequestProperty(property.getKey(), property.getValue());
+        }
+
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        return connection;
+    }
+
+    /**
+     * Apply the bandwidth limits of the client to a response stream.
+     *
+     * @param urlRessource
+     *            The loaded URL.
+     * @param in
+     *            The response stream.
+     * @param context
+     *            The state of the call, or <code>null</code>.
+     * @return The stream to read.
+     */
+    InputStream throttle(URL urlRessource, InputStream in, TransferContext context) {
+        if (rateLimiter == null || !rateLimiter.limitsBytes()) {
+            return in;
+        }
+        return new ThrottledInputStream(in, rateLimiter, BatchDownloader.hostKey(urlRessource), context);
+    }
+
+    /**
+     * Wrap the response stream according to its content encoding. When several
+     * encodings are listed, they are undone from the last to the first.
+     * Unknown encodings are left as is.
+     *
+     * @param contentEncoding
+     *            The Content-Encoding of the response.
+     * @param in
+     *            The response stream.
+     * @return The stream to read the content.
+     * @throws IOException
+     *             If the stream header can't be read.
+     */
+    InputStream decode(String contentEncoding, InputStream in) throws IOException {
+        if (contentEncoding == null) {
+            return in;
+        }
+
+        InputStream decoded = in;
+        String[] codings = contentEncoding.split(",");
+        for (int i = codings.length - 1; i >= 0; i--) {
+            String coding = codings[i].trim().toLowerCase(Locale.ROOT);
+            if ("x-gzip".equals(coding)) {
+                coding = "gzip";
+            }
+            ContentDecoder decoder = decoders.get(coding);
+            if (decoder != null) {
+                decoded = decoder.decode(decoded);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * @return The value of the <code>Accept-Encoding</code> header.
+     */
+    String getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    /**
+     * Get the HTTP status of a connection.
+     *
+     * @param connection
+     *            The connection.
+     * @return The HTTP status code, or -1 if the protocol is not HTTP.
+     * @throws IOException
+     *             If the response can't be read.
+     */
+    static int status(URLConnection connection) throws IOException {
+        if (connection instanceof HttpURLConnection) {
+            return ((HttpURLConnection) connection).getResponseCode();
+        }
+        return -1;
+    }
+
+    /**
+     * Builder of {@link RessourceClient}. A builder is not thread safe, but the
+     * clients it builds are.
+     */
+    public static final class Builder {
+
+        private Proxy proxy = Proxy.NO_PROXY;
+
+        private int timeout = LoadRessource.DEFAULT_TIMEOUT;
+
+        private int attempts = LoadRessource.DEFAULT_ATTEMPTS;
+
+        private final Map<String, String> properties = new LinkedHashMap<>();
+
+        private HttpCache cache;
+
+        private RequestCoalescer coalescer;
+
+        private final Map<String, ContentDecoder> decoders = new LinkedHashMap<>();
+
+        private RetryPolicy retryPolicy;
+
+        private Executor executor;
+
+        private DownloadListener listener;
+
+        private RateLimiter rateLimiter;
+
+        private Builder() {
+            super();
+            decoders.put("gzip", ContentDecoder.GZIP);
+            decoders.put("deflate", ContentDecoder.DEFLATE);
+        }
+
+        /**
+         * Set the proxy to be used when using URL connection.
+         *
+         * @param proxy
+         *            The proxy to use, <code>null</code> means
+         *            {@link Proxy#NO_PROXY}.
+         * @return This builder.
+         */
+        public Builder proxy(Proxy proxy) {
+            this.proxy = proxy == null ? Proxy.NO_PROXY : proxy;
+            return this;
+        }
+
+        /**
+         * Change the connect and read timeouts.
+         *
+         * @param timeout
+         *            The new timeout in milliseconds.
+         * @return This builder.
+         */
+        public Builder timeout(int timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Set the attempt number before throwing an exception.
+         *
+         * @param attempts
+         *            New attempt number, at least 1.
+         * @return This builder.
+         */
+        public Builder attempts(int attempts) {
+            if (attempts < 1) {
+                throw new IllegalArgumentException("At least one attempt is needed.");
+            }
+            this.attempts = attempts;
+            return this;
+        }
+
+        /**
+         * Add an HTTP header to send with each request.
+         *
+         * @param name
+         *            The header name.
+         * @param value
+         *            The header value.
+         * @return This builder.
+         */
+        public Builder property(String name, String value) {
+            properties.put(name, value);
+            return this;
+        }
+
+        /**
+         * Add HTTP headers to send with each request. The properties are copied.
+         *
+         * @param properties
+         *            A {@link Properties} object containing the HTTP headers to
+         *            use, can be <code>null</code>.
+         * @return This builder.
+         */
+        public Builder properties(Properties properties) {
+            if (properties != null) {
+                for (String cle : properties.stringPropertyNames()) {
+                    this.properties.put(cle, properties.getProperty(cle));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Store and revalidate HTTP responses in a cache.
+         *
+         * @param cache
+         *            The cache to use, <code>null</code> to disable caching.
+         * @return This builder.
+         */
+        public Builder cache(HttpCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Share one transfer between concurrent identical in-memory loads.
+         *
+         * @param coalescer
+         *            The coalescer to use, <code>null</code> to disable
+         *            sharing.
+         * @return This builder.
+         */
+        public Builder coalescer(RequestCoalescer coalescer) {
+            this.coalescer = coalescer;
+            return this;
+        }
+
+        /**
+         * Set how requests are retried and bounded. When set, the values given
+         * to {@link #timeout(int)} and {@link #attempts(int)} are ignored.
+         *
+         * @param retryPolicy
+         *            The policy, <code>null</code> to build one from the timeout
+         *            and attempts of this builder.
+         * @return This builder.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Set the executor of the asynchronous loads. By default, the HTTP
+         * client of Java 11 uses its own, and the blocking loads run on a
+         * shared pool of daemon threads.
+         *
+         * @param executor
+         *            The executor, <code>null</code> for the default one.
+         * @return This builder.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the listener notified at the end of each call, such as a
+         * {@link DownloadMetrics}.
+         *
+         * @param listener
+         *            The listener, <code>null</code> for none.
+         * @return This builder.
+         */
+        public Builder listener(DownloadListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Set the limiter pacing the requests and the bandwidth. To limit
+         * several clients together, give them the same limiter.
+         *
+         * @param rateLimiter
+         *            The limiter, <code>null</code> for none.
+         * @return This builder.
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Register the decoder of a content encoding. The registered encodings
+         * are announced in the <code>Accept-Encoding</code> header. The
+         * <code>gzip</code> and <code>deflate</code> encodings are registered
+         * by default.
+         *
+         * @param encoding
+         *            The encoding name, case insensitive.
+         * @param decoder
+         *            The decoder, <code>null</code> to stop accepting the
+         *            encoding.
+         * @return This builder.
+         */
+        public Builder decoder(String encoding, ContentDecoder decoder) {
+            String name = encoding.trim().toLowerCase(Locale.ROOT);
+            if (decoder == null) {
+                decoders.remove(name);
+            } else {
+                decoders.put(name, decoder);
+            }
+            return this;
+        }
+
+        /**
+         * @return A new client using the current configuration.
+         */
+        public RessourceClient build() {
+            return new RessourceClient(this);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package tools.io;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a request done by a {@link RessourceClient}.<br>
+ * Each request gets its own result, so it can be read safely whatever the
+ * number of threads using the same client.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class RessourceResponse {
+
+    private final URL url;
+
+    private final int status;
+
+    private final Map<String, List<String>> headers;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private final byte[] body;
+
+    /**
+     * Build a result.
+     *
+     * @param url
+     *            The loaded URL.
+     * @param status
+     *            The HTTP status code, or -1 if the protocol is not HTTP.
+     * @param headers
+     *            The response header fields.
+     * @param bytesRead
+     *            The number of bytes received, before any decoding.
+     * @param bytesWritten
+     *            The number of bytes delivered, after decoding.
+     * @param body
+     *            The loaded data, or <code>null</code> if it was written to a
+     *            stream.
+     */
+    RessourceResponse(URL url, int status, Map<String, List<String>> headers, long bytesRead, long bytesWritten,
+            byte[] body) {
+        super();
+        this.url = url;
+        this.status = status;
+        this.headers = headers == null ? Collections.<String, List<String>>emptyMap() : headers;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.body = body;
+    }
+
+    /**
+     * @return The loaded URL.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * @return The HTTP status code, or -1 if the protocol is not HTTP.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns an unmodifiable Map of the header fields. The Map keys are Strings
+     * that represent the response-header field names. Each Map value is an
+     * unmodifiable List of Strings that represents the corresponding field values.
+     *
+     * @return a Map of header fields
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Get the first value of a header field, ignoring the field name case.
+     *
+     * @param name
+     *            The header field name.
+     * @return The first value, or <code>null</code> if the field is absent.
+     */
+    public String getHeader(String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of bytes received from the network, before any
+     *         content decoding, summed over all attempts.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return The number of bytes delivered to the caller, after content
+     *         decoding.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Get the loaded data. The array is not copied.
+     *
+     * @return The loaded data, or <code>null</code> if the data was written to
+     *         a stream.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+}
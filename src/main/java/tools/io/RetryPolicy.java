@@ -0,0 +1,364 @@
+package tools.io;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a {@link RessourceClient} retries failed requests and bounds their
+ * duration.<br>
+ * A request is retried on timeouts, refused connections and on the HTTP
+ * statuses 429, 502, 503 and 504, after an exponential backoff with random
+ * jitter (or the <code>Retry-After</code> delay when the server gives one).
+ * Connect, read and total timeouts are separate.<br>
+ * With hedging enabled, an in-memory load still running after a delay starts
+ * a second identical request, and the first to succeed is kept. The delay is
+ * a percentile of the durations of the previous loads done with this policy,
+ * so only the slowest requests are hedged. A policy is immutable, except for
+ * these statistics, and can be shared by several clients.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class RetryPolicy {
+
+    /**
+     * Minimum number of recorded durations before the percentile is used as
+     * hedging delay.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    private final int attempts;
+
+    private final long initialBackoff;
+
+    private final long maxBackoff;
+
+    private final double multiplier;
+
+    private final double jitter;
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    private final long totalTimeout;
+
+    private final Executor hedgeExecutor;
+
+    private final long hedgeDelay;
+
+    private final LatencyTracker latencies;
+
+    private RetryPolicy(Builder builder) {
+        this.attempts = builder.attempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.totalTimeout = builder.totalTimeout;
+        this.hedgeExecutor = builder.hedgeExecutor;
+        this.hedgeDelay = builder.hedgeDelay;
+        this.latencies = builder.hedgeExecutor == null ? null : new LatencyTracker(builder.hedgePercentile);
+    }
+
+    /**
+     * Create a builder initialized with {@link LoadRessource#DEFAULT_ATTEMPTS}
+     * attempts, connect and read timeouts of
+     * {@link LoadRessource#DEFAULT_TIMEOUT}, no total timeout, a backoff
+     * starting at 100 ms doubled up to 5 s with 50 % jitter, and no hedging.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The maximum number of attempts.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return The connect timeout, in milliseconds.
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return The read timeout, in milliseconds.
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * @return The maximum duration of a call in milliseconds, 0 if unlimited.
+     */
+    public long getTotalTimeout() {
+        return totalTimeout;
+    }
+
+    /**
+     * @return <code>true</code> if slow in-memory loads are hedged.
+     */
+    public boolean isHedging() {
+        return hedgeExecutor != null;
+    }
+
+    /**
+     * Compute the wait before an attempt.
+     *
+     * @param retry
+     *            The number of the retry, starting at 1.
+     * @param retryAfter
+     *            The delay asked by the server in milliseconds, or -1.
+     * @return The delay in milliseconds.
+     */
+    long backoff(int retry, long retryAfter) {
+        if (retryAfter >= 0) {
+            return Math.min(retryAfter, maxBackoff);
+        }
+        double delay = Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, retry - 1.0));
+        return (long) (delay * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Tell if a failure is worth another attempt.
+     *
+     * @param e
+     *            The failure.
+     * @return <code>true</code> for timeouts, refused connections and
+     *         retryable HTTP statuses.
+     */
+    static boolean isRetryable(IOException e) {
+        return e instanceof SocketTimeoutException || e instanceof ConnectException
+                || e instanceof NoRouteToHostException || e instanceof RetryableStatusException;
+    }
+
+    /**
+     * Tell if an HTTP status means the request can be sent again later.
+     *
+     * @param status
+     *            The HTTP status.
+     * @return <code>true</code> for 429, 502, 503 and 504.
+     */
+    static boolean isRetryableStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * @return The executor running hedged requests, or <code>null</code>.
+     */
+    Executor getHedgeExecutor() {
+        return hedgeExecutor;
+    }
+
+    /**
+     * @return The time to wait for a load before hedging it, in milliseconds.
+     */
+    long hedgeDelay() {
+        long percentile = latencies.get();
+        if (percentile < 0 || latencies.getCount() < MIN_SAMPLES) {
+            return hedgeDelay;
+        }
+        return Math.max(hedgeDelay, percentile);
+    }
+
+    /**
+     * Record the duration of a successful load, used to compute the hedging
+     * delay.
+     *
+     * @param millis
+     *            The duration in milliseconds.
+     */
+    void recordLatency(long millis) {
+        if (latencies != null) {
+            latencies.record(millis);
+        }
+    }
+
+    /**
+     * Response with a status worth retrying.
+     */
+    static final class RetryableStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfter;
+
+        /**
+         * @param message
+         *            The error message.
+         * @param retryAfter
+         *            The delay asked by the server in milliseconds, or -1.
+         */
+        RetryableStatusException(String message, long retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * @return The delay asked by the server in milliseconds, or -1.
+         */
+        long getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /**
+     * Builder of {@link RetryPolicy}.
+     */
+    public static final class Builder {
+
+        private int attempts = LoadRessource.DEFAULT_ATTEMPTS;
+
+        private long initialBackoff = 100;
+
+        private long maxBackoff = 5000;
+
+        private double multiplier = 2;
+
+        private double jitter = 0.5;
+
+        private int connectTimeout = LoadRessource.DEFAULT_TIMEOUT;
+
+        private int readTimeout = LoadRessource.DEFAULT_TIMEOUT;
+
+        private long totalTimeout;
+
+        private Executor hedgeExecutor;
+
+        private long hedgeDelay;
+
+        private double hedgePercentile;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * Set the maximum number of attempts.
+         *
+         * @param attempts
+         *            The number of attempts, at least 1.
+         * @return This builder.
+         */
+        public Builder attempts(int attempts) {
+            if (attempts < 1) {
+                throw new IllegalArgumentException("At least one attempt is needed.");
+            }
+            this.attempts = attempts;
+            return this;
+        }
+
+        /**
+         * Set the exponential backoff between attempts.
+         *
+         * @param initial
+         *            The wait before the first retry, in milliseconds.
+         * @param max
+         *            The maximum wait, in milliseconds.
+         * @param multiplier
+         *            The factor applied to the wait at each retry, at least 1.
+         * @param jitter
+         *            The fraction of the wait randomly removed, between 0 and
+         *            1.
+         * @return This builder.
+         */
+        public Builder backoff(long initial, long max, double multiplier, double jitter) {
+            if (initial < 0 || max < initial || multiplier < 1 || jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Invalid backoff.");
+            }
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            this.multiplier = multiplier;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Retry at once, as the first versions of {@link LoadRessource} did.
+         *
+         * @return This builder.
+         */
+        public Builder noBackoff() {
+            return backoff(0, 0, 1, 0);
+        }
+
+        /**
+         * Set the connect timeout.
+         *
+         * @param millis
+         *            The timeout in milliseconds, 0 for none.
+         * @return This builder.
+         */
+        public Builder connectTimeout(int millis) {
+            this.connectTimeout = millis;
+            return this;
+        }
+
+        /**
+         * Set the read timeout, the longest wait for data.
+         *
+         * @param millis
+         *            The timeout in milliseconds, 0 for none.
+         * @return This builder.
+         */
+        public Builder readTimeout(int millis) {
+            this.readTimeout = millis;
+            return this;
+        }
+
+        /**
+         * Set the maximum duration of a call, all attempts and waits included.
+         *
+         * @param millis
+         *            The timeout in milliseconds, 0 for none.
+         * @return This builder.
+         */
+        public Builder totalTimeout(long millis) {
+            this.totalTimeout = millis;
+            return this;
+        }
+
+        /**
+         * Hedge the in-memory loads slower than a percentile of the previous
+         * ones.
+         *
+         * @param executor
+         *            The executor running the requests of a hedged load.
+         * @param minDelay
+         *            The minimum wait before hedging, used alone until enough
+         *            durations are known, in milliseconds.
+         * @param percentile
+         *            The percentile of the previous durations to wait, such as
+         *            0.95.
+         * @return This builder.
+         */
+        public Builder hedging(Executor executor, long minDelay, double percentile) {
+            if (percentile <= 0 || percentile >= 1) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 1.");
+            }
+            this.hedgeExecutor = executor;
+            this.hedgeDelay = minDelay;
+            this.hedgePercentile = percentile;
+            return this;
+        }
+
+        /**
+         * @return A new policy.
+         */
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
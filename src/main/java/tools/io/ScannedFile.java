@@ -0,0 +1,74 @@
+package tools.io;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A file found by a {@link DirectoryScanner}, with the attributes read while
+ * scanning.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class ScannedFile {
+
+    private final Path path;
+
+    private final Path relativePath;
+
+    private final BasicFileAttributes attributes;
+
+    ScannedFile(Path path, Path relativePath, BasicFileAttributes attributes) {
+        super();
+        this.path = path;
+        this.relativePath = relativePath;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @return The path of the file, resolved against the scanned directory.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The path of the file relative to the scanned directory.
+     */
+    public Path getRelativePath() {
+        return relativePath;
+    }
+
+    /**
+     * @return The name of the file.
+     */
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * @return The attributes of the file, links not followed.
+     */
+    public BasicFileAttributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return <code>true</code> for a directory.
+     */
+    public boolean isDirectory() {
+        return attributes.isDirectory();
+    }
+
+    /**
+     * @return The size of the file in bytes.
+     */
+    public long getSize() {
+        return attributes.size();
+    }
+
+    @Override
+    public String toString() {
+        return relativePath.toString();
+    }
+}
@@ -0,0 +1,412 @@
+package tools.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Download a large file with several connections, each one loading byte
+ * ranges written in place in the target file.<br>
+ * The file is split in blocks of fixed size. The completed blocks are recorded
+ * in a state file next to the target (<code>target.part</code>), so a download
+ * interrupted by an error or a restart only loads the missing blocks when run
+ * again. The state is dropped if the resource changed (length, ETag or
+ * Last-Modified). Servers that don't support ranges, or don't tell the
+ * length of the resource, are loaded with a single connection. Each block
+ * request is retried as the {@link RetryPolicy} of the client allows.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class SegmentedDownloader {
+
+    private static final Logger LOGGER = Logger.getLogger(SegmentedDownloader.class.getName());
+
+    /**
+     * Default size of the blocks, 8 MiB.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024 * 1024;
+
+    private static final int STATE_MAGIC = 0x53444c31;
+
+    private static final String STATE_SUFFIX = ".part";
+
+    private final RessourceClient client;
+
+    private final int segments;
+
+    private final int blockSize;
+
+    private final Executor executor;
+
+    /**
+     * Build a downloader using its own threads and blocks of
+     * {@link #DEFAULT_BLOCK_SIZE}.
+     *
+     * @param client
+     *            The client giving the connection configuration.
+     * @param segments
+     *            The number of simultaneous connections.
+     */
+    public SegmentedDownloader(RessourceClient client, int segments) {
+        this(client, segments, DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Build a downloader.
+     *
+     * @param client
+     *            The client giving the connection configuration.
+     * @param segments
+     *            The number of simultaneous connections.
+     * @param blockSize
+     *            The size of the blocks, the unit of resumption.
+     * @param executor
+     *            The executor running the connections, or <code>null</code> to
+     *            use dedicated threads.
+     */
+    public SegmentedDownloader(RessourceClient client, int segments, int blockSize, Executor executor) {
+        super();
+        if (segments < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("Segments and block size must be at least 1.");
+        }
+        this.client = client;
+        this.segments = segments;
+        this.blockSize = blockSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Download a resource to a file, resuming a previous attempt if possible.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param target
+     *            The file to write.
+     * @throws IOException
+     *             If the download failed. The completed blocks are kept for the
+     *             next attempt.
+     */
+    public void download(URL urlRessource, Path target) throws IOException {
+        URLConnection probe = client.openConnection(urlRessource);
+        probe.setRequestProperty("Accept-Encoding", "identity");
+        probe.setRequestProperty("Range", "bytes=0-0");
+
+        long length = -1;
+        if (probe instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) probe).getResponseCode();
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                length = totalLength(probe.getHeaderField("Content-Range"));
+                if (length < 0) {
+                    // Ranges without known length: the probe body is only the first byte.
+                    probe.getInputStream().close();
+                    client.getRessource(urlRessource, Files.newOutputStream(target));
+                    Files.deleteIfExists(statePath(target));
+                    return;
+                }
+            } else if (status == 416) {
+                // Range not satisfiable: the resource is empty.
+                Files.write(target, new byte[0]);
+                Files.deleteIfExists(statePath(target));
+                return;
+            }
+        }
+
+        if (length < 0) {
+            // No range support: the probe response is the whole resource.
+            try (InputStream in = probe.getInputStream()) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(statePath(target));
+            return;
+        }
+        probe.getInputStream().close();
+
+        State state = loadState(urlRessource, target, length, validator(probe));
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (state.done.isEmpty()) {
+                channel.truncate(0);
+            }
+            loadBlocks(urlRessource, target, channel, state);
+            channel.truncate(length);
+            channel.force(true);
+        }
+        Files.deleteIfExists(statePath(target));
+    }
+
+    private void loadBlocks(URL urlRessource, Path target, FileChannel channel, State state) throws IOException {
+        List<Integer> missing = new ArrayList<>();
+        for (int block = state.done.nextClearBit(0); block < state.blockCount; block = state.done
+                .nextClearBit(block + 1)) {
+            missing.add(block);
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService own = executor == null ? Executors.newFixedThreadPool(Math.min(segments, missing.size()))
+                : null;
+        Executor runner = own == null ? executor : own;
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < Math.min(segments, missing.size()); i++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < missing.size()) {
+                        int block = missing.get(index);
+                        try {
+                            loadBlock(urlRessource, channel, state, block);
+                            state.complete(block, channel, statePath(target));
+                        } catch (IOException e) {
+                            // Stop the other workers at their next block.
+                            next.set(missing.size());
+                            throw new CompletionException(e);
+                        }
+                    }
+                }, runner));
+            }
+
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[workers.size()])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(String.format("Segmented download of %s failed.", urlRessource), cause);
+            }
+            throw e;
+        } finally {
+            if (own != null) {
+                own.shutdown();
+            }
+        }
+    }
+
+    private void loadBlock(URL urlRessource, FileChannel channel, State state, int block) throws IOException {
+        long start = (long) block * state.blockSize;
+        long end = Math.min(start + state.blockSize, state.length) - 1;
+        RetryPolicy retryPolicy = client.getRetryPolicy();
+        TransferContext context = new TransferContext(retryPolicy.getTotalTimeout());
+
+        int tries = 0;
+        long position = start;
+        while (true) {
+            URLConnection connection = client.openConnection(urlRessource, context);
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            connection.setRequestProperty("Range", "bytes=" + position + '-' + end);
+            if (state.validator != null) {
+                connection.setRequestProperty("If-Range", state.validator);
+            }
+            context.attach(connection);
+            long wait;
+
+            try {
+                int status = RessourceClient.status(connection);
+                if (RetryPolicy.isRetryableStatus(status)) {
+                    RessourceClient.discardError(connection);
+                    throw new RetryPolicy.RetryableStatusException(String.format(
+                            "HTTP status %d when loading block %d of %s.", status, block, urlRessource),
+                            RessourceClient.retryAfter(connection));
+                }
+                try (InputStream in = new DeadlineInputStream(
+                        client.throttle(urlRessource, connection.getInputStream(), context), context)) {
+                    if (status != HttpURLConnection.HTTP_PARTIAL) {
+                        throw new IOException(String.format("%s changed or stopped accepting ranges.", urlRessource));
+                    }
+                    if (!RessourceClient.resumesAt(connection, position)) {
+                        throw new IOException(
+                                String.format("Unexpected range received for block %d of %s.", block, urlRessource));
+                    }
+                    byte[] buffer = BufferPool.acquireArray();
+                    try {
+                        int n;
+                        while (position <= end
+                                && (n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                            while (chunk.hasRemaining()) {
+                                position += channel.write(chunk, position);
+                            }
+                        }
+                    } finally {
+                        BufferPool.releaseArray(buffer);
+                    }
+                    if (position <= end) {
+                        throw new IOException(String.format("Block %d of %s is incomplete.", block, urlRessource));
+                    }
+                    return;
+                }
+            } catch (IOException e) {
+                if (context.isCancelled() || !RetryPolicy.isRetryable(e)) {
+                    throw e;
+                }
+                tries++;
+                if (tries >= retryPolicy.getAttempts()) {
+                    throw new IOException(
+                            String.format("Too many failed attempts when loading block %d of %s.", block, urlRessource),
+                            e);
+                }
+                LOGGER.log(Level.WARNING,
+                        String.format("Attempt %d failed when loading block %d of %s.", tries, block, urlRessource), e);
+                wait = retryPolicy.backoff(tries, e instanceof RetryPolicy.RetryableStatusException
+                        ? ((RetryPolicy.RetryableStatusException) e).getRetryAfter() : -1);
+            }
+
+            RessourceClient.pause(wait, context);
+        }
+    }
+
+    /**
+     * Get the path of the state file of a target.
+     *
+     * @param target
+     *            The downloaded file.
+     * @return The state file.
+     */
+    static Path statePath(Path target) {
+        return target.resolveSibling(target.getFileName().toString() + STATE_SUFFIX);
+    }
+
+    /**
+     * Read the total length in a <code>Content-Range</code> header.
+     *
+     * @param contentRange
+     *            The header value, such as <code>bytes 0-0/1234</code>.
+     * @return The total length, or -1 if unknown.
+     */
+    static long totalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get a validator usable in an <code>If-Range</code> header.
+     *
+     * @param connection
+     *            The connection.
+     * @return A strong ETag, the Last-Modified date, or <code>null</code>.
+     */
+    private static String validator(URLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    private State loadState(URL urlRessource, Path target, long length, String validator) {
+        State fresh = new State(urlRessource.toExternalForm(), length, validator, blockSize);
+        if (!Files.exists(target)) {
+            return fresh;
+        }
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(statePath(target)))) {
+            if (in.readInt() != STATE_MAGIC) {
+                return fresh;
+            }
+            String url = in.readUTF();
+            long savedLength = in.readLong();
+            String savedValidator = in.readUTF();
+            int savedBlockSize = in.readInt();
+            byte[] bits = new byte[in.readInt()];
+            in.readFully(bits);
+
+            if (fresh.url.equals(url) && savedLength == length && validator != null
+                    && validator.equals(savedValidator) && savedBlockSize > 0) {
+                State resumed = new State(url, length, validator, savedBlockSize);
+                resumed.done.or(BitSet.valueOf(bits));
+                return resumed;
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing to resume.
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Ignoring unreadable state of %s.", target), e);
+        }
+        return fresh;
+    }
+
+    /**
+     * Progress of a download.
+     */
+    private static final class State {
+
+        private final String url;
+
+        private final long length;
+
+        private final String validator;
+
+        private final int blockSize;
+
+        private final int blockCount;
+
+        /**
+         * Completed blocks. Guarded by this.
+         */
+        private final BitSet done = new BitSet();
+
+        private State(String url, long length, String validator, int blockSize) {
+            this.url = url;
+            this.length = length;
+            this.validator = validator;
+            this.blockSize = blockSize;
+            this.blockCount = (int) ((length + blockSize - 1) / blockSize);
+        }
+
+        /**
+         * Mark a block as done, once its data is on disk.
+         */
+        private synchronized void complete(int block, FileChannel channel, Path statePath) throws IOException {
+            channel.force(false);
+            done.set(block);
+            if (validator == null) {
+                // Without validator a later resume would not be safe.
+                return;
+            }
+
+            Path temp = statePath.resolveSibling(statePath.getFileName().toString() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeInt(STATE_MAGIC);
+                out.writeUTF(url);
+                out.writeLong(length);
+                out.writeUTF(validator);
+                out.writeInt(blockSize);
+                byte[] bits = done.toByteArray();
+                out.writeInt(bits.length);
+                out.write(bits);
+            }
+            Files.move(temp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
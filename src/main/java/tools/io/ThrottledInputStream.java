@@ -0,0 +1,65 @@
+package tools.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream waiting after each read until the {@link RateLimiter} allows the
+ * bytes read.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class ThrottledInputStream extends FilterInputStream {
+
+    private final RateLimiter limiter;
+
+    private final String host;
+
+    private final TransferContext context;
+
+    /**
+     * @param in
+     *            The stream to read.
+     * @param limiter
+     *            The limiter.
+     * @param host
+     *            The host key of the stream.
+     * @param context
+     *            The state of the call, or <code>null</code>.
+     */
+    ThrottledInputStream(InputStream in, RateLimiter limiter, String host, TransferContext context) {
+        super(in);
+        this.limiter = limiter;
+        this.host = host;
+        this.context = context;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            limiter.acquireBytes(host, 1, context);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            limiter.acquireBytes(host, n, context);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            limiter.acquireBytes(host, skipped, context);
+        }
+        return skipped;
+    }
+}
@@ -0,0 +1,87 @@
+package tools.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free token bucket.<br>
+ * The bucket is kept as the theoretical time at which all the tokens taken so
+ * far are paid back, updated with a single compare and set. Taking tokens
+ * never fails: it returns how long the caller must wait before using them, so
+ * a request larger than the bucket is simply spread over time.<br>
+ * A bucket full again can be retired, so that a new one replaces it without
+ * letting more tokens through.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class TokenBucket {
+
+    /**
+     * Value of <code>paidUntil</code> of a retired bucket.
+     */
+    private static final long RETIRED = Long.MAX_VALUE;
+
+    private final double nanosPerToken;
+
+    private final long burstNanos;
+
+    private final AtomicLong paidUntil = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Build a bucket, initially full.
+     *
+     * @param tokensPerSecond
+     *            The rate at which tokens are added.
+     * @param capacity
+     *            The maximum number of tokens kept, the allowed burst.
+     */
+    TokenBucket(double tokensPerSecond, long capacity) {
+        super();
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("The rate and the capacity must be positive.");
+        }
+        this.nanosPerToken = 1_000_000_000.0 / tokensPerSecond;
+        this.burstNanos = (long) Math.min(Long.MAX_VALUE / 4.0, capacity * nanosPerToken);
+    }
+
+    /**
+     * Take tokens.
+     *
+     * @param tokens
+     *            The number of tokens.
+     * @param now
+     *            The current {@link System#nanoTime()}.
+     * @return The nanoseconds to wait before using the tokens, or -1 if the
+     *         bucket is retired.
+     */
+    long reserve(long tokens, long now) {
+        long cost = (long) Math.min(Long.MAX_VALUE / 4.0, tokens * nanosPerToken);
+        while (true) {
+            long current = paidUntil.get();
+            if (current == RETIRED) {
+                return -1;
+            }
+            long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = start + cost;
+            if (paidUntil.compareAndSet(current, next)) {
+                return Math.max(0, next - now - burstNanos);
+            }
+        }
+    }
+
+    /**
+     * Retire the bucket if all the tokens taken were paid back: it then
+     * refuses any reservation.
+     *
+     * @param now
+     *            The current {@link System#nanoTime()}.
+     * @return <code>true</code> if the bucket is retired.
+     */
+    boolean retireIfFull(long now) {
+        long current = paidUntil.get();
+        if (current == RETIRED) {
+            return true;
+        }
+        return (current == Long.MIN_VALUE || current - now <= 0) && paidUntil.compareAndSet(current, RETIRED);
+    }
+}
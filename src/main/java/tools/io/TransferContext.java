@@ -0,0 +1,224 @@
+package tools.io;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.Future;
+
+/**
+ * State of one call to a {@link RessourceClient}: its deadline, its current
+ * connection or exchange and whether it was cancelled. Cancelling disconnects
+ * the current connection, or cancels the current exchange, so a blocked read
+ * ends at once.<br>
+ * The call also records here the timings and sizes reported to its
+ * {@link DownloadListener}. They are written and read by one thread at a
+ * time.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class TransferContext {
+
+    private final long start = System.nanoTime();
+
+    private final long deadline;
+
+    private volatile URLConnection connection;
+
+    private volatile Future<?> exchange;
+
+    private volatile boolean cancelled;
+
+    private int status = -1;
+
+    private long connectNanos = -1;
+
+    private long firstByteNanos = -1;
+
+    private long transferNanos = -1;
+
+    private int retries;
+
+    private long bytesRead;
+
+    private long bytesWritten;
+
+    /**
+     * Build a context.
+     *
+     * @param totalTimeout
+     *            The maximum duration of the call in milliseconds, 0 for no
+     *            limit.
+     */
+    TransferContext(long totalTimeout) {
+        super();
+        this.deadline = totalTimeout > 0 ? start + totalTimeout * 1_000_000L : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The milliseconds elapsed since the call started.
+     */
+    long elapsedMillis() {
+        return (System.nanoTime() - start) / 1_000_000L;
+    }
+
+    /**
+     * @return The milliseconds left before the deadline,
+     *         {@link Long#MAX_VALUE} without deadline.
+     */
+    long remainingMillis() {
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return (deadline - System.nanoTime()) / 1_000_000L;
+    }
+
+    /**
+     * Record the connection of the current attempt.
+     *
+     * @param current
+     *            The connection.
+     * @throws IOException
+     *             If the call was cancelled.
+     */
+    void attach(URLConnection current) throws IOException {
+        this.connection = current;
+        check();
+    }
+
+    /**
+     * Record the asynchronous exchange of the current attempt. It is cancelled
+     * at once if the call was.
+     *
+     * @param current
+     *            The exchange.
+     * @throws IOException
+     *             If the call was cancelled.
+     */
+    void attach(Future<?> current) throws IOException {
+        this.exchange = current;
+        if (cancelled) {
+            current.cancel(true);
+        }
+        check();
+    }
+
+    /**
+     * Stop the call: the current connection is closed, the current exchange
+     * cancelled, and no new attempt is made.
+     */
+    void cancel() {
+        cancelled = true;
+        URLConnection current = connection;
+        if (current instanceof HttpURLConnection) {
+            ((HttpURLConnection) current).disconnect();
+        }
+        Future<?> currentExchange = exchange;
+        if (currentExchange != null) {
+            currentExchange.cancel(true);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the call was cancelled.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Fail if the call was cancelled or its deadline is over.
+     *
+     * @throws IOException
+     *             If the call must stop.
+     */
+    void check() throws IOException {
+        if (cancelled) {
+            throw new IOException("Request cancelled.");
+        }
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            throw new DeadlineExceededException();
+        }
+    }
+
+    /**
+     * Record the timings of an attempt which received a response.
+     *
+     * @param responseStatus
+     *            The HTTP status, or -1.
+     * @param connect
+     *            The nanoseconds spent to connect.
+     * @param firstByte
+     *            The nanoseconds from the start of the attempt to the response
+     *            headers.
+     */
+    void responded(int responseStatus, long connect, long firstByte) {
+        this.status = responseStatus;
+        this.connectNanos = connect;
+        this.firstByteNanos = firstByte;
+        this.transferNanos = -1;
+    }
+
+    /**
+     * Record the end of the body of the last attempt.
+     *
+     * @param nanos
+     *            The nanoseconds from the response headers to the end of the
+     *            body.
+     */
+    void transferred(long nanos) {
+        this.transferNanos = nanos;
+    }
+
+    /**
+     * Record a failed attempt followed by another one.
+     */
+    void retried() {
+        retries++;
+    }
+
+    /**
+     * Add the bytes moved by an attempt.
+     *
+     * @param read
+     *            The bytes read from the network.
+     * @param written
+     *            The bytes given to the caller.
+     */
+    void moved(long read, long written) {
+        this.bytesRead += read;
+        this.bytesWritten += written;
+    }
+
+    /**
+     * Build the event describing the call.
+     *
+     * @param url
+     *            The loaded URL.
+     * @param response
+     *            The result of the call, or <code>null</code> if it failed.
+     * @param failure
+     *            The error met, or <code>null</code>.
+     * @return A new event.
+     */
+    DownloadEvent toEvent(URL url, RessourceResponse response, Exception failure) {
+        long read = response != null ? response.getBytesRead() : bytesRead;
+        long written = response != null ? response.getBytesWritten() : bytesWritten;
+        int finalStatus = response != null ? response.getStatus() : status;
+        return new DownloadEvent(url, finalStatus, connectNanos, firstByteNanos, transferNanos,
+                System.nanoTime() - start, read, written, retries, failure);
+    }
+
+    /**
+     * Thrown when the total time allowed to a call is over.
+     */
+    static final class DeadlineExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        DeadlineExceededException() {
+            super("Total timeout exceeded.");
+        }
+    }
+}
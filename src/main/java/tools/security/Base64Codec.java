@@ -0,0 +1,337 @@
+package tools.security;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Base64 encoding and decoding (RFC 4648), writing in arrays, builders and
+ * buffers given by the caller.<br>
+ * Encoding reads the two characters of each 12 bits with a single lookup in a
+ * table of 4096 entries, so 3 bytes cost 2 lookups. Decoding accepts input
+ * with or without padding, but no line breaks. Immutable and thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class Base64Codec {
+
+    /**
+     * The base64 alphabet, with padding.
+     */
+    public static final Base64Codec BASIC = new Base64Codec(
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true);
+
+    /**
+     * The URL and file name safe alphabet, without padding.
+     */
+    public static final Base64Codec URL = new Base64Codec(
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", false);
+
+    private static final char PAD = '=';
+
+    private final char[] alphabet;
+
+    /**
+     * The two characters of each 12 bits value, the first one in the high 16
+     * bits.
+     */
+    private final int[] pairs = new int[4096];
+
+    /**
+     * Value of each ASCII character, -1 if it is not in the alphabet.
+     */
+    private final byte[] values = new byte[128];
+
+    private final boolean padding;
+
+    private Base64Codec(String alphabet, boolean padding) {
+        this(alphabet.toCharArray(), padding);
+    }
+
+    private Base64Codec(char[] alphabet, boolean padding) {
+        this.alphabet = alphabet;
+        this.padding = padding;
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = alphabet[i >>> 6] << 16 | alphabet[i & 0x3F];
+        }
+        Arrays.fill(values, (byte) -1);
+        for (int i = 0; i < alphabet.length; i++) {
+            values[alphabet[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * @return A codec using the same alphabet, padding the encoded text.
+     */
+    public Base64Codec withPadding() {
+        return padding ? this : new Base64Codec(alphabet, true);
+    }
+
+    /**
+     * @return A codec using the same alphabet, not padding the encoded text.
+     */
+    public Base64Codec withoutPadding() {
+        return padding ? new Base64Codec(alphabet, false) : this;
+    }
+
+    /**
+     * Give the length of the encoding of some bytes.
+     *
+     * @param length
+     *            The number of bytes.
+     * @return The number of characters.
+     */
+    public int encodedLength(int length) {
+        return padding ? (length + 2) / 3 * 4 : length / 3 * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+    }
+
+    /**
+     * Encode an array.
+     *
+     * @param bytes
+     *            The bytes.
+     * @return The encoded {@link String}.
+     */
+    public String encode(byte[] bytes) {
+        char[] chars = new char[encodedLength(bytes.length)];
+        encode(bytes, 0, bytes.length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encode bytes into an array of characters.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param chars
+     *            The array receiving {@link #encodedLength(int)} characters.
+     * @param charsOffset
+     *            Index of the first character written.
+     * @return The number of characters written.
+     */
+    public int encode(byte[] bytes, int offset, int length, char[] chars, int charsOffset) {
+        int j = charsOffset;
+        int i = offset;
+        for (int end = offset + length - 2; i < end; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | bytes[i + 2] & 0xFF;
+            int high = pairs[bits >>> 12];
+            int low = pairs[bits & 0xFFF];
+            chars[j++] = (char) (high >>> 16);
+            chars[j++] = (char) high;
+            chars[j++] = (char) (low >>> 16);
+            chars[j++] = (char) low;
+        }
+        int remaining = offset + length - i;
+        if (remaining > 0) {
+            int bits = tail(bytes, i, remaining);
+            int high = pairs[bits >>> 12];
+            chars[j++] = (char) (high >>> 16);
+            chars[j++] = (char) high;
+            if (remaining == 2) {
+                chars[j++] = alphabet[bits >>> 6 & 0x3F];
+            }
+            if (padding) {
+                chars[j++] = PAD;
+                if (remaining == 1) {
+                    chars[j++] = PAD;
+                }
+            }
+        }
+        return j - charsOffset;
+    }
+
+    /**
+     * Append the encoding of some bytes to a builder.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param builder
+     *            The builder.
+     * @return The builder.
+     */
+    public StringBuilder encode(byte[] bytes, int offset, int length, StringBuilder builder) {
+        builder.ensureCapacity(builder.length() + encodedLength(length));
+        try {
+            encode(bytes, offset, length, (Appendable) builder);
+        } catch (IOException e) {
+            // A StringBuilder never throws.
+            throw new IllegalStateException(e);
+        }
+        return builder;
+    }
+
+    /**
+     * Append the encoding of some bytes.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param out
+     *            Receive the characters.
+     * @return The appendable.
+     * @throws IOException
+     *             If the appendable fails.
+     */
+    public Appendable encode(byte[] bytes, int offset, int length, Appendable out) throws IOException {
+        int i = offset;
+        for (int end = offset + length - 2; i < end; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | bytes[i + 2] & 0xFF;
+            int high = pairs[bits >>> 12];
+            int low = pairs[bits & 0xFFF];
+            out.append((char) (high >>> 16)).append((char) high).append((char) (low >>> 16)).append((char) low);
+        }
+        int remaining = offset + length - i;
+        if (remaining > 0) {
+            int bits = tail(bytes, i, remaining);
+            int high = pairs[bits >>> 12];
+            out.append((char) (high >>> 16)).append((char) high);
+            if (remaining == 2) {
+                out.append(alphabet[bits >>> 6 & 0x3F]);
+            }
+            if (padding) {
+                out.append(remaining == 2 ? "=" : "==");
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Write the ASCII encoding of the remaining bytes of a buffer to another
+     * buffer. Both positions are moved past the bytes read and written.
+     *
+     * @param bytes
+     *            The bytes, from the position to the limit.
+     * @param out
+     *            The buffer receiving {@link #encodedLength(int)} bytes.
+     */
+    public void encode(ByteBuffer bytes, ByteBuffer out) {
+        if (out.remaining() < encodedLength(bytes.remaining())) {
+            throw new BufferOverflowException();
+        }
+        while (bytes.remaining() >= 3) {
+            int bits = (bytes.get() & 0xFF) << 16 | (bytes.get() & 0xFF) << 8 | bytes.get() & 0xFF;
+            int high = pairs[bits >>> 12];
+            int low = pairs[bits & 0xFFF];
+            out.put((byte) (high >>> 16)).put((byte) high).put((byte) (low >>> 16)).put((byte) low);
+        }
+        int remaining = bytes.remaining();
+        if (remaining > 0) {
+            int bits = (bytes.get() & 0xFF) << 16 | (remaining == 2 ? (bytes.get() & 0xFF) << 8 : 0);
+            int high = pairs[bits >>> 12];
+            out.put((byte) (high >>> 16)).put((byte) high);
+            if (remaining == 2) {
+                out.put((byte) alphabet[bits >>> 6 & 0x3F]);
+            }
+            if (padding) {
+                out.put((byte) PAD);
+                if (remaining == 1) {
+                    out.put((byte) PAD);
+                }
+            }
+        }
+    }
+
+    private static int tail(byte[] bytes, int index, int remaining) {
+        return (bytes[index] & 0xFF) << 16 | (remaining == 2 ? (bytes[index + 1] & 0xFF) << 8 : 0);
+    }
+
+    /**
+     * Give the number of bytes encoded by some characters.
+     *
+     * @param chars
+     *            The characters.
+     * @param start
+     *            Index of the first character.
+     * @param end
+     *            Index after the last character.
+     * @return The number of bytes.
+     */
+    public static int decodedLength(CharSequence chars, int start, int end) {
+        int last = end;
+        while (last > start && end - last < 2 && chars.charAt(last - 1) == PAD) {
+            last--;
+        }
+        int length = last - start;
+        return length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1);
+    }
+
+    /**
+     * Decode characters.
+     *
+     * @param chars
+     *            The encoded characters.
+     * @return The bytes.
+     */
+    public byte[] decode(CharSequence chars) {
+        byte[] bytes = new byte[decodedLength(chars, 0, chars.length())];
+        decode(chars, 0, chars.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Decode characters into an array.
+     *
+     * @param chars
+     *            The encoded characters, padded or not.
+     * @param start
+     *            Index of the first character.
+     * @param end
+     *            Index after the last character.
+     * @param bytes
+     *            The array receiving
+     *            {@link #decodedLength(CharSequence, int, int)} bytes.
+     * @param offset
+     *            Index of the first byte written.
+     * @return The number of bytes written.
+     */
+    public int decode(CharSequence chars, int start, int end, byte[] bytes, int offset) {
+        int last = end;
+        while (last > start && end - last < 2 && chars.charAt(last - 1) == PAD) {
+            last--;
+        }
+        if ((last - start) % 4 == 1 || last < end && (end - start) % 4 != 0) {
+            throw new IllegalArgumentException("Invalid length of base64 text.");
+        }
+        int j = offset;
+        int i = start;
+        for (int blocksEnd = last - 3; i < blocksEnd; i += 4) {
+            int bits = value(chars, i) << 18 | value(chars, i + 1) << 12 | value(chars, i + 2) << 6
+                    | value(chars, i + 3);
+            bytes[j++] = (byte) (bits >>> 16);
+            bytes[j++] = (byte) (bits >>> 8);
+            bytes[j++] = (byte) bits;
+        }
+        int remaining = last - i;
+        if (remaining > 0) {
+            int bits = value(chars, i) << 18 | value(chars, i + 1) << 12;
+            bytes[j++] = (byte) (bits >>> 16);
+            if (remaining == 3) {
+                bits |= value(chars, i + 2) << 6;
+                bytes[j++] = (byte) (bits >>> 8);
+            }
+        }
+        return j - offset;
+    }
+
+    private int value(CharSequence chars, int index) {
+        char c = chars.charAt(index);
+        int value = c < 128 ? values[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("Invalid base64 character '%c' at index %d.", c, index));
+        }
+        return value;
+    }
+}
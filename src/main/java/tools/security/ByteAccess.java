@@ -0,0 +1,141 @@
+package tools.security;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Little endian reads in an input of some type, so that the non
+ * cryptographic hashes run on arrays, buffers and characters without copying
+ * them.<br>
+ * A {@link CharSequence} is read as the UTF-16LE encoding of its characters.
+ *
+ * @author A. CANDIAN
+ *
+ * @param <T>
+ *            The type of the input.
+ */
+abstract class ByteAccess<T> {
+
+    /**
+     * Reads in an array.
+     */
+    static final ByteAccess<byte[]> ARRAY = new ByteAccess<byte[]>() {
+
+        @Override
+        long getLong(byte[] input, int index) {
+            return (input[index] & 0xFFL) | (input[index + 1] & 0xFFL) << 8 | (input[index + 2] & 0xFFL) << 16
+                    | (input[index + 3] & 0xFFL) << 24 | (input[index + 4] & 0xFFL) << 32
+                    | (input[index + 5] & 0xFFL) << 40 | (input[index + 6] & 0xFFL) << 48
+                    | (input[index + 7] & 0xFFL) << 56;
+        }
+
+        @Override
+        int getInt(byte[] input, int index) {
+            return (input[index] & 0xFF) | (input[index + 1] & 0xFF) << 8 | (input[index + 2] & 0xFF) << 16
+                    | (input[index + 3] & 0xFF) << 24;
+        }
+
+        @Override
+        int getByte(byte[] input, int index) {
+            return input[index] & 0xFF;
+        }
+    };
+
+    /**
+     * Absolute reads in a buffer, which must be little endian: see
+     * {@link #littleEndian(ByteBuffer)}.
+     */
+    static final ByteAccess<ByteBuffer> BUFFER = new ByteAccess<ByteBuffer>() {
+
+        @Override
+        long getLong(ByteBuffer input, int index) {
+            return input.getLong(index);
+        }
+
+        @Override
+        int getInt(ByteBuffer input, int index) {
+            return input.getInt(index);
+        }
+
+        @Override
+        int getByte(ByteBuffer input, int index) {
+            return input.get(index) & 0xFF;
+        }
+    };
+
+    /**
+     * Reads in the UTF-16LE encoding of characters.
+     */
+    static final ByteAccess<CharSequence> CHARS = new ByteAccess<CharSequence>() {
+
+        @Override
+        long getLong(CharSequence input, int index) {
+            if ((index & 1) != 0) {
+                return (getInt(input, index) & 0xFFFFFFFFL) | (long) getInt(input, index + 4) << 32;
+            }
+            int i = index >> 1;
+            return input.charAt(i) | (long) input.charAt(i + 1) << 16 | (long) input.charAt(i + 2) << 32
+                    | (long) input.charAt(i + 3) << 48;
+        }
+
+        @Override
+        int getInt(CharSequence input, int index) {
+            if ((index & 1) != 0) {
+                return getByte(input, index) | getByte(input, index + 1) << 8 | getByte(input, index + 2) << 16
+                        | getByte(input, index + 3) << 24;
+            }
+            int i = index >> 1;
+            return input.charAt(i) | input.charAt(i + 1) << 16;
+        }
+
+        @Override
+        int getByte(CharSequence input, int index) {
+            return input.charAt(index >> 1) >>> ((index & 1) << 3) & 0xFF;
+        }
+    };
+
+    /**
+     * Read 8 bytes.
+     *
+     * @param input
+     *            The input.
+     * @param index
+     *            Index of the first byte.
+     * @return The bytes as a little endian long.
+     */
+    abstract long getLong(T input, int index);
+
+    /**
+     * Read 4 bytes.
+     *
+     * @param input
+     *            The input.
+     * @param index
+     *            Index of the first byte.
+     * @return The bytes as a little endian int.
+     */
+    abstract int getInt(T input, int index);
+
+    /**
+     * Read a byte.
+     *
+     * @param input
+     *            The input.
+     * @param index
+     *            Index of the byte.
+     * @return The unsigned byte.
+     */
+    abstract int getByte(T input, int index);
+
+    /**
+     * Give a little endian view of a direct buffer, sharing its content.
+     *
+     * @param buffer
+     *            The buffer.
+     * @return The view, indexed as the buffer.
+     */
+    static ByteBuffer littleEndian(ByteBuffer buffer) {
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? buffer
+                : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
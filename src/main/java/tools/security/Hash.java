@@ -1,7 +1,16 @@
 package tools.security;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Utility class to hash things.
@@ -11,7 +20,16 @@ import java.security.NoSuchAlgorithmException;
  */
 public final class Hash {
 
-    private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
+    /**
+     * Size of the buffer used to read streams.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Digests of each thread by algorithm, so that a digest is looked up in
+     * the providers only once per thread.
+     */
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
 
     /**
      * Private constructor for a utility class.
@@ -22,20 +40,116 @@ public final class Hash {
 
     /**
      * Convert an array of bytes to an hexadecimal {@link String}.<br>
-     * This method is quicker than the build in Java one.
+     * This method is quicker than the build in Java one. To write in an
+     * existing array or builder, or to decode, use {@link HexCodec}.
      * 
      * @param bytes
      *            The byte array to convert.
      * @return A {@link String} representing the byte array.
      */
     public static String bytesToHex(byte[] bytes) {
-        char[] hexChars = new char[bytes.length * 2];
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = HEX_ARRAY[v >>> 4];
-            hexChars[j * 2 + 1] = HEX_ARRAY[v & 0x0F];
+        return HexCodec.UPPER.encode(bytes);
+    }
+
+    /**
+     * Give the digest of the current thread for an algorithm, reset.<br>
+     * A digest is used by one method at a time and always finished or reset
+     * before being reused.
+     *
+     * @param digestAlgo
+     *            The algorithm.
+     * @return The digest.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    static MessageDigest digest(String digestAlgo) throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest md = digests.get(digestAlgo);
+        if (md == null) {
+            md = MessageDigest.getInstance(digestAlgo);
+            digests.put(digestAlgo, md);
+        } else {
+            md.reset();
+        }
+        return md;
+    }
+
+    /**
+     * Take the digest of the current thread for an algorithm out of the
+     * cache, reset, for a method calling other code while digesting: a digest
+     * used by that code can't be the one in use. Give it back with
+     * {@link #release(String, MessageDigest)}.
+     *
+     * @param digestAlgo
+     *            The algorithm.
+     * @return The digest.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    static MessageDigest acquire(String digestAlgo) throws NoSuchAlgorithmException {
+        MessageDigest md = DIGESTS.get().remove(digestAlgo);
+        if (md == null) {
+            md = MessageDigest.getInstance(digestAlgo);
+        } else {
+            md.reset();
         }
-        return new String(hexChars);
+        return md;
+    }
+
+    /**
+     * Give back a digest taken with {@link #acquire(String)}, unless the cache
+     * got another one meanwhile.
+     *
+     * @param digestAlgo
+     *            The algorithm.
+     * @param md
+     *            The digest.
+     */
+    static void release(String digestAlgo, MessageDigest md) {
+        DIGESTS.get().putIfAbsent(digestAlgo, md);
+    }
+
+    /**
+     * Give the length of the digests of an algorithm.
+     *
+     * @param digestAlgo
+     *            The algorithm.
+     * @return The length in bytes of a digest.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static int digestLength(String digestAlgo) throws NoSuchAlgorithmException {
+        return digest(digestAlgo).getDigestLength();
+    }
+
+    /**
+     * Hash some bytes into an array, without allocating anything once the
+     * digest of the algorithm has been used by the calling thread.
+     *
+     * @param bytesToDigest
+     *            Array of the bytes to hash.
+     * @param offset
+     *            Index of the first byte to hash.
+     * @param length
+     *            Number of bytes to hash.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @param digest
+     *            Array receiving the digest, at least
+     *            {@link #digestLength(String)} bytes after its offset.
+     * @param digestOffset
+     *            Index where the digest is written.
+     * @return The length of the digest.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     * @throws DigestException
+     *             If the digest doesn't fit in the array.
+     */
+    public static int hash(byte[] bytesToDigest, int offset, int length, String digestAlgo, byte[] digest,
+            int digestOffset) throws NoSuchAlgorithmException, DigestException {
+        MessageDigest md = digest(digestAlgo);
+        md.update(bytesToDigest, offset, length);
+        return md.digest(digest, digestOffset, digest.length - digestOffset);
     }
 
     /**
@@ -50,9 +164,104 @@ public final class Hash {
      *             If you try to use an unavailable digest algorithm.
      */
     public static final byte[] hash(byte[] bytesToDigest, String digestAlgo) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance(digestAlgo);
+        MessageDigest md = digest(digestAlgo);
 
         return md.digest(bytesToDigest);
     }
 
+    /**
+     * Hash the bytes of a stream, read with a fixed size buffer, and return
+     * the digested value. The stream is read to its end but not closed, and
+     * may itself hash things while it is read.
+     *
+     * @param in
+     *            Stream to hash.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @return The digested bytes, equal to the digest of all the bytes read.
+     * @throws IOException
+     *             If the stream can't be read.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static final byte[] hash(InputStream in, String digestAlgo) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = acquire(digestAlgo);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                md.update(buffer, 0, read);
+            }
+            return md.digest();
+        } finally {
+            release(digestAlgo, md);
+        }
+    }
+
+    /**
+     * Hash the content of a file and return the digested value.<br>
+     * The file is read through one buffer of at most {@link #BUFFER_SIZE}
+     * bytes, reused until the end of the file.
+     *
+     * @param file
+     *            File to hash.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @return The digested bytes.
+     * @throws IOException
+     *             If the file can't be read.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static final byte[] hash(Path file, String digestAlgo) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md = acquire(digestAlgo);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(BUFFER_SIZE, channel.size())));
+            while (channel.read(buffer) >= 0) {
+                md.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return md.digest();
+        } finally {
+            release(digestAlgo, md);
+        }
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer, heap or direct, and return the
+     * digested value. The position of the buffer is not changed.
+     *
+     * @param buffer
+     *            Bytes to hash, from the position to the limit.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @return The digested bytes.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static final byte[] hash(ByteBuffer buffer, String digestAlgo) throws NoSuchAlgorithmException {
+        MessageDigest md = digest(digestAlgo);
+        md.update(buffer.duplicate());
+        return md.digest();
+    }
+
+    /**
+     * Hash the content of a file as a Merkle tree of chunks of
+     * {@link TreeHash#DEFAULT_CHUNK_SIZE} bytes, digested in parallel.<br>
+     * The result is not the plain digest of the file: see {@link TreeHash}.
+     *
+     * @param file
+     *            File to hash.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @return The root digest.
+     * @throws IOException
+     *             If the file can't be read.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static final byte[] treeHash(Path file, String digestAlgo) throws IOException, NoSuchAlgorithmException {
+        return TreeHash.of(file, digestAlgo).getRoot();
+    }
+
 }
@@ -0,0 +1,204 @@
+package tools.security;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hexadecimal encoding and decoding, writing in arrays, builders and buffers
+ * given by the caller.<br>
+ * Encoding reads the two characters of a byte with a single lookup in a table
+ * of 256 entries. Decoding accepts both cases. Immutable and thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class HexCodec {
+
+    /**
+     * Encode with upper case digits, as {@link Hash#bytesToHex(byte[])}.
+     */
+    public static final HexCodec UPPER = new HexCodec("0123456789ABCDEF");
+
+    /**
+     * Encode with lower case digits.
+     */
+    public static final HexCodec LOWER = new HexCodec("0123456789abcdef");
+
+    /**
+     * Value of each ASCII character, -1 if it is not a digit.
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            VALUES["0123456789abcdef".charAt(i)] = (byte) i;
+            VALUES["0123456789ABCDEF".charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * The two characters of each byte, the first one in the high 16 bits.
+     */
+    private final int[] pairs = new int[256];
+
+    private HexCodec(String digits) {
+        for (int i = 0; i < 256; i++) {
+            pairs[i] = digits.charAt(i >>> 4) << 16 | digits.charAt(i & 0x0F);
+        }
+    }
+
+    /**
+     * Encode an array.
+     *
+     * @param bytes
+     *            The bytes.
+     * @return The hexadecimal {@link String}.
+     */
+    public String encode(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        encode(bytes, 0, bytes.length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encode bytes into an array of characters.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param chars
+     *            The array receiving <code>2 * length</code> characters.
+     * @param charsOffset
+     *            Index of the first character written.
+     * @return The number of characters written.
+     */
+    public int encode(byte[] bytes, int offset, int length, char[] chars, int charsOffset) {
+        int j = charsOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[bytes[i] & 0xFF];
+            chars[j++] = (char) (pair >>> 16);
+            chars[j++] = (char) pair;
+        }
+        return length * 2;
+    }
+
+    /**
+     * Append the encoding of some bytes to a builder.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param builder
+     *            The builder.
+     * @return The builder.
+     */
+    public StringBuilder encode(byte[] bytes, int offset, int length, StringBuilder builder) {
+        builder.ensureCapacity(builder.length() + length * 2);
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[bytes[i] & 0xFF];
+            builder.append((char) (pair >>> 16)).append((char) pair);
+        }
+        return builder;
+    }
+
+    /**
+     * Append the encoding of some bytes.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param out
+     *            Receive the characters.
+     * @return The appendable.
+     * @throws IOException
+     *             If the appendable fails.
+     */
+    public Appendable encode(byte[] bytes, int offset, int length, Appendable out) throws IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = pairs[bytes[i] & 0xFF];
+            out.append((char) (pair >>> 16)).append((char) pair);
+        }
+        return out;
+    }
+
+    /**
+     * Write the ASCII encoding of the remaining bytes of a buffer to another
+     * buffer. Both positions are moved past the bytes read and written.
+     *
+     * @param bytes
+     *            The bytes, from the position to the limit.
+     * @param out
+     *            The buffer receiving <code>2 * bytes.remaining()</code>
+     *            bytes.
+     */
+    public void encode(ByteBuffer bytes, ByteBuffer out) {
+        if (out.remaining() < bytes.remaining() * 2) {
+            throw new BufferOverflowException();
+        }
+        while (bytes.hasRemaining()) {
+            int pair = pairs[bytes.get() & 0xFF];
+            out.put((byte) (pair >>> 16)).put((byte) pair);
+        }
+    }
+
+    /**
+     * Decode hexadecimal characters.
+     *
+     * @param chars
+     *            The characters, an even number of digits of any case.
+     * @return The bytes.
+     */
+    public static byte[] decode(CharSequence chars) {
+        byte[] bytes = new byte[chars.length() / 2];
+        decode(chars, 0, chars.length(), bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Decode hexadecimal characters into an array.
+     *
+     * @param chars
+     *            The characters.
+     * @param start
+     *            Index of the first character.
+     * @param end
+     *            Index after the last character.
+     * @param bytes
+     *            The array receiving <code>(end - start) / 2</code> bytes.
+     * @param offset
+     *            Index of the first byte written.
+     * @return The number of bytes written.
+     */
+    public static int decode(CharSequence chars, int start, int end, byte[] bytes, int offset) {
+        if (((end - start) & 1) != 0) {
+            throw new IllegalArgumentException("An hexadecimal string has an even number of digits.");
+        }
+        int j = offset;
+        for (int i = start; i < end; i += 2) {
+            bytes[j++] = (byte) (value(chars, i) << 4 | value(chars, i + 1));
+        }
+        return j - offset;
+    }
+
+    private static int value(CharSequence chars, int index) {
+        char c = chars.charAt(index);
+        int value = c < 128 ? VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid hexadecimal digit '%c' at index %d.", c, index));
+        }
+        return value;
+    }
+}
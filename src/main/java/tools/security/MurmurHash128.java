@@ -0,0 +1,227 @@
+package tools.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MurmurHash3 x64_128, a 128 bits non cryptographic hash.<br>
+ * The hash is made of two longs, <code>h1</code> and <code>h2</code>; the
+ * usual byte representation is <code>h1</code> then <code>h2</code>, both
+ * little endian. The static methods hash an input at once and write the hash
+ * in an array given by the caller. An instance hashes an input given in
+ * several parts, and gives the same value as the static methods for the
+ * whole input. A {@link CharSequence} is hashed as the UTF-16LE encoding of
+ * its characters, without encoding it.<br>
+ * Not for security: use {@link Hash} to detect tampering. Instances are not
+ * thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class MurmurHash128 extends StreamingHash {
+
+    private static final long C1 = 0x87C37B91114253D5L;
+
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private static final int BLOCK = 16;
+
+    private final int seed;
+
+    private long h1;
+
+    private long h2;
+
+    /**
+     * Start a hash with a seed of 0.
+     */
+    public MurmurHash128() {
+        this(0);
+    }
+
+    /**
+     * Start a hash.
+     *
+     * @param seed
+     *            The seed, used as an unsigned value.
+     */
+    public MurmurHash128(int seed) {
+        super(BLOCK);
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        h1 = seed & 0xFFFFFFFFL;
+        h2 = h1;
+    }
+
+    @Override
+    <T> void processBlocks(ByteAccess<T> access, T input, int from, int to) {
+        long a = h1;
+        long b = h2;
+        for (int i = from; i < to; i += BLOCK) {
+            a ^= mixK1(access.getLong(input, i));
+            a = (Long.rotateLeft(a, 27) + b) * 5 + 0x52DCE729;
+            b ^= mixK2(access.getLong(input, i + 8));
+            b = (Long.rotateLeft(b, 31) + a) * 5 + 0x38495AB5;
+        }
+        h1 = a;
+        h2 = b;
+    }
+
+    /**
+     * Give the hash of the bytes added since the creation or the last reset.
+     *
+     * @param result
+     *            Array receiving <code>h1</code> and <code>h2</code>, at
+     *            least 2 longs.
+     */
+    public void getValue(long[] result) {
+        finish(ByteAccess.ARRAY, pending, 0, pendingLength, h1, h2, total, result);
+    }
+
+    /**
+     * @return The first 64 bits, <code>h1</code>, of the hash of the bytes
+     *         added since the creation or the last reset.
+     */
+    public long getValue64() {
+        long[] result = new long[2];
+        getValue(result);
+        return result[0];
+    }
+
+    /**
+     * Hash an array with a seed of 0.
+     *
+     * @param bytes
+     *            The bytes to hash.
+     * @return The hash: <code>h1</code> and <code>h2</code>.
+     */
+    public static long[] hash(byte[] bytes) {
+        long[] result = new long[2];
+        hash(bytes, 0, bytes.length, 0, result);
+        return result;
+    }
+
+    /**
+     * Hash a part of an array.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param seed
+     *            The seed, used as an unsigned value.
+     * @param result
+     *            Array receiving <code>h1</code> and <code>h2</code>, at
+     *            least 2 longs.
+     */
+    public static void hash(byte[] bytes, int offset, int length, int seed, long[] result) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        hash(ByteAccess.ARRAY, bytes, offset, length, seed, result);
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer, heap or direct. The position of
+     * the buffer is not changed.
+     *
+     * @param buffer
+     *            The bytes, from the position to the limit.
+     * @param seed
+     *            The seed, used as an unsigned value.
+     * @param result
+     *            Array receiving <code>h1</code> and <code>h2</code>, at
+     *            least 2 longs.
+     */
+    public static void hash(ByteBuffer buffer, int seed, long[] result) {
+        if (buffer.hasArray()) {
+            hash(ByteAccess.ARRAY, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+                    seed, result);
+        } else {
+            hash(ByteAccess.BUFFER, ByteAccess.littleEndian(buffer), buffer.position(), buffer.remaining(), seed,
+                    result);
+        }
+    }
+
+    /**
+     * Hash the UTF-16LE encoding of some characters.
+     *
+     * @param chars
+     *            The characters.
+     * @param seed
+     *            The seed, used as an unsigned value.
+     * @param result
+     *            Array receiving <code>h1</code> and <code>h2</code>, at
+     *            least 2 longs.
+     */
+    public static void hash(CharSequence chars, int seed, long[] result) {
+        hash(ByteAccess.CHARS, chars, 0, chars.length() * 2, seed, result);
+    }
+
+    private static <T> void hash(ByteAccess<T> access, T input, int offset, int length, int seed, long[] result) {
+        long a = seed & 0xFFFFFFFFL;
+        long b = a;
+        int blocksEnd = offset + (length & ~(BLOCK - 1));
+        for (int i = offset; i < blocksEnd; i += BLOCK) {
+            a ^= mixK1(access.getLong(input, i));
+            a = (Long.rotateLeft(a, 27) + b) * 5 + 0x52DCE729;
+            b ^= mixK2(access.getLong(input, i + 8));
+            b = (Long.rotateLeft(b, 31) + a) * 5 + 0x38495AB5;
+        }
+        finish(access, input, blocksEnd, offset + length, a, b, length, result);
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static <T> void finish(ByteAccess<T> access, T input, int from, int to, long hash1, long hash2,
+            long length, long[] result) {
+        long a = hash1;
+        long b = hash2;
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = to - 1; i >= from; i--) {
+            if (i - from >= 8) {
+                k2 = k2 << 8 | access.getByte(input, i);
+            } else {
+                k1 = k1 << 8 | access.getByte(input, i);
+            }
+        }
+        if (to - from > 8) {
+            b ^= mixK2(k2);
+        }
+        if (to > from) {
+            a ^= mixK1(k1);
+        }
+        a ^= length;
+        b ^= length;
+        a += b;
+        b += a;
+        a = fmix(a);
+        b = fmix(b);
+        a += b;
+        b += a;
+        result[0] = a;
+        result[1] = b;
+    }
+
+    private static long fmix(long k) {
+        long h = k;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+}
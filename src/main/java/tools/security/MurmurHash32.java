@@ -0,0 +1,166 @@
+package tools.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MurmurHash3 x86_32, a 32 bits non cryptographic hash.<br>
+ * The static methods hash an input at once, without allocating anything. An
+ * instance hashes an input given in several parts, and gives the same value
+ * as the static methods for the whole input. A {@link CharSequence} is hashed
+ * as the UTF-16LE encoding of its characters, without encoding it.<br>
+ * Not for security: use {@link Hash} to detect tampering. Instances are not
+ * thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class MurmurHash32 extends StreamingHash {
+
+    private static final int C1 = 0xCC9E2D51;
+
+    private static final int C2 = 0x1B873593;
+
+    private static final int BLOCK = 4;
+
+    private final int seed;
+
+    private int h1;
+
+    /**
+     * Start a hash with a seed of 0.
+     */
+    public MurmurHash32() {
+        this(0);
+    }
+
+    /**
+     * Start a hash.
+     *
+     * @param seed
+     *            The seed.
+     */
+    public MurmurHash32(int seed) {
+        super(BLOCK);
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        h1 = seed;
+    }
+
+    @Override
+    <T> void processBlocks(ByteAccess<T> access, T input, int from, int to) {
+        int h = h1;
+        for (int i = from; i < to; i += BLOCK) {
+            h = mixBlock(h, access.getInt(input, i));
+        }
+        h1 = h;
+    }
+
+    /**
+     * @return The hash of the bytes added since the creation or the last
+     *         reset.
+     */
+    public int getValue() {
+        return finish(ByteAccess.ARRAY, pending, 0, pendingLength, h1, total);
+    }
+
+    /**
+     * Hash an array with a seed of 0.
+     *
+     * @param bytes
+     *            The bytes to hash.
+     * @return The hash.
+     */
+    public static int hash(byte[] bytes) {
+        return hash(bytes, 0, bytes.length, 0);
+    }
+
+    /**
+     * Hash a part of an array.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param seed
+     *            The seed.
+     * @return The hash.
+     */
+    public static int hash(byte[] bytes, int offset, int length, int seed) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        return hash(ByteAccess.ARRAY, bytes, offset, length, seed);
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer, heap or direct. The position of
+     * the buffer is not changed.
+     *
+     * @param buffer
+     *            The bytes, from the position to the limit.
+     * @param seed
+     *            The seed.
+     * @return The hash.
+     */
+    public static int hash(ByteBuffer buffer, int seed) {
+        if (buffer.hasArray()) {
+            return hash(ByteAccess.ARRAY, buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), seed);
+        }
+        return hash(ByteAccess.BUFFER, ByteAccess.littleEndian(buffer), buffer.position(), buffer.remaining(), seed);
+    }
+
+    /**
+     * Hash the UTF-16LE encoding of some characters.
+     *
+     * @param chars
+     *            The characters.
+     * @param seed
+     *            The seed.
+     * @return The hash.
+     */
+    public static int hash(CharSequence chars, int seed) {
+        return hash(ByteAccess.CHARS, chars, 0, chars.length() * 2, seed);
+    }
+
+    private static <T> int hash(ByteAccess<T> access, T input, int offset, int length, int seed) {
+        int h = seed;
+        int blocksEnd = offset + (length & ~(BLOCK - 1));
+        for (int i = offset; i < blocksEnd; i += BLOCK) {
+            h = mixBlock(h, access.getInt(input, i));
+        }
+        return finish(access, input, blocksEnd, offset + length, h, length);
+    }
+
+    private static int mixK(int block) {
+        return Integer.rotateLeft(block * C1, 15) * C2;
+    }
+
+    private static int mixBlock(int h, int block) {
+        return Integer.rotateLeft(h ^ mixK(block), 13) * 5 + 0xE6546B64;
+    }
+
+    private static <T> int finish(ByteAccess<T> access, T input, int from, int to, int hash, long length) {
+        int h = hash;
+        int k = 0;
+        for (int i = to - 1; i >= from; i--) {
+            k = k << 8 | access.getByte(input, i);
+        }
+        if (to > from) {
+            h ^= mixK(k);
+        }
+        h ^= (int) length;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ h >>> 16;
+    }
+}
@@ -0,0 +1,130 @@
+package tools.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base of the non cryptographic hashes computed incrementally.<br>
+ * The input is consumed by blocks of a fixed size, read directly from the
+ * input given to the update methods. Only the bytes of an incomplete block
+ * are copied, to a small array, until the next update completes it.
+ *
+ * @author A. CANDIAN
+ *
+ */
+abstract class StreamingHash {
+
+    /**
+     * Bytes of the incomplete block.
+     */
+    final byte[] pending;
+
+    /**
+     * Number of bytes in {@link #pending}.
+     */
+    int pendingLength;
+
+    /**
+     * Number of bytes given to the update methods.
+     */
+    long total;
+
+    /**
+     * Build a hash.
+     *
+     * @param blockSize
+     *            The size of the blocks.
+     */
+    StreamingHash(int blockSize) {
+        super();
+        this.pending = new byte[blockSize];
+    }
+
+    /**
+     * Add bytes to the hash.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     */
+    public void update(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        update(ByteAccess.ARRAY, bytes, offset, length);
+    }
+
+    /**
+     * Add the remaining bytes of a buffer, heap or direct, to the hash. The
+     * position of the buffer is not changed.
+     *
+     * @param buffer
+     *            The bytes, from the position to the limit.
+     */
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(ByteAccess.ARRAY, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            update(ByteAccess.BUFFER, ByteAccess.littleEndian(buffer), buffer.position(), buffer.remaining());
+        }
+    }
+
+    /**
+     * Add the UTF-16LE encoding of some characters to the hash.
+     *
+     * @param chars
+     *            The characters.
+     */
+    public void update(CharSequence chars) {
+        update(ByteAccess.CHARS, chars, 0, chars.length() * 2);
+    }
+
+    private <T> void update(ByteAccess<T> access, T input, int offset, int length) {
+        total += length;
+        int index = offset;
+        int end = offset + length;
+        if (pendingLength > 0) {
+            while (pendingLength < pending.length && index < end) {
+                pending[pendingLength++] = (byte) access.getByte(input, index++);
+            }
+            if (pendingLength < pending.length) {
+                return;
+            }
+            processBlocks(ByteAccess.ARRAY, pending, 0, pending.length);
+            pendingLength = 0;
+        }
+        int blocksEnd = index + (end - index) / pending.length * pending.length;
+        if (blocksEnd > index) {
+            processBlocks(access, input, index, blocksEnd);
+        }
+        for (index = blocksEnd; index < end; index++) {
+            pending[pendingLength++] = (byte) access.getByte(input, index);
+        }
+    }
+
+    /**
+     * Forget the bytes added, to start a new hash.
+     */
+    public void reset() {
+        pendingLength = 0;
+        total = 0;
+    }
+
+    /**
+     * Mix complete blocks into the state.
+     *
+     * @param <T>
+     *            The type of the input.
+     * @param access
+     *            Reads the input.
+     * @param input
+     *            The input.
+     * @param from
+     *            Index of the first byte of the first block.
+     * @param to
+     *            Index after the last block.
+     */
+    abstract <T> void processBlocks(ByteAccess<T> access, T input, int from, int to);
+}
@@ -0,0 +1,417 @@
+package tools.security;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Digest of some bytes computed as a Merkle tree of the digests of fixed size
+ * chunks, so that the chunks are digested in parallel.<br>
+ * The bytes are split in chunks of {@link #getChunkSize()} bytes, the last one
+ * possibly shorter. As in RFC 6962, with <code>H</code> the digest algorithm:
+ * <ul>
+ * <li>the digest of a chunk <code>c</code> is
+ * <code>H(0x00 || c)</code>;</li>
+ * <li>the root of <code>n &gt; 1</code> chunk digests is
+ * <code>H(0x01 || root(first k) || root(others))</code>, where
+ * <code>k</code> is the largest power of two smaller than
+ * <code>n</code>;</li>
+ * <li>the root of one chunk digest is that digest, the root of no chunk is
+ * <code>H()</code>.</li>
+ * </ul>
+ * The root depends on the chunk size and the algorithm, and is not equal to
+ * the plain digest of the bytes. The chunk digests are kept, so a copy can be
+ * checked chunk by chunk, and a partial copy verified before resuming it.
+ * Immutable.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class TreeHash {
+
+    /**
+     * Default size of the chunks.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final byte LEAF = 0x00;
+
+    private static final byte NODE = 0x01;
+
+    /**
+     * Largest read buffer kept by a thread between chunks: bigger chunks are
+     * read into a buffer of their own, released with the chunk.
+     */
+    static final int MAX_CACHED_BUFFER = DEFAULT_CHUNK_SIZE;
+
+    private static final ThreadLocal<ByteBuffer[]> READ_BUFFERS = ThreadLocal.withInitial(() -> new ByteBuffer[1]);
+
+    private final String algorithm;
+
+    private final int chunkSize;
+
+    private final long size;
+
+    private final byte[][] chunks;
+
+    private final byte[] root;
+
+    private TreeHash(String algorithm, int chunkSize, long size, byte[][] chunks) throws NoSuchAlgorithmException {
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.size = size;
+        this.chunks = chunks;
+        this.root = chunks.length == 0 ? Hash.hash(new byte[0], algorithm) : root(0, chunks.length);
+    }
+
+    /**
+     * Tree hash a file with chunks of {@link #DEFAULT_CHUNK_SIZE} bytes, on
+     * the common fork/join pool.
+     *
+     * @param file
+     *            File to hash.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @return The tree hash.
+     * @throws IOException
+     *             If the file can't be read.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static TreeHash of(Path file, String digestAlgo) throws IOException, NoSuchAlgorithmException {
+        return of(file, digestAlgo, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tree hash a file. Each chunk is read by a fork/join task with a
+     * positional read in a direct buffer of the thread.
+     *
+     * @param file
+     *            File to hash.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @param chunkSize
+     *            The size of the chunks.
+     * @param pool
+     *            The pool digesting the chunks.
+     * @return The tree hash.
+     * @throws IOException
+     *             If the file can't be read.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static TreeHash of(Path file, String digestAlgo, int chunkSize, ForkJoinPool pool)
+            throws IOException, NoSuchAlgorithmException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return new TreeHash(digestAlgo, chunkSize, size, digestChunks(size, chunkSize, digestAlgo, pool,
+                    (position, length) -> read(channel, position, length)));
+        }
+    }
+
+    /**
+     * Tree hash the remaining bytes of a buffer, heap or direct, on the
+     * common fork/join pool. The position of the buffer is not changed.
+     *
+     * @param buffer
+     *            Bytes to hash, from the position to the limit.
+     * @param digestAlgo
+     *            The algorithm to use for digestion.
+     * @param chunkSize
+     *            The size of the chunks.
+     * @return The tree hash.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static TreeHash of(ByteBuffer buffer, String digestAlgo, int chunkSize) throws NoSuchAlgorithmException {
+        ByteBuffer bytes = buffer.slice();
+        try {
+            return new TreeHash(digestAlgo, chunkSize, bytes.remaining(),
+                    digestChunks(bytes.remaining(), chunkSize, digestAlgo, ForkJoinPool.commonPool(),
+                            (position, length) -> slice(bytes, (int) position, length)));
+        } catch (IOException e) {
+            // Never thrown when reading a buffer.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rebuild a tree hash from chunk digests, for example saved from
+     * {@link #getChunkDigest(int)} by a previous run.
+     *
+     * @param digestAlgo
+     *            The algorithm of the digests.
+     * @param chunkSize
+     *            The size of the chunks.
+     * @param size
+     *            The number of bytes hashed.
+     * @param chunkDigests
+     *            The digests of the chunks, in order.
+     * @return The tree hash.
+     * @throws NoSuchAlgorithmException
+     *             If you try to use an unavailable digest algorithm.
+     */
+    public static TreeHash fromChunks(String digestAlgo, int chunkSize, long size, List<byte[]> chunkDigests)
+            throws NoSuchAlgorithmException {
+        checkChunkSize(chunkSize);
+        if (chunkDigests.size() != chunkCount(size, chunkSize)) {
+            throw new IllegalArgumentException(
+                    String.format("%d bytes make %d chunks, not %d.", size, chunkCount(size, chunkSize),
+                            chunkDigests.size()));
+        }
+        byte[][] chunks = new byte[chunkDigests.size()][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = chunkDigests.get(i).clone();
+        }
+        return new TreeHash(digestAlgo, chunkSize, size, chunks);
+    }
+
+    /**
+     * Compare the chunks of a file with this hash.
+     *
+     * @param file
+     *            The file to check, possibly partial.
+     * @return The indexes of the chunks of this hash that the file doesn't
+     *         have, or that are different in the file, in order.
+     * @throws IOException
+     *             If the file can't be read.
+     */
+    public List<Integer> findDifferences(Path file) throws IOException {
+        TreeHash other;
+        try {
+            other = of(file, algorithm, chunkSize, ForkJoinPool.commonPool());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        List<Integer> differences = new ArrayList<>();
+        for (int i = 0; i < chunks.length; i++) {
+            long end = Math.min(size, (long) (i + 1) * chunkSize);
+            if (other.size < end || !Arrays.equals(chunks[i], other.chunks[i])) {
+                differences.add(i);
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Check a chunk.
+     *
+     * @param index
+     *            The index of the chunk.
+     * @param chunk
+     *            The bytes of the chunk, from the position to the limit. The
+     *            position of the buffer is not changed.
+     * @return <code>true</code> if the digest of the bytes is the digest of
+     *         the chunk.
+     */
+    public boolean verifyChunk(int index, ByteBuffer chunk) {
+        try {
+            return MessageDigest.isEqual(chunks[index], digestChunk(chunk.duplicate(), algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be at least 1.");
+        }
+    }
+
+    private static int chunkCount(long size, int chunkSize) {
+        long count = (size + chunkSize - 1) / chunkSize;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Chunks of %d bytes are too small.", chunkSize));
+        }
+        return (int) count;
+    }
+
+    private static byte[][] digestChunks(long size, int chunkSize, String digestAlgo, ForkJoinPool pool,
+            ChunkReader reader) throws IOException, NoSuchAlgorithmException {
+        checkChunkSize(chunkSize);
+        Hash.digest(digestAlgo);
+        byte[][] chunks = new byte[chunkCount(size, chunkSize)][];
+        try {
+            pool.invoke(new ChunkTask(chunks, 0, chunks.length, size, chunkSize, digestAlgo, reader));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return chunks;
+    }
+
+    private static byte[] digestChunk(ByteBuffer chunk, String digestAlgo) throws NoSuchAlgorithmException {
+        MessageDigest md = Hash.digest(digestAlgo);
+        md.update(LEAF);
+        md.update(chunk);
+        return md.digest();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer;
+        if (length > MAX_CACHED_BUFFER) {
+            buffer = ByteBuffer.allocate(length);
+        } else {
+            ByteBuffer[] slot = READ_BUFFERS.get();
+            if (slot[0] == null || slot[0].capacity() < length) {
+                slot[0] = ByteBuffer.allocateDirect(length);
+            }
+            buffer = slot[0];
+            buffer.clear();
+            buffer.limit(length);
+        }
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("The file was truncated while being hashed.");
+            }
+            offset += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer slice(ByteBuffer bytes, int position, int length) {
+        ByteBuffer chunk = bytes.duplicate();
+        chunk.position(position);
+        chunk.limit(position + length);
+        return chunk;
+    }
+
+    private byte[] root(int from, int to) throws NoSuchAlgorithmException {
+        if (to - from == 1) {
+            return chunks[from];
+        }
+        int split = Integer.highestOneBit(to - from - 1);
+        byte[] left = root(from, from + split);
+        byte[] right = root(from + split, to);
+        MessageDigest md = Hash.digest(algorithm);
+        md.update(NODE);
+        md.update(left);
+        md.update(right);
+        return md.digest();
+    }
+
+    /**
+     * @return The digest algorithm.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return The size of the chunks.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return The number of bytes hashed.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The number of chunks.
+     */
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * @param index
+     *            The index of a chunk.
+     * @return A copy of the digest of the chunk.
+     */
+    public byte[] getChunkDigest(int index) {
+        return chunks[index].clone();
+    }
+
+    /**
+     * @return A copy of the root digest.
+     */
+    public byte[] getRoot() {
+        return root.clone();
+    }
+
+    @Override
+    public String toString() {
+        return Hash.bytesToHex(root);
+    }
+
+    /**
+     * Give the bytes of a chunk.
+     */
+    @FunctionalInterface
+    private interface ChunkReader {
+        ByteBuffer read(long position, int length) throws IOException;
+    }
+
+    /**
+     * Digest a range of chunks, splitting it in two halves while it has more
+     * than one chunk.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[][] chunks;
+
+        private final int from;
+
+        private final int to;
+
+        private final long size;
+
+        private final int chunkSize;
+
+        private final String algorithm;
+
+        private final transient ChunkReader reader;
+
+        private ChunkTask(byte[][] chunks, int from, int to, long size, int chunkSize, String algorithm,
+                ChunkReader reader) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.algorithm = algorithm;
+            this.reader = reader;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(chunks, from, middle, size, chunkSize, algorithm, reader),
+                        new ChunkTask(chunks, middle, to, size, chunkSize, algorithm, reader));
+                return;
+            }
+            if (to == from) {
+                return;
+            }
+            long position = (long) from * chunkSize;
+            try {
+                chunks[from] = digestChunk(reader.read(position, (int) Math.min(chunkSize, size - position)),
+                        algorithm);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
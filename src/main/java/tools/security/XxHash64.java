@@ -0,0 +1,215 @@
+package tools.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * XXH64, the 64 bits variant of the xxHash non cryptographic hash.<br>
+ * The static methods hash an input at once, without allocating anything. An
+ * instance hashes an input given in several parts, and gives the same value
+ * as the static methods for the whole input. A {@link CharSequence} is hashed
+ * as the UTF-16LE encoding of its characters, without encoding it.<br>
+ * Not for security: use {@link Hash} to detect tampering. Instances are not
+ * thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class XxHash64 extends StreamingHash {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE = 32;
+
+    private final long seed;
+
+    private long v1;
+
+    private long v2;
+
+    private long v3;
+
+    private long v4;
+
+    /**
+     * Start a hash with a seed of 0.
+     */
+    public XxHash64() {
+        this(0);
+    }
+
+    /**
+     * Start a hash.
+     *
+     * @param seed
+     *            The seed.
+     */
+    public XxHash64(long seed) {
+        super(STRIPE);
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+    }
+
+    @Override
+    <T> void processBlocks(ByteAccess<T> access, T input, int from, int to) {
+        long a = v1;
+        long b = v2;
+        long c = v3;
+        long d = v4;
+        for (int i = from; i < to; i += STRIPE) {
+            a = round(a, access.getLong(input, i));
+            b = round(b, access.getLong(input, i + 8));
+            c = round(c, access.getLong(input, i + 16));
+            d = round(d, access.getLong(input, i + 24));
+        }
+        v1 = a;
+        v2 = b;
+        v3 = c;
+        v4 = d;
+    }
+
+    /**
+     * @return The hash of the bytes added since the creation or the last
+     *         reset.
+     */
+    public long getValue() {
+        long h = total >= STRIPE ? converge(v1, v2, v3, v4) : seed + PRIME5;
+        return finish(ByteAccess.ARRAY, pending, 0, pendingLength, h + total);
+    }
+
+    /**
+     * Hash an array with a seed of 0.
+     *
+     * @param bytes
+     *            The bytes to hash.
+     * @return The hash.
+     */
+    public static long hash(byte[] bytes) {
+        return hash(bytes, 0, bytes.length, 0);
+    }
+
+    /**
+     * Hash a part of an array.
+     *
+     * @param bytes
+     *            The array of the bytes.
+     * @param offset
+     *            Index of the first byte.
+     * @param length
+     *            Number of bytes.
+     * @param seed
+     *            The seed.
+     * @return The hash.
+     */
+    public static long hash(byte[] bytes, int offset, int length, long seed) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        return hash(ByteAccess.ARRAY, bytes, offset, length, seed);
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer, heap or direct. The position of
+     * the buffer is not changed.
+     *
+     * @param buffer
+     *            The bytes, from the position to the limit.
+     * @param seed
+     *            The seed.
+     * @return The hash.
+     */
+    public static long hash(ByteBuffer buffer, long seed) {
+        if (buffer.hasArray()) {
+            return hash(ByteAccess.ARRAY, buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), seed);
+        }
+        return hash(ByteAccess.BUFFER, ByteAccess.littleEndian(buffer), buffer.position(), buffer.remaining(), seed);
+    }
+
+    /**
+     * Hash the UTF-16LE encoding of some characters.
+     *
+     * @param chars
+     *            The characters.
+     * @param seed
+     *            The seed.
+     * @return The hash.
+     */
+    public static long hash(CharSequence chars, long seed) {
+        return hash(ByteAccess.CHARS, chars, 0, chars.length() * 2, seed);
+    }
+
+    private static <T> long hash(ByteAccess<T> access, T input, int offset, int length, long seed) {
+        int end = offset + length;
+        int i = offset;
+        long h;
+        if (length >= STRIPE) {
+            long a = seed + PRIME1 + PRIME2;
+            long b = seed + PRIME2;
+            long c = seed;
+            long d = seed - PRIME1;
+            for (int limit = end - STRIPE; i <= limit; i += STRIPE) {
+                a = round(a, access.getLong(input, i));
+                b = round(b, access.getLong(input, i + 8));
+                c = round(c, access.getLong(input, i + 16));
+                d = round(d, access.getLong(input, i + 24));
+            }
+            h = converge(a, b, c, d);
+        } else {
+            h = seed + PRIME5;
+        }
+        return finish(access, input, i, end, h + length);
+    }
+
+    private static long round(long acc, long lane) {
+        return Long.rotateLeft(acc + lane * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long h, long v) {
+        return (h ^ round(0, v)) * PRIME1 + PRIME4;
+    }
+
+    private static long converge(long a, long b, long c, long d) {
+        long h = Long.rotateLeft(a, 1) + Long.rotateLeft(b, 7) + Long.rotateLeft(c, 12) + Long.rotateLeft(d, 18);
+        h = merge(h, a);
+        h = merge(h, b);
+        h = merge(h, c);
+        return merge(h, d);
+    }
+
+    private static <T> long finish(ByteAccess<T> access, T input, int from, int to, long hash) {
+        long h = hash;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            h = Long.rotateLeft(h ^ round(0, access.getLong(input, i)), 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= to) {
+            h = Long.rotateLeft(h ^ (access.getInt(input, i) & 0xFFFFFFFFL) * PRIME1, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < to; i++) {
+            h = Long.rotateLeft(h ^ access.getByte(input, i) * PRIME5, 11) * PRIME1;
+        }
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        return h ^ h >>> 32;
+    }
+}
@@ -1,20 +1,41 @@
 package tools.util;
 
-import java.io.FileInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Common configurations informations.
+ * Common configurations informations.<br>
+ * The configurations are held in an immutable snapshot, replaced as a whole
+ * when the file changes: a reader sees either the old or the new
+ * configurations, never a mix, and only pays a volatile read. The typed
+ * values, the proxy included, are parsed once per snapshot.<br>
+ * The file is loaded once, unless {@link #watch()} is called: it is then
+ * watched by a daemon thread until {@link #close()}. If the file can't be
+ * read, the current configurations are kept. Thread safe.
  *
  * @author A. CANDIAN
  *
  */
-public abstract class AbstractConfiguration {
+public abstract class AbstractConfiguration implements Closeable {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractConfiguration.class.getName());
 
@@ -32,39 +53,283 @@ public abstract class AbstractConfiguration {
     public static final String PROXY_PORT = "proxy.port";
 
     /**
-     * The actual configurations.
+     * Default configurations file.
      */
-    protected Properties properties;
+    public static final String DEFAULT_FILE = "./configs.properties";
+
+    /**
+     * Cached value of a missing or invalid key.
+     */
+    private static final Object NONE = new Object();
+
+    /**
+     * A copy of the actual configurations, replaced on each reload. Changes
+     * made to it are ignored: they are neither seen by the getters nor kept
+     * by a reload.
+     */
+    protected volatile Properties properties;
+
+    private final Path file;
+
+    private volatile Snapshot snapshot;
+
+    private WatchService watcher;
 
     /**
      * Try to load a "configs.properties" file at the root of the application.
+     * The file is not watched, see {@link #watch()}.
      */
     protected AbstractConfiguration() {
+        this(Paths.get(DEFAULT_FILE), false);
+    }
 
-        properties = new Properties();
+    /**
+     * Load a configurations file.
+     *
+     * @param file
+     *            The configurations file.
+     * @param watch
+     *            <code>true</code> to reload the file when it changes, as
+     *            {@link #watch()} does.
+     */
+    protected AbstractConfiguration(Path file, boolean watch) {
+        super();
+        this.file = file.toAbsolutePath().normalize();
 
-        try (FileInputStream in = new FileInputStream("./configs.properties")) {
-            properties.load(in);
+        Properties loaded = new Properties();
+        try {
+            loaded = load(this.file);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Problème à l'ouverture du fichier de configuration.", e);
         }
+        setSnapshot(new Snapshot(loaded));
+
+        if (watch) {
+            watch();
+        }
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties loaded = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            loaded.load(in);
+        }
+        return loaded;
+    }
+
+    private void setSnapshot(Snapshot snapshot) {
+        this.snapshot = snapshot;
+        this.properties = (Properties) snapshot.properties.clone();
+    }
+
+    /**
+     * Reload the configurations file now. The snapshot is replaced only if
+     * the configurations changed.
+     *
+     * @return <code>true</code> if the configurations changed.
+     * @throws IOException
+     *             If the file can't be read. The configurations are then
+     *             unchanged.
+     */
+    public synchronized boolean reload() throws IOException {
+        Properties loaded = load(file);
+        if (loaded.equals(snapshot.properties)) {
+            return false;
+        }
+        setSnapshot(new Snapshot(loaded));
+        LOGGER.log(Level.INFO, "Configurations reloaded from {0}.", file);
+        return true;
+    }
+
+    /**
+     * Start watching the configurations file with a daemon thread, reloading
+     * it when it changes, until {@link #close()}. Does nothing if the file is
+     * already watched.
+     *
+     * @return <code>true</code> if the file is watched, <code>false</code> if
+     *         it can't be.
+     */
+    public synchronized boolean watch() {
+        if (watcher != null) {
+            return true;
+        }
+        Path directory = file.getParent();
+        WatchService service = null;
+        try {
+            service = directory.getFileSystem().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, String.format("Can't watch %s, it won't be reloaded.", file), e);
+            closeQuietly(service);
+            return false;
+        }
+        WatchService started = service;
+        Thread thread = new Thread(() -> watchLoop(started), getClass().getSimpleName() + " watcher");
+        thread.setDaemon(true);
+        thread.start();
+        watcher = service;
+        return true;
+    }
+
+    private void watchLoop(WatchService service) {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+                }
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, String.format("Can't reload %s, configurations kept.", file), e);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, String.format("Invalid file %s, configurations kept.", file), e);
+                    }
+                }
+                if (!key.reset()) {
+                    LOGGER.log(Level.WARNING, "The directory of {0} is no longer watched.", file);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Stop watching the configurations file.
+     */
+    @Override
+    public synchronized void close() {
+        closeQuietly(watcher);
+        watcher = null;
+    }
+
+    private static void closeQuietly(WatchService service) {
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Can't close the watch service.", e);
+            }
+        }
+    }
+
+    /**
+     * @return The configurations file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Get a configuration.
+     *
+     * @param key
+     *            The key.
+     * @return The value, or <code>null</code> if the key is missing.
+     */
+    public String getString(String key) {
+        return snapshot.values.get(key);
+    }
+
+    /**
+     * Get a configuration.
+     *
+     * @param key
+     *            The key.
+     * @param defaultValue
+     *            The value if the key is missing.
+     * @return The value.
+     */
+    public String getString(String key, String defaultValue) {
+        String value = snapshot.values.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Get an integer configuration, parsed once per snapshot.
+     *
+     * @param key
+     *            The key.
+     * @param defaultValue
+     *            The value if the key is missing or not an integer.
+     * @return The value.
+     */
+    public int getInt(String key, int defaultValue) {
+        Object value = snapshot.parse(snapshot.ints, key, Integer::valueOf);
+        return value == NONE ? defaultValue : (Integer) value;
+    }
+
+    /**
+     * Get a long configuration, parsed once per snapshot.
+     *
+     * @param key
+     *            The key.
+     * @param defaultValue
+     *            The value if the key is missing or not an integer.
+     * @return The value.
+     */
+    public long getLong(String key, long defaultValue) {
+        Object value = snapshot.parse(snapshot.longs, key, Long::valueOf);
+        return value == NONE ? defaultValue : (Long) value;
+    }
+
+    /**
+     * Get a boolean configuration, parsed once per snapshot.
+     *
+     * @param key
+     *            The key.
+     * @param defaultValue
+     *            The value if the key is missing or neither <code>true</code>
+     *            nor <code>false</code>.
+     * @return The value.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = snapshot.parse(snapshot.booleans, key, AbstractConfiguration::parseBoolean);
+        return value == NONE ? defaultValue : (Boolean) value;
+    }
+
+    private static Boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(value)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException(String.format("%s is not a boolean.", value));
     }
 
     /**
      * Build a {@link Proxy} object using the configurations.<br>
      * The proxy type can be SOCKS, or HTTP, any other value will just result as
-     * NO_PROXY. <br>
+     * NO_PROXY. The proxy is built, and its host resolved, once per snapshot.
+     * <br>
      * Can throw a {@link NumberFormatException} if the proxy port is not a
-     * valid integer.
+     * valid integer, or an {@link IllegalArgumentException} if it is out of
+     * range.
      *
      * @return A {@link Proxy} object.
      */
     public Proxy getProxy() {
+        Snapshot current = snapshot;
+        IllegalArgumentException error = current.proxyError;
+        if (error instanceof NumberFormatException) {
+            throw new NumberFormatException(error.getMessage());
+        } else if (error != null) {
+            throw new IllegalArgumentException(error.getMessage(), error);
+        }
+        return current.proxy;
+    }
+
+    private static Proxy buildProxy(Map<String, String> values) {
         Proxy retour = Proxy.NO_PROXY;
 
-        String proxyType = properties.getProperty(PROXY_TYPE);
-        String proxyHost = properties.getProperty(PROXY_HOST);
-        String proxyPort = properties.getProperty(PROXY_PORT);
+        String proxyType = values.get(PROXY_TYPE);
+        String proxyHost = values.get(PROXY_HOST);
+        String proxyPort = values.get(PROXY_PORT);
 
         // If the 3 params are filled
         if (!(proxyType == null || proxyHost == null || proxyPort == null)) {
@@ -78,4 +343,61 @@ public abstract class AbstractConfiguration {
 
         return retour;
     }
+
+    /**
+     * Configurations loaded at once, with their values parsed on first use.
+     */
+    private static final class Snapshot {
+
+        private final Properties properties;
+
+        private final Map<String, String> values;
+
+        private final Proxy proxy;
+
+        private final IllegalArgumentException proxyError;
+
+        private final Map<String, Object> ints = new ConcurrentHashMap<>();
+
+        private final Map<String, Object> longs = new ConcurrentHashMap<>();
+
+        private final Map<String, Object> booleans = new ConcurrentHashMap<>();
+
+        private Snapshot(Properties properties) {
+            this.properties = properties;
+            Map<String, String> copy = new HashMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                copy.put(key, properties.getProperty(key));
+            }
+            this.values = Collections.unmodifiableMap(copy);
+
+            Proxy built = null;
+            IllegalArgumentException error = null;
+            try {
+                built = buildProxy(values);
+            } catch (IllegalArgumentException e) {
+                // Not an integer, or out of range.
+                error = e;
+            }
+            this.proxy = built;
+            this.proxyError = error;
+        }
+
+        private Object parse(Map<String, Object> cache, String key, Function<String, Object> parser) {
+            Object value = cache.get(key);
+            if (value == null) {
+                value = NONE;
+                String string = values.get(key);
+                if (string != null) {
+                    try {
+                        value = parser.apply(string.trim());
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.log(Level.WARNING, String.format("Invalid value %s for %s.", string, key), e);
+                    }
+                }
+                cache.put(key, value);
+            }
+            return value;
+        }
+    }
 }
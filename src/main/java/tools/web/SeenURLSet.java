@@ -0,0 +1,214 @@
+package tools.web;
+
+import java.net.URL;
+
+import tools.security.XxHash64;
+
+/**
+ * Set of the URLs already seen by a crawler, keeping only a 64 bits
+ * fingerprint of each URL.<br>
+ * URLs are canonicalized with a {@link URLCanonicalizer} and fingerprinted
+ * with {@link XxHash64}. The fingerprints are kept in open addressing tables
+ * of <code>long</code>s with linear probing, filled up to 3/4 before they
+ * double: 11 to 22 bytes per URL, with no object per URL. Two different URLs
+ * may have the same fingerprint: with <code>n</code> URLs in the set, an
+ * unseen URL is wrongly reported as seen with a probability of about
+ * <code>n / 2<sup>64</sup></code>.<br>
+ * The set is split in {@value #SEGMENTS} segments chosen by the fingerprint,
+ * each one locked and grown independently, so threads adding URLs rarely
+ * wait for each other and a growth copies only one segment. Thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class SeenURLSet {
+
+    /**
+     * Number of segments.
+     */
+    static final int SEGMENTS = 64;
+
+    /**
+     * Marks an empty slot. A fingerprint of 0 is stored as 1.
+     */
+    private static final long EMPTY = 0;
+
+    private final URLCanonicalizer canonicalizer;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Build a set using {@link URLCanonicalizer#DEFAULT}.
+     *
+     * @param expectedSize
+     *            The number of URLs expected, to size the tables.
+     */
+    public SeenURLSet(long expectedSize) {
+        this(expectedSize, URLCanonicalizer.DEFAULT);
+    }
+
+    /**
+     * Build a set.
+     *
+     * @param expectedSize
+     *            The number of URLs expected, to size the tables.
+     * @param canonicalizer
+     *            The canonicalizer of the URLs.
+     */
+    public SeenURLSet(long expectedSize, URLCanonicalizer canonicalizer) {
+        super();
+        this.canonicalizer = canonicalizer;
+        long perSegment = Math.max(16, expectedSize / SEGMENTS * 4 / 3 + 1);
+        int capacity = Integer.highestOneBit((int) Math.min(Segment.MAX_CAPACITY / 2, perSegment - 1)) * 2;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Give the fingerprint of a canonical URL.
+     *
+     * @param canonicalURL
+     *            The canonical URL.
+     * @return The fingerprint.
+     */
+    public static long fingerprint(String canonicalURL) {
+        long fingerprint = XxHash64.hash(canonicalURL, 0);
+        return fingerprint == EMPTY ? 1 : fingerprint;
+    }
+
+    /**
+     * Add a URL.
+     *
+     * @param url
+     *            The URL.
+     * @return <code>true</code> if the URL was not seen before.
+     */
+    public boolean add(String url) {
+        return addFingerprint(fingerprint(canonicalizer.canonicalize(url)));
+    }
+
+    /**
+     * Add a URL.
+     *
+     * @param url
+     *            The URL.
+     * @return <code>true</code> if the URL was not seen before.
+     */
+    public boolean add(URL url) {
+        return add(url.toString());
+    }
+
+    /**
+     * Check if a URL was seen.
+     *
+     * @param url
+     *            The URL.
+     * @return <code>true</code> if the URL, or a URL with the same
+     *         fingerprint, was added.
+     */
+    public boolean contains(String url) {
+        return containsFingerprint(fingerprint(canonicalizer.canonicalize(url)));
+    }
+
+    /**
+     * Add a fingerprint given by {@link #fingerprint(String)}.
+     *
+     * @param fingerprint
+     *            The fingerprint.
+     * @return <code>true</code> if the fingerprint was not in the set.
+     */
+    public boolean addFingerprint(long fingerprint) {
+        return segment(fingerprint).add(fingerprint);
+    }
+
+    /**
+     * Check a fingerprint given by {@link #fingerprint(String)}.
+     *
+     * @param fingerprint
+     *            The fingerprint.
+     * @return <code>true</code> if the fingerprint is in the set.
+     */
+    public boolean containsFingerprint(long fingerprint) {
+        return segment(fingerprint).contains(fingerprint);
+    }
+
+    /**
+     * @return The number of fingerprints in the set.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segment(long fingerprint) {
+        return segments[(int) (fingerprint >>> 58)];
+    }
+
+    /**
+     * Open addressing table of fingerprints. The slot of a fingerprint is
+     * given by its low bits, the segment by its high bits.
+     */
+    private static final class Segment {
+
+        private static final int MAX_CAPACITY = 1 << 30;
+
+        private long[] table;
+
+        private int size;
+
+        private Segment(int capacity) {
+            this.table = new long[capacity];
+        }
+
+        private synchronized boolean add(long fingerprint) {
+            int slot = find(table, fingerprint);
+            if (table[slot] != EMPTY) {
+                return false;
+            }
+            table[slot] = fingerprint;
+            size++;
+            if (size > table.length / 4 * 3) {
+                grow();
+            }
+            return true;
+        }
+
+        private synchronized boolean contains(long fingerprint) {
+            return table[find(table, fingerprint)] != EMPTY;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            if (table.length >= MAX_CAPACITY) {
+                throw new IllegalStateException("The set of seen URLs is full.");
+            }
+            long[] grown = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != EMPTY) {
+                    grown[find(grown, fingerprint)] = fingerprint;
+                }
+            }
+            table = grown;
+        }
+
+        /**
+         * @return The slot holding the fingerprint, or the empty slot where
+         *         it would be added.
+         */
+        private static int find(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (table[slot] != EMPTY && table[slot] != fingerprint) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package tools.web;
+
+import java.net.IDN;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Rewrite absolute URLs to a canonical form, so that URLs designating the
+ * same resource are equal strings.<br>
+ * The URL is read once, component by component:
+ * <ul>
+ * <li>the scheme and the host are lower cased, international host names
+ * converted to ASCII and a trailing dot of the host removed;</li>
+ * <li>the port is removed when it is the default one of the scheme;</li>
+ * <li>the dot segments of the path are removed and an empty path becomes
+ * <code>/</code>;</li>
+ * <li>in the path and the query, escapes of unreserved characters are
+ * decoded, the other escapes are upper cased, and the characters not allowed
+ * in a URL are encoded as UTF-8;</li>
+ * <li>empty query parameters and the ignored ones are removed, the others
+ * are sorted unless configured otherwise;</li>
+ * <li>the fragment is removed.</li>
+ * </ul>
+ * Canonicalizers are configured with {@link #builder()}. Immutable and thread
+ * safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class URLCanonicalizer {
+
+    /**
+     * Canonicalizer sorting the query parameters and ignoring none.
+     */
+    public static final URLCanonicalizer DEFAULT = builder().build();
+
+    private final boolean sortQuery;
+
+    private final Set<String> ignoredParameters;
+
+    private URLCanonicalizer(Builder builder) {
+        this.sortQuery = builder.sortQuery;
+        this.ignoredParameters = Collections.unmodifiableSet(new HashSet<>(builder.ignoredParameters));
+    }
+
+    /**
+     * Create a builder of canonicalizer sorting the query parameters and
+     * ignoring none.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Canonicalize a URL.
+     *
+     * @param url
+     *            The URL.
+     * @return The canonical form.
+     */
+    public String canonicalize(URL url) {
+        return canonicalize(url.toString());
+    }
+
+    /**
+     * Canonicalize a URL.
+     *
+     * @param url
+     *            An absolute URL.
+     * @return The canonical form.
+     * @throws IllegalArgumentException
+     *             If the URL has no scheme.
+     */
+    public String canonicalize(String url) {
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && url.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int fragment = url.indexOf('#', start);
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+
+        int colon = schemeEnd(url, start, end);
+        StringBuilder out = new StringBuilder(end - start + 8);
+        for (int i = start; i < colon; i++) {
+            out.append(Character.toLowerCase(url.charAt(i)));
+        }
+        String scheme = out.toString();
+        out.append(':');
+
+        int i = colon + 1;
+        boolean hierarchical = url.startsWith("//", i);
+        if (hierarchical) {
+            i = appendAuthority(url, i + 2, end, scheme, out);
+        }
+        int query = url.indexOf('?', i);
+        if (query < 0 || query > end) {
+            query = end;
+        }
+        if (hierarchical) {
+            appendPath(url, i, query, out);
+        } else {
+            appendNormalized(url, i, query, out);
+        }
+        if (query < end) {
+            appendQuery(url, query + 1, end, out);
+        }
+        return out.toString();
+    }
+
+    private static int schemeEnd(String url, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ':' && i > start) {
+                return i;
+            }
+            boolean letter = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+            if (!letter && (i == start || !(c >= '0' && c <= '9' || c == '+' || c == '-' || c == '.'))) {
+                break;
+            }
+        }
+        throw new IllegalArgumentException(String.format("%s is not an absolute URL.", url));
+    }
+
+    /**
+     * Append the authority, user information kept as is.
+     *
+     * @return The index after the authority.
+     */
+    private static int appendAuthority(String url, int start, int end, String scheme, StringBuilder out) {
+        int authorityEnd = start;
+        while (authorityEnd < end && url.charAt(authorityEnd) != '/' && url.charAt(authorityEnd) != '?') {
+            authorityEnd++;
+        }
+        out.append("//");
+        int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart > start) {
+            out.append(url, start, hostStart);
+        } else {
+            hostStart = start;
+        }
+        int portStart = authorityEnd;
+        for (int i = authorityEnd - 1; i >= hostStart; i--) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                portStart = i;
+                break;
+            } else if (c < '0' || c > '9') {
+                break;
+            }
+        }
+
+        int hostEnd = portStart;
+        if (hostEnd > hostStart && url.charAt(hostEnd - 1) == '.') {
+            hostEnd--;
+        }
+        String host = url.substring(hostStart, hostEnd);
+        for (int i = 0; i < host.length(); i++) {
+            if (host.charAt(i) >= 0x80) {
+                host = IDN.toASCII(host, IDN.ALLOW_UNASSIGNED);
+                break;
+            }
+        }
+        out.append(host.toLowerCase(Locale.ROOT));
+
+        if (portStart + 1 < authorityEnd) {
+            int port = Integer.parseInt(url.substring(portStart + 1, authorityEnd));
+            if (port != defaultPort(scheme)) {
+                out.append(':').append(port);
+            }
+        }
+        return authorityEnd;
+    }
+
+    private static int defaultPort(String scheme) {
+        switch (scheme) {
+        case "http":
+        case "ws":
+            return 80;
+        case "https":
+        case "wss":
+            return 443;
+        case "ftp":
+            return 21;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Append a path, removing its dot segments as they are appended.
+     */
+    private static void appendPath(String url, int start, int end, StringBuilder out) {
+        int[] segments = new int[8];
+        int depth = 0;
+        int i = start;
+        if (i < end && url.charAt(i) == '/') {
+            i++;
+        }
+        boolean more = true;
+        while (more) {
+            int segmentEnd = url.indexOf('/', i);
+            if (segmentEnd < 0 || segmentEnd > end) {
+                segmentEnd = end;
+            }
+            int segmentStart = out.length();
+            out.append('/');
+            appendNormalized(url, i, segmentEnd, out);
+            more = segmentEnd < end;
+            int length = out.length() - segmentStart - 1;
+            boolean dot = length == 1 && out.charAt(segmentStart + 1) == '.';
+            boolean dotDot = length == 2 && out.charAt(segmentStart + 1) == '.' && out.charAt(segmentStart + 2) == '.';
+            if (dot || dotDot) {
+                out.setLength(segmentStart);
+                if (dotDot && depth > 0) {
+                    out.setLength(segments[--depth]);
+                }
+                if (!more) {
+                    out.append('/');
+                }
+            } else {
+                if (depth == segments.length) {
+                    segments = Arrays.copyOf(segments, depth * 2);
+                }
+                segments[depth++] = segmentStart;
+            }
+            i = segmentEnd + 1;
+        }
+    }
+
+    private void appendQuery(String url, int start, int end, StringBuilder out) {
+        List<String> parameters = new ArrayList<>();
+        StringBuilder parameter = new StringBuilder();
+        int i = start;
+        while (i <= end) {
+            int parameterEnd = url.indexOf('&', i);
+            if (parameterEnd < 0 || parameterEnd > end) {
+                parameterEnd = end;
+            }
+            if (parameterEnd > i) {
+                parameter.setLength(0);
+                appendNormalized(url, i, parameterEnd, parameter);
+                int equals = parameter.indexOf("=");
+                String name = equals < 0 ? parameter.toString() : parameter.substring(0, equals);
+                if (!ignoredParameters.contains(name)) {
+                    parameters.add(parameter.toString());
+                }
+            }
+            i = parameterEnd + 1;
+        }
+        if (parameters.isEmpty()) {
+            return;
+        }
+        if (sortQuery) {
+            Collections.sort(parameters);
+        }
+        out.append('?');
+        for (int p = 0; p < parameters.size(); p++) {
+            if (p > 0) {
+                out.append('&');
+            }
+            out.append(parameters.get(p));
+        }
+    }
+
+    /**
+     * Append a part of a URL, normalizing its escapes and encoding the
+     * characters not allowed in a URL.
+     */
+    private static void appendNormalized(String url, int start, int end, StringBuilder out) {
+        int i = start;
+        while (i < end) {
+            char c = url.charAt(i);
+            if (c == '%') {
+                int high = i + 2 < end ? URLUtil.hexValue(url.charAt(i + 1)) : -1;
+                int low = high >= 0 ? URLUtil.hexValue(url.charAt(i + 2)) : -1;
+                if (low < 0) {
+                    URLUtil.appendByte(out, '%');
+                    i++;
+                    continue;
+                }
+                char decoded = (char) (high << 4 | low);
+                if (URLUtil.isUnreserved(decoded)) {
+                    out.append(decoded);
+                } else {
+                    URLUtil.appendByte(out, decoded);
+                }
+                i += 3;
+            } else if (isAllowed(c)) {
+                out.append(c);
+                i++;
+            } else {
+                int next = i + 1;
+                if (Character.isHighSurrogate(c) && next < end && Character.isLowSurrogate(url.charAt(next))) {
+                    next++;
+                }
+                URLUtil.encode(url, i, next, out);
+                i = next;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> for the characters left as is in a URL: the
+     *         unreserved and reserved characters of RFC 3986.
+     */
+    private static boolean isAllowed(char c) {
+        return c > ' ' && c < 0x7F && c != '"' && c != '<' && c != '>' && c != '\\' && c != '^' && c != '`'
+                && c != '{' && c != '|' && c != '}';
+    }
+
+    /**
+     * Builder of {@link URLCanonicalizer}.
+     */
+    public static final class Builder {
+
+        private boolean sortQuery = true;
+
+        private final Set<String> ignoredParameters = new HashSet<>();
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * Choose whether the query parameters are sorted. Parameters whose
+         * order matters to a site must not be sorted.
+         *
+         * @param sortQuery
+         *            <code>true</code> to sort the parameters.
+         * @return This builder.
+         */
+        public Builder sortQuery(boolean sortQuery) {
+            this.sortQuery = sortQuery;
+            return this;
+        }
+
+        /**
+         * Remove some query parameters, such as tracking ones.
+         *
+         * @param names
+         *            The names of the parameters, as canonicalized.
+         * @return This builder.
+         */
+        public Builder ignoreParameters(String... names) {
+            ignoredParameters.addAll(Arrays.asList(names));
+            return this;
+        }
+
+        /**
+         * @return A new canonicalizer.
+         */
+        public URLCanonicalizer build() {
+            return new URLCanonicalizer(this);
+        }
+    }
+}
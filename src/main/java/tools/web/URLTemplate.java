@@ -0,0 +1,406 @@
+package tools.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * URL template of RFC 6570, up to level 4, parsed once and expanded many
+ * times.<br>
+ * {@link #compile(String)} splits the template in literals, encoded at once,
+ * and expressions, whose operator and variables are resolved at once. An
+ * expansion is a single pass appending to a {@link StringBuilder}, encoding
+ * each value as required by its expression: <code>{var}</code> encodes all
+ * but the unreserved characters, <code>{+var}</code> and
+ * <code>{#var}</code> keep the reserved ones.<br>
+ * A value is a {@link CharSequence} or any object converted with
+ * {@link String#valueOf(Object)}, an {@link Iterable} for a list, or a
+ * {@link Map} for associative values. <code>null</code>, empty lists and
+ * empty maps are undefined. Immutable and thread safe.
+ *
+ * @author A. CANDIAN
+ *
+ */
+public final class URLTemplate {
+
+    private static final String RESERVED = ":/?#[]@!$&'()*+,;=";
+
+    private final String template;
+
+    /**
+     * Literals (<code>String</code>) and expressions
+     * (<code>Expression</code>), in order.
+     */
+    private final Object[] parts;
+
+    private final List<String> variableNames;
+
+    private final int expectedLength;
+
+    private URLTemplate(String template, Object[] parts, List<String> variableNames) {
+        this.template = template;
+        this.parts = parts;
+        this.variableNames = Collections.unmodifiableList(variableNames);
+        this.expectedLength = template.length() + 16;
+    }
+
+    /**
+     * Parse a template.
+     *
+     * @param template
+     *            The template.
+     * @return The compiled template.
+     * @throws IllegalArgumentException
+     *             If the template is malformed.
+     */
+    public static URLTemplate compile(String template) {
+        List<Object> parts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            int open = template.indexOf('{', i);
+            int literalEnd = open < 0 ? template.length() : open;
+            int close = template.indexOf('}', i);
+            if (close >= 0 && close < literalEnd) {
+                throw new IllegalArgumentException(
+                        String.format("Unexpected '}' at index %d of template %s.", close, template));
+            }
+            appendEncoded(template, i, literalEnd, true, literal);
+            if (open < 0) {
+                break;
+            }
+            close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException(String.format("Unclosed expression in template %s.", template));
+            }
+            if (literal.length() > 0) {
+                parts.add(literal.toString());
+                literal.setLength(0);
+            }
+            Expression expression = Expression.parse(template, open + 1, close);
+            for (VarSpec var : expression.vars) {
+                if (!names.contains(var.name)) {
+                    names.add(var.name);
+                }
+            }
+            parts.add(expression);
+            i = close + 1;
+        }
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+        return new URLTemplate(template, parts.toArray(), names);
+    }
+
+    /**
+     * Expand the template.
+     *
+     * @param variables
+     *            The values by variable name.
+     * @return The URL.
+     */
+    public String expand(Map<String, ?> variables) {
+        return expand(variables, new StringBuilder(expectedLength)).toString();
+    }
+
+    /**
+     * Expand the template into a builder.
+     *
+     * @param variables
+     *            The values by variable name.
+     * @param out
+     *            The builder.
+     * @return The builder.
+     */
+    public StringBuilder expand(Map<String, ?> variables, StringBuilder out) {
+        for (Object part : parts) {
+            if (part instanceof String) {
+                out.append((String) part);
+            } else {
+                ((Expression) part).expand(variables, out);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return The names of the variables of the template, in order of first
+     *         use.
+     */
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    /**
+     * Append characters, encoding all but the unreserved characters, and the
+     * reserved characters and escapes if allowed.
+     */
+    private static void appendEncoded(CharSequence value, int start, int end, boolean allowReserved,
+            StringBuilder out) {
+        int i = start;
+        while (i < end) {
+            char c = value.charAt(i);
+            if (URLUtil.isUnreserved(c) || allowReserved && RESERVED.indexOf(c) >= 0) {
+                out.append(c);
+                i++;
+            } else if (allowReserved && c == '%' && i + 2 < end && URLUtil.hexValue(value.charAt(i + 1)) >= 0
+                    && URLUtil.hexValue(value.charAt(i + 2)) >= 0) {
+                out.append(value, i, i + 3);
+                i += 3;
+            } else {
+                int next = i + 1;
+                if (Character.isHighSurrogate(c) && next < end && Character.isLowSurrogate(value.charAt(next))) {
+                    next++;
+                }
+                URLUtil.encode(value, i, next, out);
+                i = next;
+            }
+        }
+    }
+
+    /**
+     * Operators of the expressions, with their expansion rules.
+     */
+    private enum Operator {
+        SIMPLE("", ",", false, "", false),
+        RESERVED("", ",", false, "", true),
+        FRAGMENT("#", ",", false, "", true),
+        LABEL(".", ".", false, "", false),
+        PATH("/", "/", false, "", false),
+        PARAMETER(";", ";", true, "", false),
+        QUERY("?", "&", true, "=", false),
+        CONTINUATION("&", "&", true, "=", false);
+
+        private final String first;
+
+        private final String separator;
+
+        private final boolean named;
+
+        private final String ifEmpty;
+
+        private final boolean allowReserved;
+
+        Operator(String first, String separator, boolean named, String ifEmpty, boolean allowReserved) {
+            this.first = first;
+            this.separator = separator;
+            this.named = named;
+            this.ifEmpty = ifEmpty;
+            this.allowReserved = allowReserved;
+        }
+
+        private static Operator of(char c) {
+            switch (c) {
+            case '+':
+                return RESERVED;
+            case '#':
+                return FRAGMENT;
+            case '.':
+                return LABEL;
+            case '/':
+                return PATH;
+            case ';':
+                return PARAMETER;
+            case '?':
+                return QUERY;
+            case '&':
+                return CONTINUATION;
+            default:
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A variable of an expression, with its modifiers.
+     */
+    private static final class VarSpec {
+
+        private final String name;
+
+        private final boolean explode;
+
+        /**
+         * Maximal number of characters of a string value, -1 for all.
+         */
+        private final int prefix;
+
+        private VarSpec(String name, boolean explode, int prefix) {
+            this.name = name;
+            this.explode = explode;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * An expression: an operator and its variables.
+     */
+    private static final class Expression {
+
+        private final Operator operator;
+
+        private final VarSpec[] vars;
+
+        private Expression(Operator operator, VarSpec[] vars) {
+            this.operator = operator;
+            this.vars = vars;
+        }
+
+        private static Expression parse(String template, int start, int end) {
+            Operator operator = start < end ? Operator.of(template.charAt(start)) : null;
+            int i = start;
+            if (operator == null) {
+                operator = Operator.SIMPLE;
+            } else {
+                i++;
+            }
+            List<VarSpec> vars = new ArrayList<>();
+            while (i <= end) {
+                int specEnd = template.indexOf(',', i);
+                if (specEnd < 0 || specEnd > end) {
+                    specEnd = end;
+                }
+                vars.add(parseVar(template, i, specEnd));
+                i = specEnd + 1;
+            }
+            return new Expression(operator, vars.toArray(new VarSpec[vars.size()]));
+        }
+
+        private static VarSpec parseVar(String template, int start, int end) {
+            int nameEnd = end;
+            boolean explode = false;
+            int prefix = -1;
+            int colon = template.indexOf(':', start);
+            if (end > start && template.charAt(end - 1) == '*') {
+                explode = true;
+                nameEnd = end - 1;
+            } else if (colon >= 0 && colon < end) {
+                nameEnd = colon;
+                try {
+                    prefix = Integer.parseInt(template.substring(colon + 1, end));
+                } catch (NumberFormatException e) {
+                    prefix = 0;
+                }
+                if (prefix < 1 || prefix > 9999) {
+                    throw new IllegalArgumentException(String.format("Invalid prefix %s in template %s.",
+                            template.substring(colon + 1, end), template));
+                }
+            }
+            if (nameEnd == start) {
+                throw new IllegalArgumentException(String.format("Empty variable name in template %s.", template));
+            }
+            for (int i = start; i < nameEnd; i++) {
+                char c = template.charAt(i);
+                boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'
+                        || c == '%' || c == '.' && i > start;
+                if (!valid) {
+                    throw new IllegalArgumentException(
+                            String.format("Invalid character '%c' at index %d of template %s.", c, i, template));
+                }
+            }
+            return new VarSpec(template.substring(start, nameEnd), explode, prefix);
+        }
+
+        private void expand(Map<String, ?> variables, StringBuilder out) {
+            boolean first = true;
+            for (VarSpec var : vars) {
+                Object value = variables.get(var.name);
+                if (!isDefined(value)) {
+                    continue;
+                }
+                out.append(first ? operator.first : operator.separator);
+                first = false;
+                if (value instanceof Map) {
+                    expandMap(var, (Map<?, ?>) value, out);
+                } else if (value instanceof Iterable) {
+                    expandList(var, (Iterable<?>) value, out);
+                } else {
+                    CharSequence string = value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+                    if (operator.named) {
+                        out.append(var.name);
+                        if (string.length() == 0) {
+                            out.append(operator.ifEmpty);
+                            continue;
+                        }
+                        out.append('=');
+                    }
+                    int end = string.length();
+                    if (var.prefix >= 0 && var.prefix < end) {
+                        end = var.prefix;
+                        if (Character.isHighSurrogate(string.charAt(end - 1))) {
+                            end++;
+                        }
+                    }
+                    appendEncoded(string, 0, end, operator.allowReserved, out);
+                }
+            }
+        }
+
+        private void expandList(VarSpec var, Iterable<?> list, StringBuilder out) {
+            boolean first = true;
+            if (!var.explode && operator.named) {
+                out.append(var.name).append('=');
+            }
+            for (Object item : list) {
+                if (!first) {
+                    out.append(var.explode ? operator.separator : ",");
+                }
+                first = false;
+                String string = String.valueOf(item);
+                if (var.explode && operator.named) {
+                    out.append(var.name);
+                    if (string.isEmpty()) {
+                        out.append(operator.ifEmpty);
+                        continue;
+                    }
+                    out.append('=');
+                }
+                appendEncoded(string, 0, string.length(), operator.allowReserved, out);
+            }
+        }
+
+        private void expandMap(VarSpec var, Map<?, ?> map, StringBuilder out) {
+            boolean first = true;
+            if (!var.explode && operator.named) {
+                out.append(var.name).append('=');
+            }
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    out.append(var.explode ? operator.separator : ",");
+                }
+                first = false;
+                String key = String.valueOf(entry.getKey());
+                String value = entry.getValue() == null ? "" : String.valueOf(entry.getValue());
+                appendEncoded(key, 0, key.length(), operator.allowReserved, out);
+                if (var.explode) {
+                    if (operator.named && value.isEmpty()) {
+                        out.append(operator.ifEmpty);
+                        continue;
+                    }
+                    out.append('=');
+                } else {
+                    out.append(',');
+                }
+                appendEncoded(value, 0, value.length(), operator.allowReserved, out);
+            }
+        }
+
+        private static boolean isDefined(Object value) {
+            if (value instanceof Map) {
+                return !((Map<?, ?>) value).isEmpty();
+            } else if (value instanceof Iterable) {
+                Iterator<?> iterator = ((Iterable<?>) value).iterator();
+                return iterator.hasNext();
+            }
+            return value != null;
+        }
+    }
+}
@@ -1,57 +1,244 @@
 package tools.web;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Class containing URL related utility methods.
- * 
+ *
  * @author Alexandre CANDIAN
  *
  */
 public class URLUtil {
 
-    private static final Logger LOGGER = Logger.getLogger(URLUtil.class.getName());
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Characters left as is by {@link #encode(String)}: the unreserved
+     * characters of RFC 3986.
+     */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    /**
+     * Value of each ASCII hexadecimal digit, -1 for the other characters.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+            UNRESERVED[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+
+        for (int i = 0; i < HEX_VALUES.length; i++) {
+            HEX_VALUES[i] = (byte) Character.digit((char) i, 16);
+        }
+    }
 
     private URLUtil() {
     }
 
     /**
      * Encode a string to URL format.<br>
-     * The Java method supposed to do the job seems to not follow the standard.
-     * 
+     * Every character except the unreserved ones of RFC 3986 (letters, digits,
+     * <code>-._~</code>) is replaced by the percent encoding of its UTF-8
+     * bytes, with upper case digits. An unpaired surrogate is encoded as
+     * <code>?</code>.
+     *
      * @param value
      *            The string to encode.
-     * @return The encoded string or an empty string if an error occur.
+     * @return The encoded string, or the string itself if no character needs
+     *         to be encoded.
      */
     public static String encode(String value) {
-        StringBuilder buf = new StringBuilder();
-        try {
-            String encoded = URLEncoder.encode(value, "UTF-8");
-
-            char focus;
-            int i = 0;
-            while (i < encoded.length()) {
-                focus = encoded.charAt(i);
-                if (focus == '*') {
-                    buf.append("%2A");
-                } else if (focus == '+') {
-                    buf.append("%20");
-                } else if (focus == '%' && (i + 1) < encoded.length() && encoded.charAt(i + 1) == '7'
-                        && encoded.charAt(i + 2) == 'E') {
-                    buf.append('~');
-                    i += 2;
+        int length = value.length();
+        int i = 0;
+        while (i < length && isUnreserved(value.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return value;
+        }
+        StringBuilder buf = new StringBuilder(length + 16);
+        buf.append(value, 0, i);
+        encode(value, i, length, buf);
+        return buf.toString();
+    }
+
+    /**
+     * Append the URL encoding of some characters to a builder, as
+     * {@link #encode(String)} does.
+     *
+     * @param value
+     *            The characters to encode.
+     * @param buf
+     *            The builder.
+     * @return The builder.
+     */
+    public static StringBuilder encode(CharSequence value, StringBuilder buf) {
+        encode(value, 0, value.length(), buf);
+        return buf;
+    }
+
+    /**
+     * Append the URL encoding of a range of characters to a builder.
+     *
+     * @param value
+     *            The characters to encode.
+     * @param start
+     *            Index of the first character.
+     * @param end
+     *            Index after the last character.
+     * @param buf
+     *            The builder.
+     */
+    static void encode(CharSequence value, int start, int end, StringBuilder buf) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    buf.append(c);
                 } else {
-                    buf.append(focus);
+                    appendByte(buf, c);
                 }
-                i++;
+            } else if (c < 0x800) {
+                appendByte(buf, 0xC0 | c >> 6);
+                appendByte(buf, 0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                appendByte(buf, 0xE0 | c >> 12);
+                appendByte(buf, 0x80 | c >> 6 & 0x3F);
+                appendByte(buf, 0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(buf, 0xF0 | codePoint >> 18);
+                appendByte(buf, 0x80 | codePoint >> 12 & 0x3F);
+                appendByte(buf, 0x80 | codePoint >> 6 & 0x3F);
+                appendByte(buf, 0x80 | codePoint & 0x3F);
+            } else {
+                appendByte(buf, '?');
             }
-        } catch (UnsupportedEncodingException ex) {
-            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
         }
+    }
+
+    /**
+     * @param c
+     *            A character.
+     * @return <code>true</code> if the character is never encoded.
+     */
+    static boolean isUnreserved(char c) {
+        return c < 0x80 && UNRESERVED[c];
+    }
+
+    /**
+     * Append the escape of a byte to a builder.
+     *
+     * @param buf
+     *            The builder.
+     * @param b
+     *            The byte.
+     */
+    static void appendByte(StringBuilder buf, int b) {
+        buf.append('%').append(HEX_DIGITS[b >> 4 & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+    }
 
+    /**
+     * Decode a percent encoded string.<br>
+     * Each sequence of percent encoded bytes is decoded as UTF-8, invalid
+     * sequences giving the replacement character. A <code>+</code> is left as
+     * is.
+     *
+     * @param value
+     *            The string to decode.
+     * @return The decoded string, or the string itself if it has no percent
+     *         encoded byte.
+     * @throws IllegalArgumentException
+     *             If a <code>%</code> is not followed by two hexadecimal
+     *             digits.
+     */
+    public static String decode(String value) {
+        int first = value.indexOf('%');
+        if (first < 0) {
+            return value;
+        }
+        StringBuilder buf = new StringBuilder(value.length());
+        buf.append(value, 0, first);
+        decode(value, first, buf);
         return buf.toString();
     }
+
+    /**
+     * Append the decoding of percent encoded characters to a builder, as
+     * {@link #decode(String)} does.
+     *
+     * @param value
+     *            The characters to decode.
+     * @param buf
+     *            The builder.
+     * @return The builder.
+     * @throws IllegalArgumentException
+     *             If a <code>%</code> is not followed by two hexadecimal
+     *             digits.
+     */
+    public static StringBuilder decode(CharSequence value, StringBuilder buf) {
+        decode(value, 0, buf);
+        return buf;
+    }
+
+    private static void decode(CharSequence value, int start, StringBuilder buf) {
+        int length = value.length();
+        byte[] bytes = null;
+        int i = start;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c != '%') {
+                buf.append(c);
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < length && value.charAt(end) == '%') {
+                end += 3;
+            }
+            if (end > length) {
+                throw new IllegalArgumentException(String.format("Incomplete escape at index %d.", length - 1));
+            }
+            int count = (end - i) / 3;
+            if (bytes == null || bytes.length < count) {
+                bytes = new byte[Math.max(count, 8)];
+            }
+            for (int j = 0; j < count; j++, i += 3) {
+                bytes[j] = (byte) (hexValue(value, i + 1) << 4 | hexValue(value, i + 2));
+            }
+            if (count == 1 && bytes[0] >= 0) {
+                buf.append((char) bytes[0]);
+            } else {
+                buf.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * @param c
+     *            A character.
+     * @return The value of an hexadecimal digit, -1 for other characters.
+     */
+    static int hexValue(char c) {
+        return c < 0x80 ? HEX_VALUES[c] : -1;
+    }
+
+    private static int hexValue(CharSequence value, int index) {
+        char c = value.charAt(index);
+        int digit = c < 0x80 ? HEX_VALUES[c] : -1;
+        if (digit < 0) {
+            throw new IllegalArgumentException(String.format("Invalid escape digit '%c' at index %d.", c, index));
+        }
+        return digit;
+    }
 }
@@ -0,0 +1,383 @@
+package tools.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link AsyncEngine} built on <code>java.net.http.HttpClient</code>: no thread
+ * is held while waiting for the network, so one JVM can run thousands of
+ * loads.<br>
+ * It follows the configuration of the client: proxy, headers, content
+ * decoders, timeouts and {@link RetryPolicy}, with two differences:
+ * <ul>
+ * <li>the read timeout bounds the wait for the response headers, the total
+ * timeout bounds the whole load;</li>
+ * <li>loads to a stream are made without content coding so the data can be
+ * written as it arrives, and are not retried once data was written.</li>
+ * </ul>
+ * When the total timeout is over, the exchange in progress is cancelled and
+ * nothing more is written to the stream.
+ * The clients with a cache, a coalescer, hedging or a rate limiter, the SOCKS
+ * proxies and the non HTTP URLs use an {@link ExecutorEngine}.<br>
+ * Clients without executor share their <code>HttpClient</code>.
+ *
+ * @author A. CANDIAN
+ *
+ */
+final class HttpClientEngine implements AsyncEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpClientEngine.class.getName());
+
+    /**
+     * Headers set by the <code>HttpClient</code> itself.
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+            "upgrade");
+
+    private static final Map<List<Object>, HttpClient> SHARED = new ConcurrentHashMap<>();
+
+    private final RessourceClient client;
+
+    private final RetryPolicy retryPolicy;
+
+    private final Executor executor;
+
+    private final HttpClient http;
+
+    private final AsyncEngine fallback;
+
+    /**
+     * Build an engine.
+     *
+     * @param client
+     *            The client whose configuration is used.
+     * @param executor
+     *            The executor of the <code>HttpClient</code>, or
+     *            <code>null</code> for the default one.
+     */
+    HttpClientEngine(RessourceClient client, Executor executor) {
+        super();
+        this.client = client;
+        this.retryPolicy = client.getRetryPolicy();
+        this.executor = executor != null ? executor : ForkJoinPool.commonPool();
+        this.fallback = new ExecutorEngine(client, executor);
+        this.http = supports(client) ? httpClient(client, executor) : null;
+    }
+
+    @Override
+    public CompletableFuture<RessourceResponse> load(URL urlRessource) {
+        if (!supports(urlRessource)) {
+            return fallback.load(urlRessource);
+        }
+        TransferContext context = newContext();
+        return notifying(urlRessource, context,
+                withDeadline(send(urlRessource, null, new AtomicLong(), 1, context), context));
+    }
+
+    @Override
+    public CompletableFuture<RessourceResponse> load(URL urlRessource, OutputStream out) {
+        if (!supports(urlRessource)) {
+            return fallback.load(urlRessource, out);
+        }
+        TransferContext context = newContext();
+        return notifying(urlRessource, context,
+                withDeadline(send(urlRessource, out, new AtomicLong(), 1, context), context).whenComplete((r, e) -> {
+                    try {
+                        out.close();
+                    } catch (IOException close) {
+                        LOGGER.log(Level.WARNING, "Unable to close the output stream.", close);
+                    }
+                }));
+    }
+
+    private CompletableFuture<RessourceResponse> notifying(URL urlRessource, TransferContext context,
+            CompletableFuture<RessourceResponse> future) {
+        DownloadListener listener = client.getListener();
+        if (listener == null) {
+            return future;
+        }
+        return future.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            Exception failure = cause == null || cause instanceof Exception ? (Exception) cause
+                    : new Exception(cause);
+            RessourceClient.notify(listener, context.toEvent(urlRessource, response, failure));
+        });
+    }
+
+    private static boolean supports(RessourceClient client) {
+        Proxy.Type proxyType = client.getProxy().type();
+        return client.getCache() == null && client.getCoalescer() == null && !client.getRetryPolicy().isHedging()
+                && client.getRateLimiter() == null && proxyType != Proxy.Type.SOCKS;
+    }
+
+    private boolean supports(URL urlRessource) {
+        String protocol = urlRessource.getProtocol();
+        return http != null && ("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol));
+    }
+
+    private static HttpClient httpClient(RessourceClient client, Executor executor) {
+        Proxy proxy = client.getProxy();
+        int connectTimeout = client.getRetryPolicy().getConnectTimeout();
+        if (executor != null) {
+            return newHttpClient(proxy, connectTimeout, executor);
+        }
+        return SHARED.computeIfAbsent(Arrays.asList(proxy, connectTimeout),
+                key -> newHttpClient(proxy, connectTimeout, null));
+    }
+
+    private static HttpClient newHttpClient(Proxy proxy, int connectTimeout, Executor executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL)
+                .proxy(proxy.type() == Proxy.Type.DIRECT ? HttpClient.Builder.NO_PROXY
+                        : ProxySelector.of((InetSocketAddress) proxy.address()));
+        if (connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeout));
+        }
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
+    private TransferContext newContext() {
+        return new TransferContext(retryPolicy.getTotalTimeout());
+    }
+
+    /**
+     * Fail a load when the total timeout is over, cancelling its exchange and
+     * its next attempts.
+     *
+     * @param future
+     *            The result of the load.
+     * @param context
+     *            The state of the load.
+     * @return The result of the load, or a
+     *         {@link TransferContext.DeadlineExceededException}.
+     */
+    private CompletableFuture<RessourceResponse> withDeadline(CompletableFuture<RessourceResponse> future,
+            TransferContext context) {
+        if (retryPolicy.getTotalTimeout() <= 0) {
+            return future;
+        }
+        return future.orTimeout(retryPolicy.getTotalTimeout(), TimeUnit.MILLISECONDS).handle((response, error) -> {
+            if (error == null) {
+                return response;
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                // Under the lock of the writes, so none is made once the stream is closed.
+                synchronized (context) {
+                    context.cancel();
+                }
+                throw new CompletionException(new TransferContext.DeadlineExceededException());
+            }
+            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+        });
+    }
+
+    /**
+     * Send one attempt of a load.
+     *
+     * @param urlRessource
+     *            The URL to load.
+     * @param out
+     *            The stream to write the data, or <code>null</code> to load
+     *            it in memory.
+     * @param written
+     *            The number of bytes written to the stream.
+     * @param attempt
+     *            The number of this attempt, starting at 1.
+     * @param context
+     *            The state of the load.
+     * @return A future completed with the result of the load.
+     */
+    private CompletableFuture<RessourceResponse> send(URL urlRessource, OutputStream out, AtomicLong written,
+            int attempt, TransferContext context) {
+        HttpRequest request;
+        try {
+            request = request(urlRessource, out != null, context);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        AtomicReference<IOException> writeError = new AtomicReference<>();
+        BodyHandler<byte[]> handler = out == null ? BodyHandlers.ofByteArray() : info -> {
+            if (info.statusCode() >= 300) {
+                return BodySubscribers.replacing(null);
+            }
+            return BodySubscribers.mapping(BodySubscribers.ofByteArrayConsumer(chunk -> {
+                if (chunk.isPresent() && writeError.get() == null) {
+                    synchronized (context) {
+                        try {
+                            context.check();
+                            out.write(chunk.get());
+                            written.addAndGet(chunk.get().length);
+                        } catch (IOException e) {
+                            writeError.set(e);
+                        }
+                    }
+                }
+            }), nothing -> null);
+        };
+
+        long attemptStart = System.nanoTime();
+        long[] headersAt = { -1 };
+        BodyHandler<byte[]> timed = info -> {
+            headersAt[0] = System.nanoTime();
+            context.responded(info.statusCode(), -1, headersAt[0] - attemptStart);
+            return handler.apply(info);
+        };
+
+        CompletableFuture<HttpResponse<byte[]>> exchange = http.sendAsync(request, timed);
+        try {
+            context.attach(exchange);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return exchange.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                IOException e = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                return retry(urlRessource, out, written, attempt, context, e);
+            }
+            int status = response.statusCode();
+            if (RetryPolicy.isRetryableStatus(status)) {
+                return retry(urlRessource, out, written, attempt, context,
+                        new RetryPolicy.RetryableStatusException(
+                                String.format("HTTP status %d when loading %s.", status, urlRessource),
+                                retryAfter(response)));
+            }
+            try {
+                if (writeError.get() != null) {
+                    throw writeError.get();
+                }
+                context.transferred(System.nanoTime() - headersAt[0]);
+                return CompletableFuture.completedFuture(toResponse(urlRessource, response, written.get()));
+            } catch (IOException e) {
+                return CompletableFuture.<RessourceResponse>failedFuture(e);
+            }
+        }).thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<RessourceResponse> retry(URL urlRessource, OutputStream out, AtomicLong written,
+            int attempt, TransferContext context, IOException e) {
+        if (written.get() > 0 || !isRetryable(e)) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (attempt >= retryPolicy.getAttempts()) {
+            return CompletableFuture.failedFuture(
+                    new IOException(String.format("Too many failed attempts when loading %s.", urlRessource), e));
+        }
+        LOGGER.log(Level.WARNING, String.format("Attempt %d failed when loading %s.", attempt, urlRessource), e);
+        context.retried();
+
+        long wait = retryPolicy.backoff(attempt, e instanceof RetryPolicy.RetryableStatusException
+                ? ((RetryPolicy.RetryableStatusException) e).getRetryAfter() : -1);
+        if (wait >= context.remainingMillis()) {
+            return CompletableFuture.failedFuture(new TransferContext.DeadlineExceededException());
+        }
+        Executor delayed = CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS, executor);
+        return CompletableFuture.supplyAsync(() -> send(urlRessource, out, written, attempt + 1, context), delayed)
+                .thenCompose(Function.identity());
+    }
+
+    private static boolean isRetryable(IOException e) {
+        return RetryPolicy.isRetryable(e) || e instanceof HttpTimeoutException;
+    }
+
+    private HttpRequest request(URL urlRessource, boolean identity, TransferContext context) throws IOException {
+        context.check();
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(urlRessource.toURI()).GET();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid URL %s.", urlRessource), e);
+        }
+
+        int readTimeout = retryPolicy.getReadTimeout();
+        long remaining = context.remainingMillis();
+        long timeout = readTimeout == 0 ? remaining : Math.min(readTimeout, remaining);
+        if (timeout != Long.MAX_VALUE) {
+            builder.timeout(Duration.ofMillis(Math.max(1, timeout)));
+        }
+
+        builder.setHeader("User-Agent", "Lynx");
+        builder.setHeader("Accept-Encoding", identity ? "identity" : client.getAcceptEncoding());
+        for (Map.Entry<String, String> property : client.getProperties().entrySet()) {
+            if (!RESTRICTED_HEADERS.contains(property.getKey().toLowerCase(Locale.ROOT))) {
+                builder.setHeader(property.getKey(), property.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    private RessourceResponse toResponse(URL urlRessource, HttpResponse<byte[]> response, long written)
+            throws IOException {
+        int status = response.statusCode();
+        if (status == 404 || status == 410) {
+            throw new FileNotFoundException(urlRessource.toString());
+        } else if (status >= 400) {
+            throw new IOException(
+                    String.format("Server returned HTTP response code: %d for URL: %s", status, urlRessource));
+        }
+
+        byte[] raw = response.body();
+        if (raw == null) {
+            return new RessourceResponse(urlRessource, status, response.headers().map(), written, written, null);
+        }
+        byte[] body = raw;
+        String contentEncoding = response.headers().firstValue("Content-Encoding").orElse(null);
+        if (contentEncoding != null) {
+            ResponseBuffer decoded = new ResponseBuffer();
+            try (InputStream in = client.decode(contentEncoding, new ByteArrayInputStream(raw))) {
+                LoadRessource.copy(in, decoded);
+            }
+            body = decoded.toByteArray();
+        }
+        return new RessourceResponse(urlRessource, status, response.headers().map(), raw.length, body.length, body);
+    }
+
+    private static long retryAfter(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                // An HTTP date: use the backoff.
+            }
+        }
+        return -1;
+    }
+}
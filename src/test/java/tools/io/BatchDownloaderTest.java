@@ -0,0 +1,113 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import tools.util.Pair;
+
+public class BatchDownloaderTest {
+
+    private static final int REQUESTS = 40;
+    private static final int MAX_PER_HOST = 3;
+
+    @Test
+    public void testGetRessources() throws Exception {
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger highest = new AtomicInteger();
+        byte[] body = "contenu".getBytes(StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try (TestServer server = new TestServer()) {
+            server.handle("/slow", exchange -> {
+                highest.accumulateAndGet(current.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                current.decrementAndGet();
+                TestServer.send(exchange, 200, body);
+            });
+
+            List<Pair<URL, ByteArrayOutputStream>> requests = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                requests.add(new Pair<>(server.url("/slow?" + i), new ByteArrayOutputStream()));
+            }
+
+            List<CompletableFuture<RessourceResponse>> futures = new BatchDownloader(RessourceClient.builder().build(), executor, 10, MAX_PER_HOST)
+                    .getRessources(requests);
+
+            for (int i = 0; i < REQUESTS; i++) {
+                assertEquals(requests.get(i).getKey(), futures.get(i).get().getUrl());
+                assertArrayEquals(body, requests.get(i).getValue().toByteArray());
+            }
+            assertTrue("Per host limit exceeded: " + highest.get(), highest.get() <= MAX_PER_HOST);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (TestServer server = new TestServer()) {
+            CompletableFuture<RessourceResponse> future = new BatchDownloader(executor)
+                    .getRessource(server.url("/missing"), new OutputStream() {
+                        @Override
+                        public void write(int b) throws IOException {
+                            // Nothing is expected.
+                        }
+                    });
+
+            try {
+                future.join();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertTrue(future.isCompletedExceptionally());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedByExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        List<Pair<URL, ByteArrayOutputStream>> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(new Pair<>(new URL("http://host" + (i % 2) + ".invalid/" + i), new ByteArrayOutputStream()));
+        }
+
+        List<CompletableFuture<RessourceResponse>> futures = new BatchDownloader(RessourceClient.builder().build(),
+                executor, 4, 2).getRessources(requests);
+
+        for (CompletableFuture<RessourceResponse> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+    }
+}
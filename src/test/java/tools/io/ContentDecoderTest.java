@@ -0,0 +1,110 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+public class ContentDecoderTest {
+
+    private static final byte[] TEXT = ("Un texte assez long pour être compressé, répété plusieurs fois. "
+            + "Un texte assez long pour être compressé, répété plusieurs fois.").getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION,
+                raw))) {
+            deflate.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(ContentDecoder decoder, byte[] data) throws IOException {
+        try (InputStream in = decoder.decode(new ByteArrayInputStream(data))) {
+            return LoadRessource.getRessource(in);
+        }
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        assertArrayEquals(TEXT, decode(ContentDecoder.GZIP, gzip(TEXT)));
+    }
+
+    @Test
+    public void testConcatenatedGzipMembers() throws IOException {
+        byte[] first = gzip(TEXT);
+        byte[] second = gzip("fin".getBytes(StandardCharsets.UTF_8));
+        byte[] both = new byte[first.length + second.length];
+        System.arraycopy(first, 0, both, 0, first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+
+        assertEquals(new String(TEXT, StandardCharsets.UTF_8) + "fin",
+                new String(decode(ContentDecoder.GZIP, both), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testZlibAndRawDeflate() throws IOException {
+        assertArrayEquals(TEXT, decode(ContentDecoder.DEFLATE, deflate(TEXT, false)));
+        assertArrayEquals(TEXT, decode(ContentDecoder.DEFLATE, deflate(TEXT, true)));
+    }
+
+    @Test
+    public void testEmptyBody() throws IOException {
+        assertEquals(0, decode(ContentDecoder.GZIP, new byte[0]).length);
+        assertEquals(0, decode(ContentDecoder.DEFLATE, new byte[0]).length);
+    }
+
+    @Test
+    public void testCorruptedGzip() throws IOException {
+        byte[] data = gzip(TEXT);
+        data[data.length - 5] ^= 1;
+        try {
+            decode(ContentDecoder.GZIP, data);
+            fail("The CRC should not match.");
+        } catch (ZipException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testClientDecodesResponses() throws Exception {
+        byte[] gzipped = gzip(TEXT);
+        byte[] deflated = deflate(TEXT, false);
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/gzip", exchange -> {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                TestServer.send(exchange, 200, gzipped);
+            });
+            server.handle("/deflate", exchange -> {
+                exchange.getResponseHeaders().add("Content-Encoding", "deflate");
+                TestServer.send(exchange, 200, deflated);
+            });
+            RessourceClient client = RessourceClient.builder().build();
+
+            RessourceResponse response = client.getRessource(server.url("/gzip"));
+            assertArrayEquals(TEXT, response.getBody());
+            assertEquals(gzipped.length, response.getBytesRead());
+            assertArrayEquals(TEXT, client.getRessource(server.url("/deflate")).getBody());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.security.Hash;
+
+public class DirectoryManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUpdate() throws Exception {
+        Path root = folder.newFolder("root").toPath();
+        Path index = folder.getRoot().toPath().resolve("manifest.idx");
+        Files.createDirectories(root.resolve("sub/deeper"));
+        Files.write(root.resolve("a"), "a".getBytes("UTF-8"));
+        Files.write(root.resolve("sub/b"), "b".getBytes("UTF-8"));
+        Files.write(root.resolve("sub/deeper/c"), "c".getBytes("UTF-8"));
+
+        DirectoryManifest manifest = DirectoryManifest.read(index);
+        DirectoryManifest.Changes changes = manifest.update(root);
+        assertEquals(Arrays.asList("a", "sub/b", "sub/deeper/c"), changes.getAdded());
+        assertTrue(changes.getRemoved().isEmpty() && changes.getModified().isEmpty());
+        manifest.write(index);
+
+        manifest = DirectoryManifest.read(index);
+        assertEquals(3, manifest.getEntries().size());
+        assertArrayEquals(Hash.hash("b".getBytes("UTF-8"), "SHA-256"),
+                manifest.getEntries().get("sub/b").getDigest());
+        assertTrue(manifest.update(root).isEmpty());
+
+        // Same size and time: not read again.
+        FileTime time = Files.getLastModifiedTime(root.resolve("a"));
+        Files.write(root.resolve("a"), "x".getBytes("UTF-8"));
+        Files.setLastModifiedTime(root.resolve("a"), time);
+        assertTrue(manifest.update(root).isEmpty());
+
+        // Touched but same content: not modified.
+        Files.setLastModifiedTime(root.resolve("sub/b"), FileTime.fromMillis(time.toMillis() + 5000));
+        Files.write(root.resolve("sub/deeper/c"), "changed".getBytes("UTF-8"));
+        Files.delete(root.resolve("a"));
+        Files.write(root.resolve("d"), "d".getBytes("UTF-8"));
+        changes = manifest.update(root);
+        assertEquals(Collections.singletonList("d"), changes.getAdded());
+        assertEquals(Collections.singletonList("a"), changes.getRemoved());
+        assertEquals(Collections.singletonList("sub/deeper/c"), changes.getModified());
+        assertEquals(7, manifest.getEntries().get("sub/deeper/c").getSize());
+
+        manifest.write(index);
+        assertEquals(Arrays.asList("d", "sub/b", "sub/deeper/c"),
+                Arrays.asList(DirectoryManifest.read(index).getEntries().keySet().toArray()));
+    }
+
+    @Test
+    public void testAlgorithm() throws Exception {
+        Path root = folder.newFolder("root").toPath();
+        Path index = folder.getRoot().toPath().resolve("manifest.idx");
+        Files.write(root.resolve("a"), "a".getBytes("UTF-8"));
+
+        DirectoryManifest manifest = new DirectoryManifest("MD5");
+        manifest.update(root);
+        manifest.write(index);
+
+        DirectoryManifest read = DirectoryManifest.read(index);
+        assertEquals("MD5", read.getAlgorithm());
+        assertEquals(16, read.getEntries().get("a").getDigest().length);
+    }
+
+    @Test
+    public void testUnreadableFile() throws Exception {
+        Path root = folder.newFolder("root").toPath();
+        Path locked = root.resolve("locked");
+        Files.write(root.resolve("a"), "a".getBytes("UTF-8"));
+        Files.write(locked, "b".getBytes("UTF-8"));
+
+        DirectoryManifest manifest = new DirectoryManifest();
+        manifest.update(root);
+        Assume.assumeTrue(Files.getFileStore(locked).supportsFileAttributeView("posix"));
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("-w-------"));
+        Assume.assumeFalse(Files.isReadable(locked));
+        // Changed, so digested again.
+        Files.write(locked, new byte[0]);
+
+        DirectoryManifest.Changes changes = manifest.update(root);
+        assertEquals(Collections.singletonList("locked"), changes.getRemoved());
+        assertEquals(Collections.singleton("a"), manifest.getEntries().keySet());
+    }
+}
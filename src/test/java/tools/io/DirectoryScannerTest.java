@@ -0,0 +1,90 @@
+package tools.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testScanSorted() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.createDirectories(root.resolve("b10/c"));
+        Files.createDirectories(root.resolve("b2"));
+        Files.write(root.resolve("b10/c/f1"), new byte[3]);
+        Files.write(root.resolve("b2/f10"), new byte[5]);
+        Files.write(root.resolve("b2/f9"), new byte[7]);
+        Files.write(root.resolve("a"), new byte[0]);
+
+        List<ScannedFile> files = new DirectoryScanner().scan(root, FileOrder.NATURAL);
+
+        List<String> paths = new ArrayList<>();
+        for (ScannedFile file : files) {
+            paths.add(file.getRelativePath().toString().replace('\\', '/'));
+        }
+        assertEquals(Arrays.asList("a", "b2", "b2/f9", "b2/f10", "b10", "b10/c", "b10/c/f1"), paths);
+        assertTrue(files.get(1).isDirectory());
+        assertEquals(7, files.get(2).getSize());
+        assertEquals("f9", files.get(2).getName());
+    }
+
+    @Test
+    public void testScanLargeTree() throws Exception {
+        Path root = folder.getRoot().toPath();
+        for (int i = 0; i < 20; i++) {
+            Path directory = Files.createDirectories(root.resolve("d" + i + "/sub"));
+            for (int j = 0; j < 10; j++) {
+                Files.write(directory.resolve("f" + j), new byte[j]);
+            }
+        }
+
+        assertEquals(20 * 12, new DirectoryScanner().scan(root).size());
+    }
+
+    @Test
+    public void testUnreadableDirectorySkipped() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Path locked = Files.createDirectories(root.resolve("locked"));
+        Files.write(locked.resolve("hidden"), new byte[1]);
+        Files.write(root.resolve("visible"), new byte[1]);
+        Assume.assumeTrue(Files.getFileStore(locked).supportsFileAttributeView("posix"));
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+        try {
+            Assume.assumeFalse(Files.isReadable(locked));
+
+            List<ScannedFile> files = new DirectoryScanner().scan(root, FileOrder.NATURAL);
+
+            assertEquals(2, files.size());
+            assertEquals("locked", files.get(0).getName());
+            assertEquals("visible", files.get(1).getName());
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    public void testMissingRoot() throws Exception {
+        try {
+            new DirectoryScanner().scan(folder.getRoot().toPath().resolve("missing"));
+            fail("A missing root must fail the scan.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package tools.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class DownloadMetricsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long micros = 0; micros < 100000; micros += 7) {
+            int index = LatencyHistogram.index(micros);
+            assertTrue(micros <= LatencyHistogram.upperBound(index));
+            assertTrue(index == 0 || micros > LatencyHistogram.upperBound(index - 1));
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(100, histogram.getMax(), 0.001);
+        assertEquals(50, histogram.getPercentile(0.5), 50 * 0.125);
+        assertEquals(95, histogram.getPercentile(0.95), 95 * 0.125);
+    }
+
+    @Test
+    public void testEventsAndJmx() throws Exception {
+        DownloadMetrics metrics = new DownloadMetrics();
+        List<DownloadEvent> events = new ArrayList<>();
+        RessourceClient client = RessourceClient.builder().listener(event -> {
+            events.add(event);
+            metrics.downloadCompleted(event);
+        }).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/ok", TestServer.body(new byte[5000]));
+            server.handle("/missing", exchange -> TestServer.send(exchange, 404, new byte[0]));
+
+            for (int i = 0; i < 3; i++) {
+                client.getRessource(server.url("/ok"));
+            }
+            try {
+                client.getRessource(server.url("/missing"));
+                fail("A 404 must fail.");
+            } catch (IOException e) {
+                // Expected.
+            }
+
+            DownloadEvent first = events.get(0);
+            assertTrue(first.isSuccess());
+            assertEquals(200, first.getStatus());
+            assertEquals(5000, first.getBytesRead());
+            assertEquals(5000, first.getBytesWritten());
+            assertTrue(first.getConnectNanos() >= 0);
+            assertTrue(first.getFirstByteNanos() >= first.getConnectNanos());
+            assertTrue(first.getTransferNanos() >= 0);
+            assertTrue(first.getTotalNanos() >= first.getFirstByteNanos());
+            DownloadEvent last = events.get(3);
+            assertFalse(last.isSuccess());
+            assertEquals(404, last.getStatus());
+
+            String host = BatchDownloader.hostKey(server.url("/"));
+            DownloadMetrics.HostStatistics statistics = metrics.getHostStatistics(host);
+            assertEquals(4, statistics.getRequests());
+            assertEquals(1, statistics.getFailures());
+            assertEquals(15000, statistics.getBytesRead());
+            assertEquals(4, statistics.getTotal().getCount());
+            assertNull(metrics.getHostStatistics("ailleurs:80"));
+
+            ObjectName name = metrics.register("test");
+            try {
+                assertEquals(4L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RequestCount"));
+                CompositeData[] hosts = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                        .getAttribute(name, "HostStatistics");
+                assertEquals(host, hosts[0].get("host"));
+                assertEquals(4L, ((CompositeData) hosts[0].get("total")).get("count"));
+            } finally {
+                metrics.unregister();
+            }
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        }
+    }
+
+    @Test
+    public void testMaxHosts() throws Exception {
+        DownloadMetrics metrics = new DownloadMetrics(2);
+        for (int i = 0; i < 5; i++) {
+            URL url = new URL("http://host" + i + ".example.com/");
+            metrics.downloadCompleted(new DownloadEvent(url, 200, 1, 2, 3, 6, 10, 10, 0, null));
+            metrics.downloadCompleted(new DownloadEvent(url, 200, 1, 2, 3, 6, 10, 10, 0, null));
+        }
+
+        assertEquals(10, metrics.getRequestCount());
+        assertEquals(100, metrics.getBytesRead());
+        List<DownloadMetrics.HostStatistics> statistics = metrics.getHostStatistics();
+        assertEquals(3, statistics.size());
+        assertEquals("host0.example.com:80", statistics.get(0).getHost());
+        assertEquals(2, statistics.get(1).getRequests());
+        assertEquals(DownloadMetrics.OTHER_HOSTS, statistics.get(2).getHost());
+        assertEquals(6, statistics.get(2).getRequests());
+        assertNull(metrics.getHostStatistics("host4.example.com:80"));
+        assertEquals(6, metrics.getHostStatistics(DownloadMetrics.OTHER_HOSTS).getTotal().getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getRequestCount());
+        assertTrue(metrics.getHostStatistics().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+package tools.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DuplicateFinderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFind() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.createDirectories(root.resolve("sub"));
+        byte[] large = new byte[(3 << 20) + 17];
+        new Random(1).nextBytes(large);
+        byte[] middleChanged = large.clone();
+        middleChanged[large.length / 2]++;
+        byte[] small = "small content".getBytes("UTF-8");
+
+        Files.write(root.resolve("large1"), large);
+        Files.write(root.resolve("sub/large2"), large);
+        Files.write(root.resolve("large3"), middleChanged);
+        Files.write(root.resolve("small1"), small);
+        Files.write(root.resolve("sub/small2"), small);
+        Files.write(root.resolve("other"), "small CONTENT".getBytes("UTF-8"));
+        Files.write(root.resolve("empty1"), new byte[0]);
+        Files.write(root.resolve("empty2"), new byte[0]);
+
+        List<List<Path>> duplicates = new DuplicateFinder().find(root);
+
+        assertEquals(Arrays.asList(Arrays.asList(root.resolve("large1"), root.resolve("sub/large2")),
+                Arrays.asList(root.resolve("small1"), root.resolve("sub/small2"))), duplicates);
+    }
+
+    @Test
+    public void testFindAmongFiles() throws Exception {
+        Path root = folder.getRoot().toPath();
+        byte[] content = new byte[3 * DuplicateFinder.BLOCK_SIZE];
+        Arrays.fill(content, (byte) 7);
+        Files.write(root.resolve("a"), content);
+        Files.write(root.resolve("b"), content);
+        Files.write(root.resolve("c"), content);
+
+        List<List<Path>> duplicates = new DuplicateFinder("MD5", 2)
+                .find(Arrays.asList(root.resolve("c"), root.resolve("a"), root.resolve("missing")));
+
+        assertEquals(Collections.singletonList(Arrays.asList(root.resolve("a"), root.resolve("c"))), duplicates);
+    }
+}
@@ -0,0 +1,79 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FileComparatorTest {
+
+    @Test
+    public void testLexicographic() {
+        File[] files = { new File("b/file2"), new File("a/file10"), new File("c/File1") };
+
+        Arrays.sort(files, new FileComparator());
+
+        assertEquals("File1", files[0].getName());
+        assertEquals("file10", files[1].getName());
+        assertEquals("file2", files[2].getName());
+    }
+
+    @Test
+    public void testNatural() {
+        List<String> names = new ArrayList<>(Arrays.asList("file10", "file2", "file1", "file02", "a-1", "a.1", "a1",
+                "file", "file2b", "file2a", "x99999999999999999999", "x100000000000000000000"));
+        List<String> expected = Arrays.asList("a-1", "a.1", "a1", "file", "file1", "file02", "file2", "file2a",
+                "file2b", "file10", "x99999999999999999999", "x100000000000000000000");
+
+        FileOrder.NATURAL.sort(names, name -> name);
+        assertEquals(expected, names);
+
+        Collections.shuffle(names, new Random(1));
+        names.sort(FileOrder.NATURAL.comparator());
+        assertEquals(expected, names);
+        assertTrue(FileOrder.NATURAL.compare("file01", "file1") < 0);
+    }
+
+    @Test
+    public void testCollated() {
+        List<String> names = new ArrayList<>(Arrays.asList("été 10", "Zoé", "ete 2", "zebre", "Éric"));
+
+        FileOrder.collated(Locale.FRENCH).sort(names, name -> name);
+
+        assertEquals(Arrays.asList("Éric", "ete 2", "été 10", "zebre", "Zoé"), names);
+    }
+
+    @Test
+    public void testSortByPath() {
+        List<String> paths = new ArrayList<>(Arrays.asList("dir-2", "dir/x10", "dir", "dir/x9", "dir0"));
+
+        FileOrder.NATURAL.sortByPath(paths, Paths::get);
+
+        assertEquals(Arrays.asList("dir", "dir/x9", "dir/x10", "dir-2", "dir0"), paths);
+    }
+
+    @Test
+    public void testSortFiles() {
+        File[] files = new File[1000];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File("img" + (files.length - i) + ".png");
+        }
+        File[] expected = files.clone();
+        Arrays.sort(expected, new FileComparator(FileOrder.NATURAL));
+
+        new FileComparator(FileOrder.NATURAL).sort(files);
+
+        assertArrayEquals(expected, files);
+        assertEquals("img1.png", files[0].getName());
+    }
+}
@@ -0,0 +1,135 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HttpCacheTest {
+
+    private static final byte[] BODY = "Un fichier de référence.".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRevalidation() throws Exception {
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/etag", exchange -> {
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                } else {
+                    full.incrementAndGet();
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    TestServer.send(exchange, 200, BODY);
+                }
+            });
+
+            Path directory = folder.getRoot().toPath();
+            HttpCache cache = new HttpCache(directory, 1024);
+            RessourceClient client = RessourceClient.builder().cache(cache).build();
+            URL url = server.url("/etag");
+
+            assertArrayEquals(BODY, client.getRessource(url).getBody());
+            assertArrayEquals(BODY, client.getRessource(url).getBody());
+
+            // A new cache instance reloads the stored entries.
+            HttpCache reopened = new HttpCache(directory, 1024);
+            assertEquals(1, reopened.getEntryCount());
+            RessourceResponse response = RessourceClient.builder().cache(reopened).build().getRessource(url);
+            assertArrayEquals(BODY, response.getBody());
+            assertEquals("\"v1\"", response.getHeader("ETag"));
+
+            assertEquals(1, full.get());
+            assertEquals(2, notModified.get());
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+            assertEquals(BODY.length, cache.getBytesSaved());
+        }
+    }
+
+    @Test
+    public void testMaxAgeAndEviction() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/", exchange -> {
+                calls.incrementAndGet();
+                exchange.getResponseHeaders().add("Cache-Control", "max-age=3600");
+                TestServer.send(exchange, 200, BODY);
+            });
+
+            HttpCache cache = new HttpCache(folder.getRoot().toPath(), BODY.length * 2L);
+            RessourceClient client = RessourceClient.builder().cache(cache).build();
+
+            client.getRessource(server.url("/a"));
+            client.getRessource(server.url("/a"));
+            assertEquals(1, calls.get());
+
+            client.getRessource(server.url("/b"));
+            client.getRessource(server.url("/a"));
+            client.getRessource(server.url("/c"));
+            assertEquals(3, calls.get());
+            assertEquals(2, cache.getEntryCount());
+            assertTrue(cache.getSize() <= BODY.length * 2L);
+
+            // "/b" was the least recently used entry.
+            client.getRessource(server.url("/a"));
+            client.getRessource(server.url("/b"));
+            assertEquals(4, calls.get());
+            try (java.util.stream.Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+                assertEquals(4, files.count());
+            }
+        }
+    }
+
+    @Test
+    public void testStorageFailuresDoNotFailLoads() throws Exception {
+        char[] large = new char[70000];
+        Arrays.fill(large, 'x');
+        String largeHeader = new String(large);
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/", exchange -> {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                TestServer.send(exchange, 200, BODY);
+            });
+            server.handle("/large", exchange -> {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.getResponseHeaders().add("X-Large", largeHeader);
+                TestServer.send(exchange, 200, BODY);
+            });
+
+            // Meta header over the 64 KiB limit of writeUTF: the commit fails.
+            Path directory = folder.newFolder("cache").toPath();
+            HttpCache cache = new HttpCache(directory, 1024);
+            RessourceClient client = RessourceClient.builder().cache(cache).build();
+            assertArrayEquals(BODY, client.getRessource(server.url("/large")).getBody());
+            assertEquals(0, cache.getEntryCount());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+
+            // Directory gone: the temporary file can't be created.
+            Files.delete(directory);
+            assertArrayEquals(BODY, client.getRessource(server.url("/a")).getBody());
+            assertEquals(0, cache.getEntryCount());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoadRessourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testPrivateConstructor() {
+        for (Constructor<?> c : LoadRessource.class.getDeclaredConstructors()) {
+            assertTrue("All constructors of an utility class should be private.", Modifier.isPrivate(c.getModifiers()));
+        }
+    }
+
+    @Test
+    public void testStreamCopy() throws Exception {
+        byte[] data = data(250000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        LoadRessource.getRessource(new ByteArrayInputStream(data), out);
+
+        assertArrayEquals(data, out.toByteArray());
+        assertArrayEquals(data, LoadRessource.getRessource(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testFileStreamCopy() throws Exception {
+        byte[] data = data(300000);
+        File source = folder.newFile();
+        File target = folder.newFile();
+        Files.write(source.toPath(), data);
+
+        LoadRessource.getRessource(new FileInputStream(source), new FileOutputStream(target));
+
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void testChannelCopy() throws Exception {
+        byte[] data = data(300000);
+        File target = folder.newFile();
+
+        LoadRessource.getRessource(Channels.newChannel(new ByteArrayInputStream(data)),
+                FileChannel.open(target.toPath(), StandardOpenOption.WRITE));
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LoadRessource.getRessource(FileChannel.open(target.toPath()), Channels.newChannel(out));
+        assertArrayEquals(data, out.toByteArray());
+
+        out.reset();
+        LoadRessource.getRessource(Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(out));
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    public void testChunkConsumer() throws Exception {
+        byte[] data = data(350000);
+        File source = folder.newFile();
+        Files.write(source.toPath(), data);
+        ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromFile = new ByteArrayOutputStream();
+        int[] maxChunk = new int[1];
+
+        LoadRessource.getRessource(new ByteArrayInputStream(data), chunk -> {
+            maxChunk[0] = Math.max(maxChunk[0], chunk.remaining());
+            Channels.newChannel(fromStream).write(chunk);
+        });
+        LoadRessource.getRessource(new FileInputStream(source), chunk -> {
+            assertTrue(chunk.isReadOnly());
+            Channels.newChannel(fromFile).write(chunk);
+        });
+
+        assertArrayEquals(data, fromStream.toByteArray());
+        assertArrayEquals(data, fromFile.toByteArray());
+        assertTrue(maxChunk[0] <= LoadRessource.DEFAULT_BUFFER_SIZE);
+    }
+}
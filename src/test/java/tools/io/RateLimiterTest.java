@@ -0,0 +1,83 @@
+package tools.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = 0;
+
+        assertEquals(0, bucket.reserve(1, now));
+        assertEquals(0, bucket.reserve(1, now));
+        assertEquals(0, bucket.reserve(1, now));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve(1, now));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve(1, now));
+
+        now = TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, bucket.reserve(3, now));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.reserve(10, now));
+    }
+
+    @Test
+    public void testHostBucketsDropped() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().hostRequestsPerSecond(1_000_000, 1)
+                .hostBytesPerSecond(1_000_000_000, 1000).build();
+
+        for (int i = 0; i < 20_000; i++) {
+            limiter.acquireRequest(new URL("http://host" + i + ".invalid/"), null);
+            limiter.acquireBytes("host" + i + ".invalid:80", 10, null);
+        }
+
+        assertTrue("Too many buckets kept: " + limiter.hostBuckets(), limiter.hostBuckets() < 5000);
+
+        TokenBucket bucket = new TokenBucket(10, 1);
+        assertEquals(0, bucket.reserve(1, 0));
+        assertFalse(bucket.retireIfFull(0));
+        assertTrue(bucket.retireIfFull(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(-1, bucket.reserve(1, TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    public void testRequestRatePerHost() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().hostRequestsPerSecond(20, 1).build();
+        RessourceClient client = RessourceClient.builder().rateLimiter(limiter).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/ok", TestServer.body(new byte[10]));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 6; i++) {
+                client.getRessource(server.url("/ok"));
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue("Requests were not paced: " + elapsed + " ms", elapsed >= 240);
+        }
+    }
+
+    @Test
+    public void testBandwidth() throws Exception {
+        RateLimiter limiter = RateLimiter.builder().bytesPerSecond(400_000, 1000).build();
+        RessourceClient client = RessourceClient.builder().rateLimiter(limiter).build();
+        byte[] body = new byte[200_000];
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/big", TestServer.body(body));
+
+            long start = System.nanoTime();
+            assertEquals(body.length, client.getRessource(server.url("/big")).getBody().length);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue("Bandwidth was not limited: " + elapsed + " ms", elapsed >= 400);
+        }
+    }
+}
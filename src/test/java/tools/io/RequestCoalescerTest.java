@@ -0,0 +1,64 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+
+    private static final int CALLERS = 10;
+
+    @Test
+    public void testIdenticalRequestsShareOneTransfer() throws Exception {
+        byte[] body = "partagé".getBytes(StandardCharsets.UTF_8);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RequestCoalescer coalescer = new RequestCoalescer();
+        RessourceClient client = RessourceClient.builder().coalescer(coalescer).build();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/shared", exchange -> {
+                calls.incrementAndGet();
+                arrived.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                TestServer.send(exchange, 200, body);
+            });
+            URL url = server.url("/shared");
+
+            List<Future<RessourceResponse>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> client.getRessource(url)));
+            arrived.await();
+            for (int i = 1; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> client.getRessource(url)));
+            }
+            while (coalescer.getCoalesced() < CALLERS - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<RessourceResponse> future : futures) {
+                assertArrayEquals(body, future.get().getBody());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
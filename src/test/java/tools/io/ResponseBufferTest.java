@@ -0,0 +1,74 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ResponseBufferTest {
+
+    @Test
+    public void testExpectedLength() {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.expect(10);
+        buffer.write(new byte[] { 1, 2, 3, 4, 5 }, 0, 5);
+        buffer.write(new byte[] { 6, 7, 8, 9, 10 }, 0, 5);
+
+        byte[] first = buffer.toByteArray();
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }, first);
+        // Exactly filled: no copy.
+        assertSame(first, buffer.toByteArray());
+    }
+
+    @Test
+    public void testUnknownLength() {
+        ResponseBuffer buffer = new ResponseBuffer();
+        byte[] chunk = new byte[5000];
+        Arrays.fill(chunk, (byte) 7);
+        for (int i = 0; i < 10; i++) {
+            buffer.write(chunk, 0, chunk.length);
+        }
+        buffer.write(8);
+
+        byte[] data = buffer.toByteArray();
+        assertEquals(50001, data.length);
+        assertEquals(50001, buffer.size());
+        assertEquals(7, data[49999]);
+        assertEquals(8, data[50000]);
+    }
+
+    @Test
+    public void testWrongExpectedLength() {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.expect(3);
+        buffer.write(new byte[] { 1, 2, 3, 4 }, 0, 4);
+        assertArrayEquals(new byte[] { 1, 2, 3, 4 }, buffer.toByteArray());
+
+        buffer = new ResponseBuffer();
+        buffer.expect(8);
+        buffer.write(new byte[] { 1, 2 }, 0, 2);
+        assertArrayEquals(new byte[] { 1, 2 }, buffer.toByteArray());
+    }
+
+    @Test
+    public void testLargeExpectedLength() {
+        ResponseBuffer buffer = new ResponseBuffer();
+        buffer.expect(Integer.MAX_VALUE - 100);
+        assertEquals(ResponseBuffer.MAX_PRESIZE, buffer.capacity());
+
+        int length = ResponseBuffer.MAX_PRESIZE * 3 + 17;
+        buffer = new ResponseBuffer();
+        buffer.expect(length);
+        byte[] chunk = new byte[65536];
+        Arrays.fill(chunk, (byte) 3);
+        for (int written = 0; written < length; written += chunk.length) {
+            buffer.write(chunk, 0, Math.min(chunk.length, length - written));
+        }
+        // Grown with the data up to the announced length: no copy.
+        assertEquals(length, buffer.capacity());
+        assertSame(buffer.toByteArray(), buffer.toByteArray());
+    }
+}
@@ -0,0 +1,381 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class RessourceClientTest {
+
+    @Test
+    public void testHeadersPerRequest() throws Exception {
+        RessourceClient client = RessourceClient.builder().property("X-Test", "oui").build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/echo", exchange -> {
+                String query = exchange.getRequestURI().getQuery();
+                exchange.getResponseHeaders().add("X-Id", query);
+                exchange.getResponseHeaders().add("X-Test", exchange.getRequestHeaders().getFirst("X-Test"));
+                TestServer.send(exchange, 200, query.getBytes(StandardCharsets.UTF_8));
+            });
+
+            List<Future<RessourceResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String id = Integer.toString(i);
+                futures.add(executor.submit(() -> client.getRessource(server.url("/echo?" + id))));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                RessourceResponse response = futures.get(i).get();
+                assertEquals(200, response.getStatus());
+                assertEquals(Integer.toString(i), response.getHeader("x-id"));
+                assertEquals("oui", response.getHeader("X-Test"));
+                assertEquals(Integer.toString(i), new String(response.getBody(), StandardCharsets.UTF_8));
+                assertEquals(response.getBody().length, response.getBytesWritten());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetryAfterTimeoutDoesNotDuplicateData() throws Exception {
+        byte[] body = new byte[1000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+
+        try (TestServer server = new TestServer()) {
+            for (String path : new String[] { "/stall", "/memory" }) {
+                AtomicInteger calls = new AtomicInteger();
+                server.handle(path, exchange -> {
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        if (calls.getAndIncrement() == 0) {
+                            out.write(body, 0, body.length / 2);
+                            out.flush();
+                            Thread.sleep(1000);
+                        } else {
+                            out.write(body);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            RessourceClient client = RessourceClient.builder().timeout(200).attempts(3).build();
+
+            // Without range support, a stream already written can't be completed.
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                client.getRessource(server.url("/stall"), out);
+                fail();
+            } catch (IOException e) {
+                assertArrayEquals(Arrays.copyOf(body, body.length / 2), out.toByteArray());
+            }
+
+            // In memory, the load starts again from the first byte.
+            RessourceResponse response = client.getRessource(server.url("/memory"));
+            assertArrayEquals(body, response.getBody());
+            assertEquals(body.length, response.getBytesWritten());
+        }
+    }
+
+    @Test
+    public void testRetryFailsWhenResourceChanged() throws Exception {
+        byte[] first = new byte[1000];
+        byte[] second = new byte[800];
+        Arrays.fill(first, (byte) 1);
+        Arrays.fill(second, (byte) 2);
+        List<String> ifRanges = new CopyOnWriteArrayList<>();
+
+        try (TestServer server = new TestServer()) {
+            for (String path : new String[] { "/changing", "/memory" }) {
+                AtomicInteger calls = new AtomicInteger();
+                server.handle(path, exchange -> {
+                    exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                    if (calls.getAndIncrement() == 0) {
+                        exchange.getResponseHeaders().add("ETag", "\"e1\"");
+                        exchange.sendResponseHeaders(200, first.length);
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            out.write(first, 0, 600);
+                            out.flush();
+                            Thread.sleep(1000);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    } else {
+                        // The ETag changed: If-Range doesn't match, the whole new version is sent.
+                        ifRanges.add(exchange.getRequestHeaders().getFirst("If-Range"));
+                        exchange.getResponseHeaders().add("ETag", "\"e2\"");
+                        TestServer.send(exchange, 200, second);
+                    }
+                });
+            }
+            RessourceClient client = RessourceClient.builder().timeout(200).attempts(3).build();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                client.getRessource(server.url("/changing"), out);
+                fail();
+            } catch (IOException e) {
+                assertArrayEquals(Arrays.copyOf(first, 600), out.toByteArray());
+            }
+
+            RessourceResponse response = client.getRessource(server.url("/memory"));
+            assertArrayEquals(second, response.getBody());
+            assertEquals("\"e2\"", response.getHeader("ETag"));
+            assertEquals(Arrays.asList("\"e1\"", "\"e1\""), ifRanges);
+        }
+    }
+
+    @Test
+    public void testRetryAfterTimeoutRequestsMissingRange() throws Exception {
+        byte[] body = new byte[1000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * 7);
+        }
+        AtomicInteger calls = new AtomicInteger();
+        String[] range = new String[1];
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/resume", exchange -> {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().add("ETag", "\"e1\"");
+                if (calls.getAndIncrement() == 0) {
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body, 0, 600);
+                        out.flush();
+                        Thread.sleep(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    range[0] = exchange.getRequestHeaders().getFirst("Range");
+                    exchange.getResponseHeaders().add("Content-Range", "bytes 600-999/1000");
+                    exchange.sendResponseHeaders(206, 400);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body, 600, 400);
+                    }
+                }
+            });
+
+            RessourceResponse response = RessourceClient.builder().timeout(200).attempts(2).build()
+                    .getRessource(server.url("/resume"));
+
+            assertArrayEquals(body, response.getBody());
+            assertEquals("bytes=600-", range[0]);
+        }
+    }
+
+    @Test
+    public void testAsyncLoads() throws Exception {
+        Assume.assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+        RessourceClient client = RessourceClient.builder().property("X-Test", "oui").build();
+        assertEquals("tools.io.HttpClientEngine", AsyncEngine.create(client, null).getClass().getName());
+        byte[] plain = "contenu compressé".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(plain);
+        }
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/echo", exchange -> {
+                exchange.getResponseHeaders().add("X-Test", exchange.getRequestHeaders().getFirst("X-Test"));
+                TestServer.send(exchange, 200, exchange.getRequestURI().getQuery().getBytes(StandardCharsets.UTF_8));
+            });
+            server.handle("/gzip", exchange -> {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                TestServer.send(exchange, 200, compressed.toByteArray());
+            });
+
+            List<CompletableFuture<RessourceResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(client.getRessourceAsync(server.url("/echo?" + i)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                RessourceResponse response = futures.get(i).get();
+                assertEquals(Integer.toString(i), new String(response.getBody(), StandardCharsets.UTF_8));
+                assertEquals("oui", response.getHeader("X-Test"));
+            }
+
+            RessourceResponse decoded = client.getRessourceAsync(server.url("/gzip")).get();
+            assertArrayEquals(plain, decoded.getBody());
+            assertEquals(compressed.size(), decoded.getBytesRead());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            RessourceResponse streamed = client.getRessourceAsync(server.url("/echo?flux"), out).get();
+            assertEquals("flux", new String(out.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(4, streamed.getBytesWritten());
+        }
+    }
+
+    @Test
+    public void testAsyncRetryAndErrors() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RessourceClient client = RessourceClient.builder()
+                .retryPolicy(RetryPolicy.builder().attempts(3).backoff(10, 50, 2, 0).build()).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/busy", exchange -> {
+                if (calls.getAndIncrement() == 0) {
+                    TestServer.send(exchange, 503, new byte[0]);
+                } else {
+                    TestServer.send(exchange, 200, "ok".getBytes(StandardCharsets.UTF_8));
+                }
+            });
+            server.handle("/missing", exchange -> TestServer.send(exchange, 404, new byte[0]));
+
+            assertArrayEquals("ok".getBytes(StandardCharsets.UTF_8),
+                    client.getRessourceAsync(server.url("/busy")).get().getBody());
+            assertEquals(2, calls.get());
+
+            try {
+                client.getRessourceAsync(server.url("/missing")).get();
+                fail("A 404 must fail.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof FileNotFoundException);
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testAsyncDeadlineStopsWrites() throws Exception {
+        Assume.assumeFalse(System.getProperty("java.specification.version").startsWith("1."));
+        RessourceClient client = RessourceClient.builder()
+                .retryPolicy(RetryPolicy.builder().totalTimeout(300).build()).build();
+        AtomicInteger late = new AtomicInteger();
+        CountDownLatch served = new CountDownLatch(1);
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/trickle", exchange -> {
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    for (int i = 0; i < 40; i++) {
+                        body.write(new byte[100]);
+                        body.flush();
+                        Thread.sleep(50);
+                    }
+                } catch (IOException e) {
+                    // The client went away.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    served.countDown();
+                }
+            });
+
+            OutputStream out = new OutputStream() {
+                private volatile boolean closed;
+
+                @Override
+                public void write(int b) {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    if (closed) {
+                        late.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void close() {
+                    closed = true;
+                }
+            };
+            try {
+                client.getRessourceAsync(server.url("/trickle"), out).get();
+                fail("The deadline must fail the load.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TransferContext.DeadlineExceededException);
+            }
+            served.await();
+            assertEquals(0, late.get());
+        }
+    }
+
+    @Test
+    public void testExecutorEngine() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        RessourceClient client = RessourceClient.builder().executor(executor).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/body", TestServer.body("corps".getBytes(StandardCharsets.UTF_8)));
+
+            RessourceResponse response = new ExecutorEngine(client, executor).load(server.url("/body")).get();
+
+            assertArrayEquals("corps".getBytes(StandardCharsets.UTF_8), response.getBody());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChunksAfterRetry() throws Exception {
+        byte[] body = new byte[300000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * 13);
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/chunks", exchange -> {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().add("ETag", "\"c1\"");
+                if (calls.getAndIncrement() == 0) {
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body, 0, 120000);
+                        out.flush();
+                        Thread.sleep(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    exchange.getResponseHeaders().add("Content-Range",
+                            "bytes 120000-" + (body.length - 1) + "/" + body.length);
+                    exchange.sendResponseHeaders(206, body.length - 120000);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body, 120000, body.length - 120000);
+                    }
+                }
+            });
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            RessourceResponse response = RessourceClient.builder().timeout(200).attempts(2).build()
+                    .getRessource(server.url("/chunks"), chunk -> {
+                        byte[] copy = new byte[chunk.remaining()];
+                        chunk.get(copy);
+                        out.write(copy);
+                    });
+
+            assertArrayEquals(body, out.toByteArray());
+            assertEquals(body.length, response.getBytesWritten());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testBackoffBounds() {
+        RetryPolicy policy = RetryPolicy.builder().backoff(100, 1000, 2, 0.5).build();
+
+        for (int i = 0; i < 100; i++) {
+            long first = policy.backoff(1, -1);
+            assertTrue(first >= 50 && first <= 100);
+            long late = policy.backoff(10, -1);
+            assertTrue(late >= 500 && late <= 1000);
+        }
+        assertEquals(300, policy.backoff(1, 300));
+        assertEquals(1000, policy.backoff(1, 60000));
+        assertEquals(0, RetryPolicy.builder().noBackoff().build().backoff(3, -1));
+    }
+
+    @Test
+    public void testRetryOnUnavailable() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        RessourceClient client = RessourceClient.builder()
+                .retryPolicy(RetryPolicy.builder().attempts(3).backoff(10, 50, 2, 0).build()).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/busy", exchange -> {
+                if (calls.getAndIncrement() < 2) {
+                    TestServer.send(exchange, 503, "occupé".getBytes(StandardCharsets.UTF_8));
+                } else {
+                    TestServer.send(exchange, 200, "ok".getBytes(StandardCharsets.UTF_8));
+                }
+            });
+
+            RessourceResponse response = client.getRessource(server.url("/busy"));
+
+            assertEquals(200, response.getStatus());
+            assertArrayEquals("ok".getBytes(StandardCharsets.UTF_8), response.getBody());
+            assertEquals(3, calls.get());
+        }
+    }
+
+    @Test
+    public void testTotalTimeout() throws Exception {
+        RessourceClient client = RessourceClient.builder()
+                .retryPolicy(RetryPolicy.builder().attempts(10).readTimeout(5000).totalTimeout(300).build()).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/slow", exchange -> {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                TestServer.send(exchange, 200, new byte[1]);
+            });
+
+            long start = System.nanoTime();
+            try {
+                client.getRessource(server.url("/slow"));
+                fail("The total timeout was ignored.");
+            } catch (IOException e) {
+                assertTrue((System.nanoTime() - start) / 1_000_000L < 1500);
+            }
+        }
+    }
+
+    @Test
+    public void testHedgedRequest() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        RessourceClient client = RessourceClient.builder()
+                .retryPolicy(RetryPolicy.builder().hedging(executor, 100, 0.95).build()).build();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/tail", exchange -> {
+                if (calls.getAndIncrement() == 0) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                TestServer.send(exchange, 200, "rapide".getBytes(StandardCharsets.UTF_8));
+            });
+
+            long start = System.nanoTime();
+            RessourceResponse response = client.getRessource(server.url("/tail"));
+
+            assertArrayEquals("rapide".getBytes(StandardCharsets.UTF_8), response.getBody());
+            assertTrue((System.nanoTime() - start) / 1_000_000L < 2000);
+            assertEquals(2, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package tools.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+
+public class SegmentedDownloaderTest {
+
+    private static final int BLOCK_SIZE = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] data = new byte[BLOCK_SIZE * 7 + 123];
+
+    private final AtomicInteger ranges = new AtomicInteger();
+
+    public SegmentedDownloaderTest() {
+        new Random(42).nextBytes(data);
+    }
+
+    private void sendRange(HttpExchange exchange, boolean fail) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", "\"fixe\"");
+        if (range == null) {
+            TestServer.send(exchange, 200, data);
+            return;
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-", -1);
+        int start = Integer.parseInt(bounds[0]);
+        int end = bounds[1].isEmpty() ? data.length - 1 : Math.min(Integer.parseInt(bounds[1]), data.length - 1);
+        ranges.incrementAndGet();
+        if (fail && start == BLOCK_SIZE * 3) {
+            TestServer.send(exchange, 500, new byte[0]);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + '-' + end + '/' + data.length);
+        byte[] part = new byte[end - start + 1];
+        System.arraycopy(data, start, part, 0, part.length);
+        TestServer.send(exchange, 206, part);
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        try (TestServer server = new TestServer()) {
+            server.handle("/big", exchange -> sendRange(exchange, false));
+            Path target = folder.getRoot().toPath().resolve("big.bin");
+
+            new SegmentedDownloader(RessourceClient.builder().build(), 3, BLOCK_SIZE, null)
+                    .download(server.url("/big"), target);
+
+            assertArrayEquals(data, Files.readAllBytes(target));
+            assertFalse(Files.exists(SegmentedDownloader.statePath(target)));
+            // The probe plus one request per block.
+            assertEquals(1 + 8, ranges.get());
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean(true);
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/big", exchange -> sendRange(exchange, fail.get()));
+            Path target = folder.getRoot().toPath().resolve("big.bin");
+            SegmentedDownloader downloader = new SegmentedDownloader(RessourceClient.builder().build(), 1,
+                    BLOCK_SIZE, null);
+
+            try {
+                downloader.download(server.url("/big"), target);
+                fail("The fourth block should have failed.");
+            } catch (IOException e) {
+                assertTrue(Files.exists(SegmentedDownloader.statePath(target)));
+            }
+
+            fail.set(false);
+            ranges.set(0);
+            downloader.download(server.url("/big"), target);
+
+            assertArrayEquals(data, Files.readAllBytes(target));
+            // The probe plus the 5 blocks left.
+            assertEquals(1 + 5, ranges.get());
+        }
+    }
+
+    @Test
+    public void testUnknownLength() throws Exception {
+        try (TestServer server = new TestServer()) {
+            server.handle("/unknown", exchange -> {
+                if (exchange.getRequestHeaders().getFirst("Range") == null) {
+                    TestServer.send(exchange, 200, data);
+                } else {
+                    exchange.getResponseHeaders().add("Content-Range", "bytes 0-0/*");
+                    TestServer.send(exchange, 206, new byte[] { data[0] });
+                }
+            });
+            Path target = folder.getRoot().toPath().resolve("unknown.bin");
+
+            new SegmentedDownloader(RessourceClient.builder().build(), 3, BLOCK_SIZE, null)
+                    .download(server.url("/unknown"), target);
+
+            assertArrayEquals(data, Files.readAllBytes(target));
+        }
+    }
+
+    @Test
+    public void testRetryableStatusAndWrongRange() throws Exception {
+        AtomicInteger busy = new AtomicInteger();
+        AtomicBoolean shifted = new AtomicBoolean();
+
+        try (TestServer server = new TestServer()) {
+            server.handle("/big", exchange -> {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (range.startsWith("bytes=" + BLOCK_SIZE * 2 + '-') && busy.getAndIncrement() == 0) {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    TestServer.send(exchange, 503, new byte[0]);
+                } else if (shifted.get() && !range.startsWith("bytes=0-")) {
+                    // Ignore the requested start.
+                    exchange.getResponseHeaders().add("Content-Range",
+                            "bytes 0-" + (BLOCK_SIZE - 1) + '/' + data.length);
+                    TestServer.send(exchange, 206, Arrays.copyOf(data, BLOCK_SIZE));
+                } else {
+                    sendRange(exchange, false);
+                }
+            });
+            Path target = folder.getRoot().toPath().resolve("big.bin");
+            RessourceClient client = RessourceClient.builder()
+                    .retryPolicy(RetryPolicy.builder().attempts(3).noBackoff().build()).build();
+
+            new SegmentedDownloader(client, 2, BLOCK_SIZE, null).download(server.url("/big"), target);
+            assertArrayEquals(data, Files.readAllBytes(target));
+            assertEquals(2, busy.get());
+
+            shifted.set(true);
+            Path other = folder.getRoot().toPath().resolve("other.bin");
+            try {
+                new SegmentedDownloader(client, 2, BLOCK_SIZE, null).download(server.url("/big"), other);
+                fail("A range starting elsewhere must not be written.");
+            } catch (IOException e) {
+                assertTrue(e.getCause().getMessage().startsWith("Unexpected range"));
+            }
+        }
+    }
+
+    @Test
+    public void testTotalLength() {
+        assertEquals(1234, SegmentedDownloader.totalLength("bytes 0-0/1234"));
+        assertEquals(-1, SegmentedDownloader.totalLength("bytes 0-0/*"));
+        assertEquals(-1, SegmentedDownloader.totalLength(null));
+    }
+}
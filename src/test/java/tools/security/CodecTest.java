@@ -0,0 +1,86 @@
+package tools.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CodecTest {
+
+    @Test
+    public void testHex() {
+        byte[] bytes = { 0, 1, 0x7F, (byte) 0x80, (byte) 0xAB, (byte) 0xFF };
+
+        assertEquals("00017F80ABFF", HexCodec.UPPER.encode(bytes));
+        assertEquals("00017f80abff", HexCodec.LOWER.encode(bytes));
+        assertEquals("x:017f", HexCodec.LOWER.encode(bytes, 1, 2, new StringBuilder("x:")).toString());
+
+        char[] chars = new char[8];
+        assertEquals(4, HexCodec.UPPER.encode(bytes, 4, 2, chars, 2));
+        assertEquals("\0\0ABFF\0\0", new String(chars));
+
+        ByteBuffer out = ByteBuffer.allocate(12);
+        HexCodec.UPPER.encode(ByteBuffer.wrap(bytes), out);
+        assertEquals("00017F80ABFF", new String(out.array(), StandardCharsets.US_ASCII));
+
+        assertArrayEquals(bytes, HexCodec.decode("00017f80AbFF"));
+        byte[] decoded = new byte[3];
+        assertEquals(2, HexCodec.decode("--abff", 2, 6, decoded, 1));
+        assertArrayEquals(new byte[] { 0, (byte) 0xAB, (byte) 0xFF }, decoded);
+        for (String invalid : new String[] { "0", "0g", "é0" }) {
+            try {
+                HexCodec.decode(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testBase64() throws Exception {
+        Random random = new Random(13);
+        for (int length = 0; length < 50; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            String basic = Base64.getEncoder().encodeToString(bytes);
+            String url = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+            assertEquals(basic, Base64Codec.BASIC.encode(bytes));
+            assertEquals(url, Base64Codec.URL.encode(bytes));
+            assertEquals(Base64.getUrlEncoder().encodeToString(bytes), Base64Codec.URL.withPadding().encode(bytes));
+            assertEquals(basic.length(), Base64Codec.BASIC.encodedLength(length));
+            assertEquals(url.length(), Base64Codec.URL.encodedLength(length));
+
+            assertEquals(">" + basic, Base64Codec.BASIC.encode(bytes, 0, length, new StringBuilder(">")).toString());
+            StringBuilder appendable = new StringBuilder();
+            Base64Codec.URL.encode(bytes, 0, length, (Appendable) appendable);
+            assertEquals(url, appendable.toString());
+            ByteBuffer out = ByteBuffer.allocate(basic.length());
+            Base64Codec.BASIC.encode(ByteBuffer.wrap(bytes), out);
+            assertEquals(basic, new String(out.array(), StandardCharsets.US_ASCII));
+
+            assertArrayEquals(bytes, Base64Codec.BASIC.decode(basic));
+            assertArrayEquals(bytes, Base64Codec.URL.decode(url));
+            assertArrayEquals(bytes, Base64Codec.URL.decode(Base64.getUrlEncoder().encodeToString(bytes)));
+        }
+    }
+
+    @Test
+    public void testBase64Invalid() {
+        for (String invalid : new String[] { "A", "AB=", "AB===", "A+/", "AB*C" }) {
+            try {
+                Base64Codec.URL.decode(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+}
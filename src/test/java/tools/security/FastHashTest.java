@@ -0,0 +1,101 @@
+package tools.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FastHashTest {
+
+    private static final byte[] FOX = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testXxHash64() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0]));
+        assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0xFBCEA83C8A378BF1L,
+                XxHash64.hash("Nobody inspects the spammish repetition".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMurmurHash32() {
+        assertEquals(0, MurmurHash32.hash(new byte[0]));
+        assertEquals(0x514E28B7, MurmurHash32.hash(new byte[0], 0, 0, 1));
+        assertEquals(0x248BFA47, MurmurHash32.hash("hello".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0x2E4FF723, MurmurHash32.hash(FOX));
+    }
+
+    @Test
+    public void testMurmurHash128() {
+        assertArrayEquals(new long[] { 0, 0 }, MurmurHash128.hash(new byte[0]));
+        assertArrayEquals(new long[] { 0xE34BBC7BBC071B6CL, 0x7A433CA9C49A9347L }, MurmurHash128.hash(FOX));
+    }
+
+    @Test
+    public void testInputsAndStreaming() {
+        Random random = new Random(11);
+        for (int length = 0; length < 200; length++) {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) random.nextInt(0xD800);
+            }
+            String text = new String(chars);
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_16LE);
+            long seed = random.nextLong();
+
+            long expected64 = XxHash64.hash(bytes, 0, bytes.length, seed);
+            int expected32 = MurmurHash32.hash(bytes, 0, bytes.length, (int) seed);
+            long[] expected128 = new long[2];
+            MurmurHash128.hash(bytes, 0, bytes.length, (int) seed, expected128);
+
+            assertEquals(expected64, XxHash64.hash(text, seed));
+            assertEquals(expected32, MurmurHash32.hash(text, (int) seed));
+            long[] result = new long[2];
+            MurmurHash128.hash(text, (int) seed, result);
+            assertArrayEquals(expected128, result);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3).order(ByteOrder.BIG_ENDIAN);
+            direct.position(3);
+            direct.put(bytes);
+            direct.position(3);
+            assertEquals(expected64, XxHash64.hash(direct, seed));
+            assertEquals(expected32, MurmurHash32.hash(direct, (int) seed));
+            MurmurHash128.hash(direct, (int) seed, result);
+            assertArrayEquals(expected128, result);
+            assertEquals(3, direct.position());
+
+            byte[] padded = new byte[bytes.length + 4];
+            System.arraycopy(bytes, 0, padded, 2, bytes.length);
+            ByteBuffer heap = ByteBuffer.wrap(padded, 2, bytes.length).slice();
+            assertEquals(expected64, XxHash64.hash(heap, seed));
+
+            XxHash64 xx = new XxHash64(seed);
+            MurmurHash32 m32 = new MurmurHash32((int) seed);
+            MurmurHash128 m128 = new MurmurHash128((int) seed);
+            int split1 = random.nextInt(bytes.length + 1);
+            int split2 = split1 + random.nextInt(bytes.length - split1 + 1);
+            for (StreamingHash hash : new StreamingHash[] { xx, m32, m128 }) {
+                hash.update(bytes, 0, split1);
+                ByteBuffer middle = ByteBuffer.allocateDirect(split2 - split1);
+                middle.put(bytes, split1, split2 - split1);
+                middle.flip();
+                hash.update(middle);
+                hash.update(bytes, split2, bytes.length - split2);
+            }
+            assertEquals(expected64, xx.getValue());
+            assertEquals(expected32, m32.getValue());
+            m128.getValue(result);
+            assertArrayEquals(expected128, result);
+
+            xx.reset();
+            xx.update(text);
+            assertEquals(expected64, xx.getValue());
+        }
+    }
+}
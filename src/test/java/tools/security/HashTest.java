@@ -1,17 +1,37 @@
 package tools.security;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestException;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class HashTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static final String CHAINE_VIDE = "";
     private static final String CHAINE_SIMPLE = "premiereChaine";
     private static final String CHAINE_CARACTERES_SPECIAUX = "Une autre chaîne avec des caractères accentués.";
@@ -71,4 +91,97 @@ public class HashTest {
             fail(e.getMessage());
         }
     }
+
+    @Test
+    public void testHashStreamPathAndBuffer() throws Exception {
+        for (int size : new int[] { 0, 100, Hash.BUFFER_SIZE + 1, 3 * Hash.BUFFER_SIZE + 3 }) {
+            byte[] bytes = new byte[size];
+            new Random(size).nextBytes(bytes);
+            byte[] expected = Hash.hash(bytes, "SHA-256");
+
+            assertArrayEquals(expected, Hash.hash(new ByteArrayInputStream(bytes), "SHA-256"));
+
+            Path file = folder.newFile().toPath();
+            Files.write(file, bytes);
+            assertArrayEquals(expected, Hash.hash(file, "SHA-256"));
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(size + 2);
+            direct.position(1);
+            direct.put(bytes);
+            direct.flip();
+            direct.position(1);
+            assertArrayEquals(expected, Hash.hash(direct, "SHA-256"));
+            assertEquals(1, direct.position());
+            assertArrayEquals(expected, Hash.hash(ByteBuffer.wrap(bytes), "SHA-256"));
+        }
+    }
+
+    @Test
+    public void testHashStreamHashingWhileRead() throws Exception {
+        byte[] bytes = new byte[3 * Hash.BUFFER_SIZE];
+        new Random(1).nextBytes(bytes);
+        byte[] expected = Hash.hash(bytes, "SHA-256");
+
+        byte[] hashed = Hash.hash(new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    Hash.hash(new byte[] { 1 }, "SHA-256");
+                    Hash.hash(new ByteArrayInputStream(new byte[] { 2 }), "SHA-256");
+                } catch (GeneralSecurityException | IOException e) {
+                    throw new AssertionError(e);
+                }
+                return super.read(b, off, len);
+            }
+        }, "SHA-256");
+
+        assertArrayEquals(expected, hashed);
+    }
+
+    @Test
+    public void testHashIntoArray() throws Exception {
+        byte[] bytes = ("xx" + CHAINE_SIMPLE + "yy").getBytes();
+        byte[] digest = new byte[20];
+
+        assertEquals(16, Hash.digestLength("MD5"));
+        assertEquals(16, Hash.hash(bytes, 2, CHAINE_SIMPLE.length(), "MD5", digest, 4));
+        assertEquals("483ecff07da6309d7d0d53a9283b9c12".toUpperCase(),
+                Hash.bytesToHex(Arrays.copyOfRange(digest, 4, 20)));
+
+        try {
+            Hash.hash(bytes, 0, bytes.length, "MD5", digest, 5);
+            fail("The digest doesn't fit.");
+        } catch (DigestException e) {
+            // Expected.
+        }
+        // The cached digest is reset after a failure.
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e".toUpperCase(),
+                Hash.bytesToHex(Hash.hash(CHAINE_VIDE.getBytes(), "MD5")));
+    }
+
+    @Test
+    public void testHashConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    byte[] digest = new byte[32];
+                    for (int i = 0; i < 1000; i++) {
+                        byte[] bytes = Integer.toString(i).getBytes();
+                        Hash.hash(bytes, 0, bytes.length, "SHA-256", digest, 0);
+                        if (!Arrays.equals(Hash.hash(bytes, "SHA-256"), digest)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package tools.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TreeHashTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] leaf(byte[] bytes, int from, int to) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0);
+        out.write(bytes, from, to - from);
+        return Hash.hash(out.toByteArray(), "SHA-256");
+    }
+
+    private static byte[] node(byte[] left, byte[] right) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(1);
+        out.write(left);
+        out.write(right);
+        return Hash.hash(out.toByteArray(), "SHA-256");
+    }
+
+    @Test
+    public void testRoot() throws Exception {
+        byte[] bytes = new byte[25];
+        new Random(3).nextBytes(bytes);
+
+        // Chunks of 10 bytes: a, b, c. Root = node(node(a, b), c).
+        TreeHash hash = TreeHash.of(ByteBuffer.wrap(bytes), "SHA-256", 10);
+        byte[] expected = node(node(leaf(bytes, 0, 10), leaf(bytes, 10, 20)), leaf(bytes, 20, 25));
+        assertEquals(3, hash.getChunkCount());
+        assertArrayEquals(expected, hash.getRoot());
+        assertArrayEquals(leaf(bytes, 20, 25), hash.getChunkDigest(2));
+
+        assertArrayEquals(leaf(bytes, 0, 25), TreeHash.of(ByteBuffer.wrap(bytes), "SHA-256", 25).getRoot());
+        assertArrayEquals(Hash.hash(new byte[0], "SHA-256"),
+                TreeHash.of(ByteBuffer.allocate(0), "SHA-256", 10).getRoot());
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        byte[] bytes = new byte[1000003];
+        new Random(5).nextBytes(bytes);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+
+        TreeHash hash = TreeHash.of(file, "SHA-256", 4096, new ForkJoinPool(4));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        assertArrayEquals(TreeHash.of(direct, "SHA-256", 4096).getRoot(), hash.getRoot());
+        assertEquals(bytes.length, hash.getSize());
+        assertArrayEquals(TreeHash.of(file, "SHA-256").getRoot(), Hash.treeHash(file, "SHA-256"));
+
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < hash.getChunkCount(); i++) {
+            chunks.add(hash.getChunkDigest(i));
+        }
+        assertArrayEquals(hash.getRoot(), TreeHash.fromChunks("SHA-256", 4096, bytes.length, chunks).getRoot());
+
+        assertTrue(hash.verifyChunk(1, ByteBuffer.wrap(bytes, 4096, 4096)));
+        assertFalse(hash.verifyChunk(2, ByteBuffer.wrap(bytes, 4096, 4096)));
+    }
+
+    @Test
+    public void testFileWithBigChunks() throws Exception {
+        int chunkSize = TreeHash.MAX_CACHED_BUFFER + 1;
+        byte[] bytes = new byte[2 * chunkSize + 5];
+        new Random(7).nextBytes(bytes);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+
+        assertArrayEquals(TreeHash.of(ByteBuffer.wrap(bytes), "SHA-256", chunkSize).getRoot(),
+                TreeHash.of(file, "SHA-256", chunkSize, ForkJoinPool.commonPool()).getRoot());
+    }
+
+    @Test
+    public void testFindDifferences() throws Exception {
+        byte[] bytes = new byte[10 * 100 + 50];
+        new Random(7).nextBytes(bytes);
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        TreeHash hash = TreeHash.of(file, "SHA-256", 100, ForkJoinPool.commonPool());
+        assertEquals(Collections.emptyList(), hash.findDifferences(file));
+
+        byte[] partial = Arrays.copyOf(bytes, 750);
+        partial[420]++;
+        Files.write(file, partial);
+
+        assertEquals(Arrays.asList(4, 7, 8, 9, 10), hash.findDifferences(file));
+    }
+}
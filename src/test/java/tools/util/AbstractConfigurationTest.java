@@ -0,0 +1,141 @@
+package tools.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AbstractConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class Configuration extends AbstractConfiguration {
+
+        private Configuration() {
+            super();
+        }
+
+        private Configuration(Path file, boolean watch) {
+            super(file, watch);
+        }
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("configs.properties");
+        write(file, "name=tools\ncount= 12\nbig=123456789012\nflag=TRUE\nbad=x\n");
+        try (Configuration configuration = new Configuration(file, false)) {
+            assertEquals("tools", configuration.getString("name"));
+            assertNull(configuration.getString("missing"));
+            assertEquals("none", configuration.getString("missing", "none"));
+            assertEquals(12, configuration.getInt("count", 0));
+            assertEquals(12, configuration.getInt("count", 0));
+            assertEquals(123456789012L, configuration.getLong("big", 0));
+            assertTrue(configuration.getBoolean("flag", false));
+            assertEquals(-1, configuration.getInt("bad", -1));
+            assertFalse(configuration.getBoolean("bad", false));
+            assertEquals(-1, configuration.getInt("missing", -1));
+            assertSame(Proxy.NO_PROXY, configuration.getProxy());
+            assertEquals("tools", configuration.properties.getProperty("name"));
+            configuration.properties.setProperty("name", "changed");
+            assertEquals("tools", configuration.getString("name"));
+
+            write(file, "proxy.type=HTTP\nproxy.host=localhost\nproxy.port=3128\ncount=13\n");
+            assertTrue(configuration.reload());
+            assertFalse(configuration.reload());
+            Proxy proxy = configuration.getProxy();
+            assertEquals(Proxy.Type.HTTP, proxy.type());
+            assertEquals(3128, ((InetSocketAddress) proxy.address()).getPort());
+            assertSame(proxy, configuration.getProxy());
+            assertEquals(13, configuration.getInt("count", 0));
+            assertNull(configuration.getString("name"));
+
+            write(file, "proxy.type=SOCKS\nproxy.host=localhost\nproxy.port=port\n");
+            configuration.reload();
+            try {
+                configuration.getProxy();
+                fail();
+            } catch (NumberFormatException e) {
+                // expected
+            }
+
+            write(file, "proxy.type=SOCKS\nproxy.host=localhost\nproxy.port=70000\n");
+            configuration.reload();
+            try {
+                configuration.getProxy();
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertFalse(e instanceof NumberFormatException);
+            }
+
+            Files.delete(file);
+            try {
+                configuration.reload();
+                fail();
+            } catch (IOException e) {
+                // expected
+            }
+            assertEquals("SOCKS", configuration.getString(AbstractConfiguration.PROXY_TYPE));
+        }
+    }
+
+    @Test
+    public void testMissingFile() throws Exception {
+        try (Configuration configuration = new Configuration(folder.getRoot().toPath().resolve("none"), false)) {
+            assertNull(configuration.getString("name"));
+            assertSame(Proxy.NO_PROXY, configuration.getProxy());
+        }
+    }
+
+    @Test
+    public void testDefaultNotWatched() throws Exception {
+        int watchers = watchers();
+        try (Configuration configuration = new Configuration()) {
+            assertTrue(watchers() <= watchers);
+        }
+    }
+
+    private static int watchers() {
+        int watchers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("Configuration watcher")) {
+                watchers++;
+            }
+        }
+        return watchers;
+    }
+
+    @Test(timeout = 30000)
+    public void testWatch() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("configs.properties");
+        write(file, "count=1\n");
+        try (Configuration configuration = new Configuration(file, false)) {
+            assertTrue(configuration.watch());
+            assertTrue(configuration.watch());
+            assertEquals(1, configuration.getInt("count", 0));
+            write(file, "count=2\n");
+            while (configuration.getInt("count", 0) != 2) {
+                Thread.sleep(20);
+            }
+            assertEquals("2", configuration.properties.getProperty("count"));
+        }
+    }
+}
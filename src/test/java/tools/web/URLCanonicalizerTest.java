@@ -0,0 +1,91 @@
+package tools.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class URLCanonicalizerTest {
+
+    private static void check(String expected, String url) {
+        assertEquals(expected, URLCanonicalizer.DEFAULT.canonicalize(url));
+    }
+
+    @Test
+    public void testCanonicalize() throws Exception {
+        check("http://example.com/", "HTTP://Example.COM");
+        check("http://example.com/", " http://example.com.:80/#top ");
+        check("https://example.com:8443/a/c/", "https://example.com:8443/a/b/../c/./");
+        check("http://example.com/", "http://example.com/a/../../..");
+        check("http://example.com/a/", "http://example.com/a/.");
+        check("http://example.com/~a/%2Fb%C3%A9", "http://example.com/%7ea/%2fb%c3%a9");
+        check("http://example.com/a%20b/%C3%A9%25", "http://example.com/a b/é%");
+        check("http://example.com/p?a=1&a=2&b=&c", "http://example.com/p?c&b=&&a=2&a=1");
+        check("http://user:Pw@example.com:8080/", "http://user:Pw@EXAMPLE.com:8080");
+        check("http://[::1]/x", "http://[::1]:80/x");
+        check("http://xn--caf-dma.fr/", "http://café.fr/");
+        check("mailto:Someone@Example.com", "MAILTO:Someone@Example.com");
+        assertEquals("http://example.com/", URLCanonicalizer.DEFAULT.canonicalize(new URL("http://example.com")));
+
+        URLCanonicalizer custom = URLCanonicalizer.builder().sortQuery(false).ignoreParameters("utm_source").build();
+        assertEquals("http://example.com/?z=1&a=2", custom.canonicalize("http://example.com/?z=1&utm_source=x&a=2"));
+        assertEquals("http://example.com/", custom.canonicalize("http://example.com/?utm_source=x"));
+
+        for (String invalid : new String[] { "/relative", "example.com", "1http://x" }) {
+            try {
+                URLCanonicalizer.DEFAULT.canonicalize(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testSeenURLSet() throws Exception {
+        SeenURLSet seen = new SeenURLSet(10);
+
+        assertTrue(seen.add("http://example.com/a?x=1&y=2"));
+        assertFalse(seen.add("HTTP://EXAMPLE.COM:80/b/../a?y=2&x=1#frag"));
+        assertTrue(seen.contains("http://example.com/a?x=1&y=2"));
+        assertFalse(seen.contains("http://example.com/b"));
+        assertEquals(1, seen.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> added = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                added.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 20000; i++) {
+                        if (seen.add("http://example.com/page/" + i)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> count : added) {
+                total += count.get();
+            }
+            assertEquals(20000, total);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(20001, seen.size());
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(seen.contains("http://example.com/page/" + i));
+        }
+        assertTrue(seen.containsFingerprint(SeenURLSet.fingerprint("http://example.com/page/7")));
+    }
+}
@@ -0,0 +1,144 @@
+package tools.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class URLTemplateTest {
+
+    private static final Map<String, Object> VARIABLES = new HashMap<>();
+
+    static {
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put("semi", ";");
+        keys.put("dot", ".");
+        keys.put("comma", ",");
+        VARIABLES.put("var", "value");
+        VARIABLES.put("hello", "Hello World!");
+        VARIABLES.put("path", "/foo/bar");
+        VARIABLES.put("list", Arrays.asList("red", "green", "blue"));
+        VARIABLES.put("keys", keys);
+        VARIABLES.put("empty", "");
+        VARIABLES.put("empty_list", Collections.emptyList());
+        VARIABLES.put("x", 1024);
+        VARIABLES.put("y", 768);
+    }
+
+    private static void check(String expected, String template) {
+        assertEquals(template, expected, URLTemplate.compile(template).expand(VARIABLES));
+    }
+
+    @Test
+    public void testSimple() {
+        check("value", "{var}");
+        check("Hello%20World%21", "{hello}");
+        check("map?1024,768", "map?{x,y}");
+        check("1024,Hello%20World%21,768", "{x,hello,y}");
+        check("val", "{var:3}");
+        check("value", "{var:30}");
+        check("red,green,blue", "{list}");
+        check("red,green,blue", "{list*}");
+        check("semi,%3B,dot,.,comma,%2C", "{keys}");
+        check("semi=%3B,dot=.,comma=%2C", "{keys*}");
+        check("", "{undef}");
+        check("O", "O{empty_list}");
+        check("1024,768", "{x,undef,empty_list,y}");
+    }
+
+    @Test
+    public void testReserved() {
+        check("Hello%20World!", "{+hello}");
+        check("/foo/bar/here", "{+path}/here");
+        check("here?ref=/foo/bar", "here?ref={+path}");
+        check("1024,Hello%20World!,768", "{+x,hello,y}");
+        check("/foo/bar,1024/here", "{+path,x}/here");
+        check("/foo/b/here", "{+path:6}/here");
+        check("red,green,blue", "{+list}");
+        check("semi,;,dot,.,comma,,", "{+keys}");
+        check("semi=;,dot=.,comma=,", "{+keys*}");
+        check("X#value", "X{#var}");
+        check("X#Hello%20World!", "X{#hello}");
+        check("#1024,Hello%20World!,768", "{#x,hello,y}");
+        check("#/foo/bar,1024/here", "{#path,x}/here");
+        check("#/foo/b/here", "{#path:6}/here");
+        check("#red,green,blue", "{#list*}");
+        check("#semi=;,dot=.,comma=,", "{#keys*}");
+        check("", "{#undef}");
+    }
+
+    @Test
+    public void testLabelAndPath() {
+        check("X.value", "X{.var}");
+        check("X.1024.768", "X{.x,y}");
+        check("X.red.green.blue", "X{.list*}");
+        check("/value", "{/var}");
+        check("/value/1024/here", "{/var,x}/here");
+        check("/red/green/blue/%2Ffoo", "{/list*,path:4}");
+    }
+
+    @Test
+    public void testNamed() {
+        check(";x=1024;y=768", "{;x,y}");
+        check(";x=1024;y=768;empty", "{;x,y,empty}");
+        check(";list=red;list=green;list=blue", "{;list*}");
+        check(";keys=semi,%3B,dot,.,comma,%2C", "{;keys}");
+        check(";semi=%3B;dot=.;comma=%2C", "{;keys*}");
+        check("?x=1024&y=768", "{?x,y}");
+        check("?x=1024&y=768&empty=", "{?x,y,empty}");
+        check("?list=red,green,blue", "{?list}");
+        check("?list=red&list=green&list=blue", "{?list*}");
+        check("?semi=%3B&dot=.&comma=%2C", "{?keys*}");
+        check("?fixed=yes&x=1024", "?fixed=yes{&x}");
+        check("&x=1024&y=768&empty=", "{&x,y,empty}");
+        check("&semi=%3B&dot=.&comma=%2C", "{&keys*}");
+    }
+
+    @Test
+    public void testEncoding() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("q", "café 😀");
+        variables.put("p", "a%2Fb%zz");
+        assertEquals("/s?q=caf%C3%A9%20%F0%9F%98%80", URLTemplate.compile("/s{?q}").expand(variables));
+        assertEquals("a%252Fb%25zz%7Ca%2Fb%25zz", URLTemplate.compile("{p}|{+p}").expand(variables));
+        assertEquals("/%C3%A9t%C3%A9%20x/caf%C3%A9", URLTemplate.compile("/été x/{q:4}").expand(variables));
+        assertEquals("%F0%9F%98%80", URLTemplate.compile("{q:6}").expand(Collections.singletonMap("q", "😀")));
+    }
+
+    @Test
+    public void testCompiled() {
+        URLTemplate template = URLTemplate.compile("https://api.example.com/users/{id}/items{?page,size}{#section}");
+        assertEquals(Arrays.asList("id", "page", "size", "section"), template.getVariableNames());
+        assertEquals("https://api.example.com/users/{id}/items{?page,size}{#section}", template.toString());
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("id", "u " + i);
+            variables.put("page", i);
+            assertEquals("https://api.example.com/users/u%20" + i + "/items?page=" + i,
+                    template.expand(variables));
+        }
+        StringBuilder out = new StringBuilder("GET ");
+        template.expand(Collections.singletonMap("id", 7), out);
+        assertEquals("GET https://api.example.com/users/7/items", out.toString());
+    }
+
+    @Test
+    public void testMalformed() {
+        List<String> templates = Arrays.asList("{var", "var}", "{}", "{var:0}", "{var:x}", "{v ar}", "{.}", "{a,}");
+        for (String template : templates) {
+            try {
+                URLTemplate.compile(template);
+                fail(template);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package tools.web;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -28,4 +31,52 @@ public class URLTest {
             fail(e.getMessage());
         }
     }
+
+    /**
+     * The encoding done by {@link URLUtil#encode(String)} before it was
+     * rewritten.
+     */
+    private static String referenceEncode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8").replace("*", "%2A").replace("+", "%20").replace("%7E", "~");
+    }
+
+    @Test
+    public void testEncodeLikeBefore() throws UnsupportedEncodingException {
+        Random random = new Random(17);
+        String alphabet = "aZ09-._~*+ %/?&=#'\"\u00e7\u00e9\u20ac\ud83d\ude00\ud83d\ude00\ud800\udc00";
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder value = new StringBuilder();
+            for (int i = random.nextInt(12); i > 0; i--) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String expected = referenceEncode(value.toString());
+            assertEquals(expected, URLUtil.encode(value.toString()));
+            assertEquals(">" + expected, URLUtil.encode(value, new StringBuilder(">")).toString());
+        }
+
+        String unchanged = "Nothing-to_encode.~";
+        assertSame(unchanged, URLUtil.encode(unchanged));
+        assertEquals("%257", URLUtil.encode("%7"));
+    }
+
+    @Test
+    public void testDecode() {
+        String value = "a b+c/\u00e9\u20ac\ud83d\ude00%~";
+        assertEquals(value, URLUtil.decode(URLUtil.encode(value)));
+        assertEquals("a+b", URLUtil.decode("a+b"));
+        assertEquals("\u00e9t\u00e9 ok", URLUtil.decode("%c3%a9t%C3%A9%20ok"));
+        assertEquals("x\ufffdy", URLUtil.decode("x%C3y"));
+        assertEquals("<a b>", URLUtil.decode("a%20b", new StringBuilder("<")).append('>').toString());
+
+        String unchanged = "plain";
+        assertSame(unchanged, URLUtil.decode(unchanged));
+        for (String invalid : new String[] { "%7", "%", "a%zz", "%2%41" }) {
+            try {
+                URLUtil.decode(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
 }